@@ -0,0 +1,156 @@
+package org.geoladris.benchmarks;
+
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+
+import org.apache.commons.io.FileUtils;
+import org.geoladris.Geoladris;
+import org.geoladris.Plugin;
+import org.geoladris.PluginDirsAnalyzer;
+import org.geoladris.TestingServletContext;
+import org.geoladris.config.Config;
+import org.geoladris.config.ConfigImpl;
+import org.geoladris.config.ConfigTree;
+import org.geoladris.config.PluginConfigProvider;
+import org.geoladris.config.providers.PluginJSONConfigProvider;
+import org.geoladris.config.providers.PublicConfProvider;
+import org.geoladris.config.providers.RoleConfigProvider;
+import org.geoladris.servlet.ConfigServlet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.sf.json.JSONObject;
+
+/**
+ * <p>
+ * Benchmarks for the configuration pipeline: {@link Config#getPluginConfig}, merging a layer into a
+ * plugin configuration, {@link Plugin#clonePlugin()} and the whole <code>config.js</code> call.
+ * </p>
+ *
+ * <p>
+ * Requests are {@link TestingServletContext} mocks. A new context is created for each iteration
+ * so the invocations recorded by the mocks do not pile up during the whole run.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigBenchmark {
+  @Param({"20", "200"})
+  public int plugins;
+
+  @Param({"5"})
+  public int modules;
+
+  @Param({"10"})
+  public int keys;
+
+  /**
+   * Providers on top of the default ones (public conf, plugin conf and roles).
+   */
+  @Param({"0", "5"})
+  public int providers;
+
+  @Param({"3"})
+  public int roles;
+
+  @Param({"500"})
+  public int messages;
+
+  @Param({"true", "false"})
+  public boolean useCache;
+
+  private File configDir;
+  private ConfigImpl config;
+  private Plugin plugin;
+  private ConfigTree layer;
+
+  private TestingServletContext context;
+  private ConfigServlet servlet;
+
+  @Setup(Level.Trial)
+  public void setupConfig() throws IOException {
+    this.configDir =
+        new SyntheticConfig(this.plugins, this.modules, this.keys, this.roles, 3, this.messages)
+            .create();
+
+    List<PluginConfigProvider> providers = new ArrayList<>();
+    providers.add(new PublicConfProvider());
+    providers.add(new PluginJSONConfigProvider());
+    providers.add(new RoleConfigProvider());
+    for (int i = 0; i < this.providers; i++) {
+      providers.add(new SyntheticProvider(i, this.plugins, 5, true));
+    }
+
+    PluginDirsAnalyzer analyzer =
+        new PluginDirsAnalyzer(new File(this.configDir, Config.DIR_PLUGINS));
+    this.config = new ConfigImpl(this.configDir, providers, analyzer.getPlugins(),
+        this.useCache, -1);
+
+    this.plugin = analyzer.getPlugins().iterator().next();
+    this.layer = ConfigTree.fromJSON(JSONObject.fromObject("{"
+        + SyntheticConfig.getModuleName(0) + " : {k0 : 'layer', extra : [1, 2, 3]}}"));
+  }
+
+  @Setup(Level.Iteration)
+  public void setupRequest() throws ServletException, IOException {
+    this.context = new TestingServletContext();
+    this.context.servletContext.setAttribute(Geoladris.ATTR_CONFIG, this.config);
+    this.context.session.setAttribute(Geoladris.ATTR_ROLE, SyntheticConfig.getRoleName(0));
+    when(this.context.request.getSession(false)).thenReturn(this.context.session);
+    when(this.context.request.getMethod()).thenReturn("GET");
+    this.context.request.setAttribute(Geoladris.ATTR_LOCALE, new Locale("es"));
+
+    this.servlet = new ConfigServlet();
+    this.servlet.init(this.context.servletConfig);
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    FileUtils.deleteDirectory(this.configDir);
+  }
+
+  @Benchmark
+  public Plugin[] getPluginConfig() {
+    return this.config.getPluginConfig(new Locale("es"), this.context.request);
+  }
+
+  @Benchmark
+  public Plugin clonePlugin() {
+    return this.plugin.clonePlugin();
+  }
+
+  @Benchmark
+  public Plugin setConfiguration() {
+    Plugin ret = this.plugin.clonePlugin();
+    ret.setConfiguration(this.layer);
+    return ret;
+  }
+
+  @Benchmark
+  public void configServlet() throws ServletException, IOException {
+    this.servlet.service(this.context.request, this.context.response);
+  }
+}
@@ -0,0 +1,353 @@
+package org.geoladris.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import javax.servlet.Filter;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.servlets.DefaultServlet;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.commons.io.FileUtils;
+import org.apache.tomcat.util.descriptor.web.FilterDef;
+import org.apache.tomcat.util.descriptor.web.FilterMap;
+import org.geoladris.Environment;
+import org.geoladris.servlet.AppContextListener;
+import org.geoladris.servlet.ConfigServlet;
+import org.geoladris.servlet.ErrorFilter;
+import org.geoladris.servlet.GzipFilter;
+import org.geoladris.servlet.LangFilter;
+import org.geoladris.servlet.MetricsServlet;
+import org.geoladris.servlet.ReadyServlet;
+import org.geoladris.servlet.RedirectFilter;
+
+/**
+ * <p>
+ * Load test: starts an embedded Tomcat on a random local port with the Geoladris listener, filters
+ * and servlets and a synthetic configuration directory (see {@link SyntheticConfig}), and drives
+ * it with concurrent clients. Each client has its own session cookie and repeatedly requests
+ * <code>config.js</code>, five plugin modules and <code>/setlang</code>.
+ * </p>
+ *
+ * <p>
+ * Throughput and latency percentiles are reported per endpoint. Options are system properties:
+ * </p>
+ *
+ * <ul>
+ * <li><code>clients</code>: number of concurrent clients (default {@value #DEFAULT_CLIENTS}).</li>
+ * <li><code>warmup</code>: warm-up seconds, not measured (default {@value #DEFAULT_WARMUP}).</li>
+ * <li><code>duration</code>: measured seconds (default {@value #DEFAULT_DURATION}).</li>
+ * <li><code>plugins</code>: number of plugins (default {@value #DEFAULT_PLUGINS}).</li>
+ * <li><code>GEOLADRIS_SESSIONLESS_LANG</code> and the other {@link Environment} properties are
+ * used by the server as usual.</li>
+ * </ul>
+ */
+public class LoadTest {
+  public static final int DEFAULT_CLIENTS = 16;
+  public static final int DEFAULT_WARMUP = 10;
+  public static final int DEFAULT_DURATION = 30;
+  public static final int DEFAULT_PLUGINS = 50;
+
+  private static final String CONTEXT_PATH = "/geoladris";
+  private static final int MODULES = 5;
+  private static final int LANGUAGES = 3;
+
+  private static final String CONFIG = "config.js";
+  private static final String ASSET = "asset";
+  private static final String SETLANG = "setlang";
+  private static final String[] ENDPOINTS = new String[] {CONFIG, ASSET, SETLANG};
+
+  public static void main(String[] args) throws Exception {
+    int clients = Integer.getInteger("clients", DEFAULT_CLIENTS);
+    int warmup = Integer.getInteger("warmup", DEFAULT_WARMUP);
+    int duration = Integer.getInteger("duration", DEFAULT_DURATION);
+    int plugins = Integer.getInteger("plugins", DEFAULT_PLUGINS);
+
+    File baseDir = File.createTempFile("geoladris-loadtest", "");
+    baseDir.delete();
+    try {
+      run(baseDir, clients, warmup, duration, plugins);
+    } finally {
+      FileUtils.deleteDirectory(baseDir);
+    }
+  }
+
+  private static void run(File baseDir, int clients, int warmup, int duration, int plugins)
+      throws Exception {
+    // GEOLADRIS_CONFIG_DIR has a subdirectory for each context
+    File configRoot = new File(baseDir, "config");
+    SyntheticConfig synthetic = new SyntheticConfig(plugins, MODULES, 10, 3, LANGUAGES, 500);
+    synthetic.write(new File(configRoot, CONTEXT_PATH));
+    System.setProperty(Environment.CONFIG_DIR, configRoot.getAbsolutePath());
+
+    File warDir = new File(baseDir, "war");
+    new File(warDir, "WEB-INF").mkdirs();
+
+    Tomcat tomcat = new Tomcat();
+    tomcat.setBaseDir(new File(baseDir, "tomcat").getAbsolutePath());
+    tomcat.setPort(0);
+    Context context = tomcat.addContext(CONTEXT_PATH, warDir.getAbsolutePath());
+    addWebFragment(context);
+    // Creates the default HTTP connector
+    tomcat.getConnector();
+    tomcat.start();
+
+    try {
+      String baseURL = "http://localhost:" + tomcat.getConnector().getLocalPort() + CONTEXT_PATH;
+      System.out.println("Server started on " + baseURL + ". " + clients + " clients, " + warmup
+          + "s warm-up, " + duration + "s measurement");
+
+      Client[] clientList = new Client[clients];
+      Thread[] threads = new Thread[clients];
+      CountDownLatch start = new CountDownLatch(1);
+      long measureStart = System.nanoTime() + warmup * 1000000000L;
+      long measureEnd = measureStart + duration * 1000000000L;
+      for (int i = 0; i < clients; i++) {
+        clientList[i] = new Client(baseURL, synthetic, i, start, measureStart, measureEnd);
+        threads[i] = new Thread(clientList[i], "loadtest-client-" + i);
+        threads[i].start();
+      }
+      start.countDown();
+      for (Thread thread : threads) {
+        thread.join();
+      }
+
+      report(clientList, duration);
+    } finally {
+      tomcat.stop();
+      tomcat.destroy();
+    }
+  }
+
+  /**
+   * Registers the same listener, filters and servlets as <code>META-INF/web-fragment.xml</code>,
+   * in the same order. The fragment is not scanned so the test does not depend on how the jars end
+   * up in the classpath.
+   */
+  private static void addWebFragment(Context context) {
+    context.addApplicationListener(AppContextListener.class.getName());
+
+    addFilter(context, "lang-filter", new LangFilter(), false, "/*");
+    addFilter(context, "error-filter", new ErrorFilter(), false, "/*");
+    addFilter(context, "redirect-filter", new RedirectFilter(), false, "/*");
+    addFilter(context, "gzip-filter", new GzipFilter(), true, "*.js", "*.css");
+
+    Tomcat.addServlet(context, "config-servlet", new ConfigServlet());
+    context.addServletMappingDecoded("/" + CONFIG, "config-servlet");
+    Tomcat.addServlet(context, "metrics-servlet", new MetricsServlet());
+    context.addServletMappingDecoded(MetricsServlet.PATH, "metrics-servlet");
+    Tomcat.addServlet(context, "ready-servlet", new ReadyServlet());
+    context.addServletMappingDecoded(ReadyServlet.PATH, "ready-servlet");
+    Tomcat.addServlet(context, "default", new DefaultServlet());
+    context.addServletMappingDecoded("/", "default");
+
+    context.setSessionTimeout(30);
+  }
+
+  /**
+   * @param forward Whether the filter also applies to forwarded requests, in addition to the
+   *        requests from clients.
+   */
+  private static void addFilter(Context context, String name, Filter filter, boolean forward,
+      String... patterns) {
+    FilterDef def = new FilterDef();
+    def.setFilterName(name);
+    def.setFilter(filter);
+    context.addFilterDef(def);
+
+    FilterMap map = new FilterMap();
+    map.setFilterName(name);
+    for (String pattern : patterns) {
+      map.addURLPatternDecoded(pattern);
+    }
+    if (forward) {
+      map.setDispatcher("REQUEST");
+      map.setDispatcher("FORWARD");
+    }
+    context.addFilterMap(map);
+  }
+
+  private static void report(Client[] clients, int duration) {
+    System.out.println();
+    System.out.println(String.format("%-10s %10s %8s %10s %10s %10s %10s", "endpoint", "requests",
+        "errors", "req/s", "p50 ms", "p99 ms", "p999 ms"));
+    for (String endpoint : ENDPOINTS) {
+      LongList latencies = new LongList();
+      int errors = 0;
+      for (Client client : clients) {
+        latencies.addAll(client.latencies.get(endpoint));
+        errors += client.errors.get(endpoint)[0];
+      }
+
+      long[] sorted = latencies.toSortedArray();
+      System.out.println(String.format("%-10s %10d %8d %10.1f %10.3f %10.3f %10.3f", endpoint,
+          sorted.length, errors, sorted.length / (double) duration, percentile(sorted, 0.5),
+          percentile(sorted, 0.99), percentile(sorted, 0.999)));
+    }
+  }
+
+  /**
+   * @return the given percentile in milliseconds.
+   */
+  private static double percentile(long[] sortedNanos, double percentile) {
+    if (sortedNanos.length == 0) {
+      return Double.NaN;
+    }
+    int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+    return sortedNanos[Math.max(0, index)] / 1e6;
+  }
+
+  private static class Client implements Runnable {
+    private String baseURL;
+    private SyntheticConfig synthetic;
+    private int index;
+    private CountDownLatch start;
+    private long measureStart, measureEnd;
+
+    private String cookies;
+    private Map<String, LongList> latencies = new LinkedHashMap<>();
+    private Map<String, int[]> errors = new LinkedHashMap<>();
+
+    private Client(String baseURL, SyntheticConfig synthetic, int index, CountDownLatch start,
+        long measureStart, long measureEnd) {
+      this.baseURL = baseURL;
+      this.synthetic = synthetic;
+      this.index = index;
+      this.start = start;
+      this.measureStart = measureStart;
+      this.measureEnd = measureEnd;
+      for (String endpoint : ENDPOINTS) {
+        this.latencies.put(endpoint, new LongList());
+        this.errors.put(endpoint, new int[1]);
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        this.start.await();
+      } catch (InterruptedException e) {
+        return;
+      }
+
+      int plugins = this.synthetic.getPlugins();
+      for (int i = this.index; System.nanoTime() < this.measureEnd; i++) {
+        request(CONFIG, "/" + CONFIG);
+        for (int j = 0; j < MODULES; j++) {
+          int plugin = (i + j) % plugins;
+          String module = SyntheticConfig.getModuleName(j) + ".js";
+          String path = SyntheticConfig.isInstalledInRoot(plugin) ? "/" + module
+              : "/" + SyntheticConfig.getPluginName(plugin) + "/" + module;
+          request(ASSET, path);
+        }
+        request(SETLANG, LangFilter.PATH_SETLANG + "?" + this.synthetic.getLanguage(i));
+      }
+    }
+
+    private void request(String endpoint, String path) {
+      long start = System.nanoTime();
+      boolean ok;
+      try {
+        ok = get(path);
+      } catch (IOException e) {
+        ok = false;
+      }
+      long end = System.nanoTime();
+
+      if (start >= this.measureStart && end <= this.measureEnd) {
+        this.latencies.get(endpoint).add(end - start);
+        if (!ok) {
+          this.errors.get(endpoint)[0]++;
+        }
+      }
+    }
+
+    private boolean get(String path) throws IOException {
+      HttpURLConnection connection =
+          (HttpURLConnection) new URL(this.baseURL + path).openConnection();
+      connection.setInstanceFollowRedirects(false);
+      connection.setRequestProperty("Accept-Encoding", "gzip");
+      if (this.cookies != null) {
+        connection.setRequestProperty("Cookie", this.cookies);
+      }
+
+      int status = connection.getResponseCode();
+      List<String> setCookies = connection.getHeaderFields().get("Set-Cookie");
+      if (setCookies != null) {
+        updateCookies(setCookies);
+      }
+
+      // Read the whole body so the connection can be reused
+      InputStream stream = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+      if (stream != null) {
+        byte[] buffer = new byte[8192];
+        while (stream.read(buffer) >= 0) {
+          // Discard
+        }
+        stream.close();
+      }
+      return status < 400;
+    }
+
+    private void updateCookies(List<String> setCookies) {
+      Map<String, String> values = new LinkedHashMap<>();
+      if (this.cookies != null) {
+        for (String cookie : this.cookies.split("; ")) {
+          values.put(cookie.substring(0, cookie.indexOf('=')), cookie);
+        }
+      }
+      for (String setCookie : setCookies) {
+        String cookie = setCookie.split(";", 2)[0].trim();
+        int index = cookie.indexOf('=');
+        if (index > 0) {
+          values.put(cookie.substring(0, index), cookie);
+        }
+      }
+
+      StringBuilder builder = new StringBuilder();
+      for (String cookie : values.values()) {
+        if (builder.length() > 0) {
+          builder.append("; ");
+        }
+        builder.append(cookie);
+      }
+      this.cookies = builder.toString();
+    }
+  }
+
+  /**
+   * Growable array of primitive longs, so recording latencies does not box nor allocate on each
+   * request.
+   */
+  private static class LongList {
+    private long[] values = new long[1024];
+    private int size;
+
+    private void add(long value) {
+      if (this.size == this.values.length) {
+        this.values = Arrays.copyOf(this.values, this.size * 2);
+      }
+      this.values[this.size++] = value;
+    }
+
+    private void addAll(LongList other) {
+      for (int i = 0; i < other.size; i++) {
+        add(other.values[i]);
+      }
+    }
+
+    private long[] toSortedArray() {
+      long[] ret = Arrays.copyOf(this.values, this.size);
+      Arrays.sort(ret);
+      return ret;
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package org.geoladris.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.geoladris.CSSPluginImportsUpdater;
+import org.geoladris.Plugin;
+import org.geoladris.PluginDirsAnalyzer;
+import org.geoladris.config.Config;
+import org.geoladris.config.ConfigImpl;
+import org.geoladris.config.PluginConfigProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Time to scan the plugins directory ({@link PluginDirsAnalyzer#reload()}) and to regenerate the
+ * CSS imports ({@link CSSPluginImportsUpdater#run()}) on large plugin trees.
+ * </p>
+ *
+ * <p>
+ * <code>reloadAfterChange</code> adds or removes one module before each scan, as the directory
+ * watchers do on a change. Scans are not incremental yet, so it is the baseline for incremental
+ * scanning.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PluginScanBenchmark {
+  @Param({"100", "1000"})
+  public int plugins;
+
+  @Param({"5"})
+  public int modules;
+
+  private File configDir;
+  private PluginDirsAnalyzer analyzer;
+  private CSSPluginImportsUpdater cssUpdater;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    this.configDir = new SyntheticConfig(this.plugins, this.modules, 1, 0, 1, 0).create();
+    this.analyzer = new PluginDirsAnalyzer(getPluginsDir());
+    Config config = new ConfigImpl(this.configDir, new ArrayList<PluginConfigProvider>(),
+        Collections.<Plugin>emptySet(), false, -1);
+    this.cssUpdater = new CSSPluginImportsUpdater(config);
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    FileUtils.deleteDirectory(this.configDir);
+  }
+
+  private File getPluginsDir() {
+    return new File(this.configDir, Config.DIR_PLUGINS);
+  }
+
+  @Benchmark
+  public Set<Plugin> reload() {
+    this.analyzer.reload();
+    return this.analyzer.getPlugins();
+  }
+
+  @Benchmark
+  public Set<Plugin> reloadAfterChange(Change change) {
+    this.analyzer.reload();
+    return this.analyzer.getPlugins();
+  }
+
+  @Benchmark
+  public void cssImports() {
+    this.cssUpdater.run();
+  }
+
+  @State(Scope.Benchmark)
+  public static class Change {
+    private boolean added;
+
+    @Setup(Level.Invocation)
+    public void change(PluginScanBenchmark benchmark) throws IOException {
+      File module = new File(benchmark.getPluginsDir(), "p1/src/changed.js");
+      if (this.added) {
+        module.delete();
+      } else {
+        FileUtils.write(module, "define([], function() {});");
+      }
+      this.added = !this.added;
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package org.geoladris.benchmarks;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.FilterChain;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletException;
+
+import org.apache.commons.io.FileUtils;
+import org.geoladris.Geoladris;
+import org.geoladris.PluginDirsAnalyzer;
+import org.geoladris.TestingServletContext;
+import org.geoladris.config.Config;
+import org.geoladris.config.ConfigImpl;
+import org.geoladris.config.PluginConfigProvider;
+import org.geoladris.servlet.RedirectFilter;
+import org.geoladris.servlet.RequestClassifier;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Latency of {@link RedirectFilter} resolving a single request, for the different kinds of paths:
+ * </p>
+ *
+ * <ul>
+ * <li><code>plugin</code>: module of a plugin (<code>/p1/m0.js</code>).</li>
+ * <li><code>root</code>: module of a plugin installed in root (<code>/m0.js</code>).</li>
+ * <li><code>css</code>, <code>jslib</code>, <code>node_modules</code>: resources under those
+ * prefixes.</li>
+ * <li><code>miss</code>: path that does not resolve to any plugin resource.</li>
+ * <li><code>static</code>: path under <code>/static</code>, bypassed by the request
+ * classifier.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedirectFilterBenchmark {
+  private static final String CONTEXT_PATH = "/geoladris";
+
+  @Param({"50", "500"})
+  public int plugins;
+
+  @Param({"plugin", "root", "css", "jslib", "node_modules", "miss", "static"})
+  public String kind;
+
+  private File configDir, warDir;
+  private PluginDirsAnalyzer analyzer;
+  private Config config;
+
+  private TestingServletContext context;
+  private RedirectFilter filter;
+  private FilterChain chain;
+
+  @Setup(Level.Trial)
+  public void setupConfig() throws IOException {
+    this.configDir = new SyntheticConfig(this.plugins, 5, 5, 0, 1, 0).create();
+    this.warDir = new File(this.configDir, "war");
+    this.warDir.mkdirs();
+    this.analyzer = new PluginDirsAnalyzer(new File(this.configDir, Config.DIR_PLUGINS));
+    this.config = new ConfigImpl(this.configDir, new ArrayList<PluginConfigProvider>(),
+        this.analyzer.getPlugins(), true, -1);
+  }
+
+  @Setup(Level.Iteration)
+  public void setupRequest() throws Exception {
+    this.context = new TestingServletContext();
+    this.context.servletContext.setAttribute(Geoladris.ATTR_CONFIG, this.config);
+    this.context.servletContext.setAttribute(Geoladris.ATTR_REQUEST_CLASSIFIER,
+        new RequestClassifier(this.analyzer));
+    when(this.context.servletContext.getResource(anyString())).then(new Answer<URL>() {
+      @Override
+      public URL answer(InvocationOnMock invocation) throws Throwable {
+        File file = new File(warDir, invocation.getArguments()[0].toString());
+        return file.exists() ? file.toURI().toURL() : null;
+      }
+    });
+    when(this.context.request.getRequestDispatcher(anyString()))
+        .thenReturn(mock(RequestDispatcher.class));
+    this.context.setContextPath(CONTEXT_PATH);
+    when(this.context.request.getRequestURI()).thenReturn(CONTEXT_PATH + getPath());
+    this.context.request.setAttribute(Geoladris.ATTR_LOCALE, Locale.ENGLISH);
+
+    this.chain = mock(FilterChain.class);
+    this.filter = new RedirectFilter();
+    this.filter.init(this.context.filterConfig);
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    FileUtils.deleteDirectory(this.configDir);
+  }
+
+  private String getPath() {
+    switch (this.kind) {
+      case "plugin":
+        return "/p1/m0.js";
+      case "root":
+        return "/m0.js";
+      case "css":
+        return "/css/p1/m0.css";
+      case "jslib":
+        return "/jslib/lib1.js";
+      case "node_modules":
+        return "/node_modules/dep1/index.js";
+      case "miss":
+        return "/p1/missing.js";
+      case "static":
+        return "/static/logo.png";
+      default:
+        throw new IllegalArgumentException("Unknown kind: " + this.kind);
+    }
+  }
+
+  @Benchmark
+  public void doFilter() throws IOException, ServletException {
+    // Classify on each request, as the container would do with a new request
+    this.context.request.setAttribute(Geoladris.ATTR_REQUEST_TYPE, null);
+    this.filter.doFilter(this.context.request, this.context.response, this.chain);
+  }
+}
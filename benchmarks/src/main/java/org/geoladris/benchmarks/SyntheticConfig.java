@@ -0,0 +1,190 @@
+package org.geoladris.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.geoladris.config.Config;
+import org.geoladris.config.providers.PublicConfProvider;
+import org.geoladris.config.providers.RoleConfigProvider;
+
+import net.sf.json.JSONObject;
+
+/**
+ * <p>
+ * Generates a configuration directory with the given number of plugins, modules, configuration
+ * keys, roles, languages and messages:
+ * </p>
+ *
+ * <ul>
+ * <li><code>plugins/p&lt;i&gt;/</code>: plugin descriptor with a default configuration for each
+ * module, <code>src/m&lt;j&gt;.js</code> modules, <code>css/m&lt;j&gt;.css</code> styles,
+ * <code>jslib/lib&lt;i&gt;.js</code> and <code>node_modules/dep&lt;i&gt;/index.js</code>. One out
+ * of {@value #ROOT_PLUGIN_RATIO} plugins is installed in root.</li>
+ * <li><code>public-conf.json</code>: overrides one key of every module.</li>
+ * <li><code>role_conf/role&lt;r&gt;.json</code>: overrides one out of {@value #ROLE_PLUGIN_RATIO}
+ * plugins.</li>
+ * <li><code>messages/messages_&lt;lang&gt;.properties</code> and <code>portal.properties</code>
+ * with the languages.</li>
+ * </ul>
+ */
+public class SyntheticConfig {
+  public static final int ROOT_PLUGIN_RATIO = 10;
+  public static final int ROLE_PLUGIN_RATIO = 10;
+
+  private static final String[] LANGUAGES =
+      new String[] {"en", "es", "fr", "pt", "de", "it", "ca", "gl"};
+  public static final int MAX_LANGUAGES = LANGUAGES.length;
+
+  private int plugins, modules, keys, roles, languages, messages;
+
+  /**
+   * @param plugins Number of plugins.
+   * @param modules Number of modules per plugin.
+   * @param keys Number of configuration keys per module.
+   * @param roles Number of roles.
+   * @param languages Number of languages, between 1 and {@link #MAX_LANGUAGES}.
+   * @param messages Number of messages per language.
+   */
+  public SyntheticConfig(int plugins, int modules, int keys, int roles, int languages,
+      int messages) {
+    this.plugins = plugins;
+    this.modules = modules;
+    this.keys = keys;
+    this.roles = roles;
+    this.languages = Math.max(1, Math.min(languages, MAX_LANGUAGES));
+    this.messages = messages;
+  }
+
+  /**
+   * Creates a new temporary configuration directory.
+   *
+   * @return the configuration directory.
+   * @throws IOException
+   */
+  public File create() throws IOException {
+    File dir = File.createTempFile("geoladris-benchmark", "");
+    dir.delete();
+    write(dir);
+    return dir;
+  }
+
+  public void write(File dir) throws IOException {
+    File pluginsDir = new File(dir, Config.DIR_PLUGINS);
+    JSONObject publicConf = new JSONObject();
+    List<JSONObject> roleConfs = new ArrayList<>();
+    for (int r = 0; r < this.roles; r++) {
+      roleConfs.add(new JSONObject());
+    }
+
+    for (int i = 0; i < this.plugins; i++) {
+      String name = getPluginName(i);
+      File pluginDir = new File(pluginsDir, name);
+
+      JSONObject defaultConf = new JSONObject();
+      JSONObject publicPluginConf = new JSONObject();
+      for (int j = 0; j < this.modules; j++) {
+        String module = getModuleName(j);
+        JSONObject moduleConf = new JSONObject();
+        for (int k = 0; k < this.keys; k++) {
+          moduleConf.element("k" + k, k % 2 == 0 ? "value " + k : (Object) k);
+        }
+        defaultConf.element(module, moduleConf);
+        publicPluginConf.element(module, new JSONObject().element("k0", "public"));
+
+        FileUtils.write(new File(pluginDir, "src/" + module + ".js"),
+            "define([], function() { return '" + name + "/" + module + "'; });");
+        FileUtils.write(new File(pluginDir, "css/" + module + ".css"),
+            "." + name + "-" + module + " { color: black; }");
+      }
+      FileUtils.write(new File(pluginDir, "jslib/lib" + i + ".js"), "var lib" + i + ";");
+      FileUtils.write(new File(pluginDir, "node_modules/dep" + i + "/index.js"),
+          "module.exports = " + i + ";");
+
+      JSONObject descriptor = new JSONObject();
+      descriptor.element("installInRoot", isInstalledInRoot(i));
+      descriptor.element("default-conf", defaultConf);
+      descriptor.element("requirejs", new JSONObject().element("paths",
+          new JSONObject().element("lib" + i, "../jslib/lib" + i)));
+      FileUtils.write(new File(pluginDir, "geoladris.json"), descriptor.toString());
+
+      publicConf.element(name, publicPluginConf);
+      if (i % ROLE_PLUGIN_RATIO == 0) {
+        for (int r = 0; r < this.roles; r++) {
+          JSONObject roleConf = new JSONObject().element(getModuleName(0),
+              new JSONObject().element("k0", "role" + r));
+          roleConfs.get(r).element(name, roleConf);
+        }
+      }
+    }
+
+    FileUtils.write(new File(dir, PublicConfProvider.FILE), publicConf.toString());
+    for (int r = 0; r < this.roles; r++) {
+      File roleFile = new File(dir, RoleConfigProvider.ROLE_DIR + "/" + getRoleName(r) + ".json");
+      FileUtils.write(roleFile, roleConfs.get(r).toString());
+    }
+
+    JSONObject languages = new JSONObject();
+    for (int l = 0; l < this.languages; l++) {
+      String lang = LANGUAGES[l];
+      languages.element(lang, new Locale(lang).getDisplayLanguage(Locale.ENGLISH));
+      File messagesFile =
+          new File(dir, Config.DIR_MESSAGES + "/messages_" + lang + ".properties");
+      writeMessages(messagesFile, lang);
+    }
+    writeMessages(new File(dir, Config.DIR_MESSAGES + "/messages.properties"), "default");
+
+    Properties portal = new Properties();
+    portal.put(Config.PROPERTY_LANGUAGES, languages.toString());
+    portal.put("languages.default", LANGUAGES[0]);
+    portal.put(Config.PROPERTY_MAP_CENTER, "0,0");
+    portal.put("map.initialZoomLevel", "5");
+    FileUtils.write(new File(dir, "portal.properties"), toString(portal));
+
+    new File(dir, Config.DIR_STATIC).mkdirs();
+  }
+
+  private void writeMessages(File file, String lang) throws IOException {
+    Properties properties = new Properties();
+    properties.put("title", "Title " + lang);
+    for (int m = 0; m < this.messages; m++) {
+      properties.put("message" + m, "Message " + m + " (" + lang + ")");
+    }
+    FileUtils.write(file, toString(properties));
+  }
+
+  private static String toString(Properties properties) throws IOException {
+    StringWriter writer = new StringWriter();
+    properties.store(writer, null);
+    return writer.toString();
+  }
+
+  public int getPlugins() {
+    return this.plugins;
+  }
+
+  public String getLanguage(int index) {
+    return LANGUAGES[index % this.languages];
+  }
+
+  public static String getPluginName(int index) {
+    return "p" + index;
+  }
+
+  public static String getModuleName(int index) {
+    return "m" + index;
+  }
+
+  public static String getRoleName(int index) {
+    return "role" + index;
+  }
+
+  public static boolean isInstalledInRoot(int index) {
+    return index % ROOT_PLUGIN_RATIO == 0;
+  }
+}
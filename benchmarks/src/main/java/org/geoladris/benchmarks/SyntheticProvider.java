@@ -0,0 +1,43 @@
+package org.geoladris.benchmarks;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.geoladris.config.Config;
+import org.geoladris.config.PluginConfigProvider;
+
+import net.sf.json.JSONObject;
+
+/**
+ * In-memory {@link PluginConfigProvider} that overrides one module of one out of
+ * <code>step</code> plugins, so benchmarks can have an arbitrary number of providers.
+ */
+public class SyntheticProvider implements PluginConfigProvider {
+  private Map<String, JSONObject> config;
+  private boolean canBeCached;
+
+  public SyntheticProvider(int index, int plugins, int step, boolean canBeCached) {
+    this.canBeCached = canBeCached;
+    Map<String, JSONObject> config = new HashMap<>();
+    for (int i = index % step; i < plugins; i += step) {
+      JSONObject moduleConf = new JSONObject().element("provider", index);
+      config.put(SyntheticConfig.getPluginName(i),
+          new JSONObject().element(SyntheticConfig.getModuleName(0), moduleConf));
+    }
+    this.config = Collections.unmodifiableMap(config);
+  }
+
+  @Override
+  public Map<String, JSONObject> getPluginConfig(Config config,
+      Map<String, JSONObject> currentConfig, HttpServletRequest request) {
+    return this.config;
+  }
+
+  @Override
+  public boolean canBeCached() {
+    return this.canBeCached;
+  }
+}
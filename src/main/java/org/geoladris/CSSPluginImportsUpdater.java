@@ -11,6 +11,7 @@ import org.apache.commons.io.filefilter.AbstractFileFilter;
 import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.apache.log4j.Logger;
 import org.geoladris.config.Config;
+import org.geoladris.metrics.Metrics;
 
 public class CSSPluginImportsUpdater implements Runnable {
   private static final Logger logger = Logger.getLogger(CSSPluginImportsUpdater.class);
@@ -18,13 +19,19 @@ public class CSSPluginImportsUpdater implements Runnable {
   static final String FILE = "plugin_imports.css";
 
   private Config config;
+  private Metrics metrics = new Metrics();
 
   public CSSPluginImportsUpdater(Config config) {
     this.config = config;
   }
 
+  public void setMetrics(Metrics metrics) {
+    this.metrics = metrics;
+  }
+
   @Override
   public void run() {
+    long start = System.nanoTime();
     File staticDir = new File(this.config.getDir(), Config.DIR_STATIC);
     File pluginsDir = new File(this.config.getDir(), Config.DIR_PLUGINS);
 
@@ -37,6 +44,7 @@ public class CSSPluginImportsUpdater implements Runnable {
     } catch (IOException e) {
       logger.error("Cannot update " + FILE, e);
     }
+    this.metrics.histogram(Metrics.CSS_IMPORTS_DURATION).recordSince(start);
   }
 
   private String getCssFromDir(File dir, String prefix) {
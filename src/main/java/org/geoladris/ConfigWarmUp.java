@@ -0,0 +1,147 @@
+package org.geoladris;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.log4j.Logger;
+import org.geoladris.config.Config;
+import org.geoladris.config.RequestSnapshot;
+import org.geoladris.config.providers.RoleConfigProvider;
+import org.geoladris.metrics.Metrics;
+
+/**
+ * <p>
+ * Fills the configuration caches for every language in the {@value Config#PROPERTY_LANGUAGES}
+ * property and every role in <code>&lt;config_dir&gt;/</code>{@value RoleConfigProvider#ROLE_DIR},
+ * plus no role at all, so the first users after a deploy do not pay for them.
+ * </p>
+ *
+ * <p>
+ * Each combination is computed with a synthetic request that has the locale and the role, as
+ * {@link org.geoladris.servlet.LangFilter} and the login would set them. Progress is logged and
+ * recorded in the {@link Metrics#WARM_UP_REMAINING} gauge; {@link #isReady()} returns
+ * <code>true</code> once every combination has been computed, even if some of them failed.
+ * </p>
+ */
+public class ConfigWarmUp implements Runnable {
+  private static final Logger logger = Logger.getLogger(ConfigWarmUp.class);
+
+  private static final String ROLE_EXTENSION = ".json";
+
+  private Config config;
+  private Metrics metrics = new Metrics();
+  private volatile boolean ready;
+
+  public ConfigWarmUp(Config config) {
+    this.config = config;
+  }
+
+  public void setMetrics(Metrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * @return true if the warm-up has finished.
+   */
+  public boolean isReady() {
+    return this.ready;
+  }
+
+  @Override
+  public void run() {
+    try {
+      warmUp();
+    } finally {
+      this.ready = true;
+    }
+  }
+
+  private void warmUp() {
+    long start = System.currentTimeMillis();
+    List<Locale> locales = getLocales();
+    List<String> roles = getRoles();
+    int total = locales.size() * roles.size();
+    logger.info("Warming up configuration for " + locales.size() + " languages and "
+        + (roles.size() - 1) + " roles");
+
+    int done = 0;
+    int failed = 0;
+    for (Locale locale : locales) {
+      for (String role : roles) {
+        this.metrics.gauge(Metrics.WARM_UP_REMAINING).set(total - done);
+        try {
+          this.config.getMessages(locale);
+          this.config.getMessagesJSON(locale);
+          this.config.getPluginConfig(locale, getRequest(locale, role));
+        } catch (RuntimeException e) {
+          failed++;
+          logger.warn("Cannot warm up configuration for language " + locale + " and role "
+              + role, e);
+        }
+        done++;
+        logger.debug("Warmed up configuration for language " + locale + " and role " + role
+            + " (" + done + "/" + total + ")");
+      }
+      logger.info("Warmed up configuration for language " + locale + " (" + done + "/" + total
+          + ")");
+    }
+
+    this.metrics.gauge(Metrics.WARM_UP_REMAINING).set(0);
+    logger.info("Configuration warm-up finished in " + (System.currentTimeMillis() - start)
+        + " ms" + (failed > 0 ? " with " + failed + " failures" : ""));
+  }
+
+  private List<Locale> getLocales() {
+    List<Locale> ret = new ArrayList<>();
+    try {
+      Map<String, String>[] languages = this.config.getLanguages();
+      if (languages != null) {
+        for (Map<String, String> language : languages) {
+          ret.add(new Locale(language.get("code")));
+        }
+      }
+    } catch (RuntimeException e) {
+      logger.warn("Cannot read the languages to warm up", e);
+    }
+    String defaultLang = this.config.getDefaultLang();
+    if (ret.isEmpty() && defaultLang != null) {
+      ret.add(new Locale(defaultLang));
+    }
+    return ret;
+  }
+
+  /**
+   * @return the roles with a configuration file, plus <code>null</code> for no role.
+   */
+  private List<String> getRoles() {
+    List<String> ret = new ArrayList<>();
+    ret.add(null);
+    File dir = new File(this.config.getDir(), RoleConfigProvider.ROLE_DIR);
+    String[] files = dir.list(new FilenameFilter() {
+      @Override
+      public boolean accept(File dir, String name) {
+        return name.endsWith(ROLE_EXTENSION);
+      }
+    });
+    if (files != null) {
+      for (String file : files) {
+        ret.add(file.substring(0, file.length() - ROLE_EXTENSION.length()));
+      }
+    }
+    return ret;
+  }
+
+  private static HttpServletRequest getRequest(Locale locale, String role) {
+    Map<String, Object> session =
+        role != null ? Collections.<String, Object>singletonMap(Geoladris.ATTR_ROLE, role) : null;
+    return RequestSnapshot.create(Collections.<String, Object>singletonMap(Geoladris.ATTR_LOCALE,
+        locale), session);
+  }
+}
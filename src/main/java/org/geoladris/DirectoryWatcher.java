@@ -3,6 +3,7 @@ package org.geoladris;
 import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
 
 import java.io.File;
 import java.io.IOException;
@@ -13,53 +14,132 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.WatchEvent;
+import java.nio.file.WatchEvent.Kind;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
+import org.geoladris.metrics.Counter;
+import org.geoladris.metrics.Histogram;
+import org.geoladris.metrics.Metrics;
 
 public class DirectoryWatcher implements Runnable {
   private static final Logger logger = Logger.getLogger(DirectoryWatcher.class);
 
+  /**
+   * Extensions of the files generated by Geoladris itself inside the watched directories, such as
+   * the {@link GzipSidecarGenerator} sidecars. Changes in them do not run the action; otherwise,
+   * writing them would reload the plugins again.
+   */
+  static final String[] IGNORED =
+      {GzipSidecarGenerator.EXTENSION, GzipSidecarGenerator.TMP_EXTENSION};
+
+  /**
+   * The action runs once no relevant event has arrived for this time, so a file written in several
+   * steps is handled once, after the last one. Under a constant stream of events it runs at least
+   * every {@link #MAX_DELAY_MILLIS}.
+   */
+  static final long QUIET_MILLIS = 100;
+  static final long MAX_DELAY_MILLIS = 1000;
+
   private WatchService watcher;
   private SimpleFileVisitor<Path> registerDir;
 
   private Runnable action;
+  private boolean recursive;
+  private Metrics metrics = new Metrics();
 
   public DirectoryWatcher(Runnable action, File... dirs) throws IOException {
+    this(action, false, dirs);
+  }
+
+  public DirectoryWatcher(Runnable action, boolean modifications, File... dirs)
+      throws IOException {
+    this(action, modifications, true, dirs);
+  }
+
+  /**
+   * @param action The action to run when the directories change.
+   * @param modifications Whether the action must also run when the contents of a file change. If
+   *        <code>false</code>, only file creation and deletion are considered.
+   * @param recursive Whether the subdirectories must be watched too.
+   * @param dirs The directories to watch.
+   * @throws IOException
+   */
+  public DirectoryWatcher(Runnable action, boolean modifications, boolean recursive,
+      File... dirs) throws IOException {
     this.action = action;
+    this.recursive = recursive;
     this.watcher = FileSystems.getDefault().newWatchService();
+    final Kind<?>[] kinds = modifications ? new Kind<?>[] {ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY}
+        : new Kind<?>[] {ENTRY_CREATE, ENTRY_DELETE};
     this.registerDir = new SimpleFileVisitor<Path>() {
       @Override
       public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
           throws IOException {
-        dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE);
+        dir.register(watcher, kinds);
         return FileVisitResult.CONTINUE;
       }
     };
 
     for (File dir : dirs) {
       if (dir.exists() && dir.isDirectory()) {
-        Files.walkFileTree(Paths.get(dir.toURI()), this.registerDir);
+        Path path = Paths.get(dir.toURI());
+        if (recursive) {
+          Files.walkFileTree(path, this.registerDir);
+        } else {
+          path.register(this.watcher, kinds);
+        }
       }
     }
   }
 
+  /**
+   * @param metrics Registry where the number of events and actions are counted, labeled with the
+   *        class of the action.
+   */
+  public void setMetrics(Metrics metrics) {
+    this.metrics = metrics;
+  }
+
   @Override
   public void run() {
-    long lastUpdate = -1;
+    String actionName = this.action.getClass().getName();
+    Counter events = this.metrics.counter(Metrics.WATCHER_EVENTS, Metrics.LABEL_ACTION, actionName);
+    Counter actions =
+        this.metrics.counter(Metrics.WATCHER_ACTIONS, Metrics.LABEL_ACTION, actionName);
+    Histogram durations =
+        this.metrics.histogram(Metrics.WATCHER_ACTION_DURATION, Metrics.LABEL_ACTION, actionName);
+
+    // Time of the first and last relevant events not handled yet; -1 if there are none
+    long firstChange = -1;
+    long lastChange = -1;
     while (true) {
-      // wait for key to be signalled
+      // Wait for a key to be signalled, or for the changes to settle if there are pending ones
       WatchKey key;
       try {
-        key = this.watcher.take();
+        if (firstChange < 0) {
+          key = this.watcher.take();
+        } else {
+          long deadline = Math.min(lastChange + QUIET_MILLIS, firstChange + MAX_DELAY_MILLIS);
+          key = this.watcher.poll(Math.max(0, deadline - System.currentTimeMillis()),
+              TimeUnit.MILLISECONDS);
+        }
       } catch (InterruptedException x) {
         return;
       }
 
-      // Do not update too often; at least 100 ms between updates
-      if (lastUpdate + 100 > System.currentTimeMillis()) {
+      if (key == null) {
+        logger.debug("Executing action because of changes in the watched directories");
+        long start = System.nanoTime();
+        action.run();
+        durations.recordSince(start);
+        actions.inc();
+        firstChange = -1;
+        lastChange = -1;
         continue;
       }
 
@@ -69,37 +149,79 @@ public class DirectoryWatcher implements Runnable {
       } catch (ClassCastException e) {
         logger.error("bug! Watching something that is not a Path?");
         continue;
-
       }
 
-      logger.debug("Executing action because of a change in " + dir.toFile().getAbsolutePath());
-      action.run();
-      lastUpdate = System.currentTimeMillis();
+      List<WatchEvent<?>> pending = key.pollEvents();
+      events.add(pending.size());
+      // Watch new directories right away, so their contents are not missed
+      registerCreatedDirs(dir, pending);
+      key.reset();
 
-      logger.debug("Checking for directory creation");
-      for (WatchEvent<?> event : key.pollEvents()) {
-        if (!event.kind().equals(ENTRY_CREATE)) {
-          continue;
+      if (isRelevant(pending)) {
+        lastChange = System.currentTimeMillis();
+        if (firstChange < 0) {
+          firstChange = lastChange;
         }
+      }
+    }
+  }
+
+  private void registerCreatedDirs(Path dir, List<WatchEvent<?>> events) {
+    if (!this.recursive) {
+      return;
+    }
+
+    for (WatchEvent<?> event : events) {
+      if (!event.kind().equals(ENTRY_CREATE)) {
+        continue;
+      }
 
-        @SuppressWarnings("unchecked")
-        Path child = dir.resolve(((WatchEvent<Path>) event).context());
-        try {
-          if (Files.isDirectory(child, NOFOLLOW_LINKS)) {
-            logger.debug("Watching " + child.toFile().getAbsolutePath());
-            Files.walkFileTree(child, this.registerDir);
-          }
-        } catch (IOException e) {
-          logger.warn("Cannot walk new directory: " + child.toFile().getAbsolutePath(), e);
+      @SuppressWarnings("unchecked")
+      Path child = dir.resolve(((WatchEvent<Path>) event).context());
+      try {
+        if (Files.isDirectory(child, NOFOLLOW_LINKS)) {
+          logger.debug("Watching " + child.toFile().getAbsolutePath());
+          Files.walkFileTree(child, this.registerDir);
         }
+      } catch (IOException e) {
+        logger.warn("Cannot walk new directory: " + child.toFile().getAbsolutePath(), e);
       }
+    }
+  }
 
-      key.reset();
+  /**
+   * @return true if any of the events is not about a generated file (see {@link #IGNORED}).
+   */
+  private static boolean isRelevant(List<WatchEvent<?>> events) {
+    for (WatchEvent<?> event : events) {
+      // Overflow events have no context
+      if (!(event.context() instanceof Path)) {
+        return true;
+      }
+      String name = event.context().toString();
+      boolean ignored = false;
+      for (String extension : IGNORED) {
+        ignored |= name.endsWith(extension);
+      }
+      if (!ignored) {
+        return true;
+      }
     }
+    return false;
   }
 
   public static void watch(Runnable action, File... dirs) throws IOException {
-    DirectoryWatcher watcher = new DirectoryWatcher(action, dirs);
+    watch(action, false, dirs);
+  }
+
+  public static void watch(Runnable action, boolean modifications, File... dirs)
+      throws IOException {
+    watch(action, modifications, true, dirs);
+  }
+
+  public static void watch(Runnable action, boolean modifications, boolean recursive,
+      File... dirs) throws IOException {
+    DirectoryWatcher watcher = new DirectoryWatcher(action, modifications, recursive, dirs);
     new Thread(watcher).start();
   }
 }
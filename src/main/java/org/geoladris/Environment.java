@@ -10,7 +10,42 @@ public class Environment {
 
   public static final String CONFIG_CACHE = "GEOLADRIS_CONFIG_CACHE";
   public static final String CONFIG_DIR = "GEOLADRIS_CONFIG_DIR";
+  /**
+   * Seconds after which cached configurations are refreshed in the background.
+   */
   public static final String CACHE_TIMEOUT = "GEOLADRIS_CACHE_TIMEOUT";
+  /**
+   * Seconds after which cached configurations are computed again before using them. Twice
+   * {@link #CACHE_TIMEOUT} by default.
+   */
+  public static final String CACHE_HARD_TIMEOUT = "GEOLADRIS_CACHE_HARD_TIMEOUT";
+  /**
+   * Maximum time in milliseconds for each configuration provider. Disabled by default.
+   */
+  public static final String PROVIDER_TIMEOUT = "GEOLADRIS_PROVIDER_TIMEOUT";
+  public static final String GZIP_SIDECARS = "GEOLADRIS_GZIP_SIDECARS";
+  public static final String SESSIONLESS_LANG = "GEOLADRIS_SESSIONLESS_LANG";
+  public static final String METRICS = "GEOLADRIS_METRICS";
+  public static final String SERVER_TIMING = "GEOLADRIS_SERVER_TIMING";
+  /**
+   * Whether to fill the configuration caches for all languages and roles on startup. Ignored
+   * unless {@link #CONFIG_CACHE} is set.
+   */
+  public static final String WARM_UP = "GEOLADRIS_WARM_UP";
+  /**
+   * Whether to read plugin configuration from the database given by {@link #JDBC_URL}.
+   */
+  public static final String DB_CONFIG = "GEOLADRIS_DB_CONFIG";
+  /**
+   * Seconds between checks for changes in the database plugin configuration. 30 by default; zero
+   * to disable them.
+   */
+  public static final String DB_CONFIG_POLL = "GEOLADRIS_DB_CONFIG_POLL";
+  /**
+   * Table with the versions of the database plugin configuration. <code>plugin_conf</code> by
+   * default.
+   */
+  public static final String DB_CONFIG_VERSIONS = "GEOLADRIS_DB_CONFIG_VERSIONS";
 
   private static final Environment instance = new Environment();
 
@@ -37,6 +72,30 @@ public class Environment {
     return Boolean.parseBoolean(get(CONFIG_CACHE));
   }
 
+  public boolean getGzipSidecars() {
+    return Boolean.parseBoolean(get(GZIP_SIDECARS));
+  }
+
+  public boolean getSessionlessLang(ServletContext context) {
+    return Boolean.parseBoolean(get(SESSIONLESS_LANG, context));
+  }
+
+  public boolean getMetrics(ServletContext context) {
+    return Boolean.parseBoolean(get(METRICS, context));
+  }
+
+  public boolean getServerTiming(ServletContext context) {
+    return Boolean.parseBoolean(get(SERVER_TIMING, context));
+  }
+
+  public boolean getWarmUp(ServletContext context) {
+    return Boolean.parseBoolean(get(WARM_UP, context));
+  }
+
+  public boolean getDBConfig(ServletContext context) {
+    return Boolean.parseBoolean(get(DB_CONFIG, context));
+  }
+
   public String getConfigDir(ServletContext context) {
     return get(CONFIG_DIR, context);
   }
@@ -5,8 +5,12 @@ import java.util.Locale;
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
+import javax.sql.DataSource;
 
 import org.geoladris.config.Config;
+import org.geoladris.metrics.Metrics;
+import org.geoladris.metrics.ServerTiming;
+import org.geoladris.servlet.RequestClassifier;
 
 public interface Geoladris {
   // Servlet context attributes
@@ -15,11 +19,44 @@ public interface Geoladris {
    */
   String ATTR_CONFIG = "org.geoladris.config";
 
+  /**
+   * {@link RequestClassifier}. Obtain with {@link ServletContext#getAttribute(String)}.
+   */
+  String ATTR_REQUEST_CLASSIFIER = "org.geoladris.requestClassifier";
+
+  /**
+   * {@link Metrics}. Obtain with {@link ServletContext#getAttribute(String)}.
+   */
+  String ATTR_METRICS = "org.geoladris.metrics";
+
+  /**
+   * {@link org.geoladris.ConfigWarmUp}; only if enabled and the configuration is cached. Obtain
+   * with {@link ServletContext#getAttribute(String)}.
+   */
+  String ATTR_WARM_UP = "org.geoladris.warmUp";
+
+  /**
+   * {@link DataSource} pooling connections to the database at <code>JDBC_CONNECTION_URL</code>
+   * ({@link Environment#JDBC_URL}); only if it is set. It is closed when the application stops; do
+   * not close it. Obtain with {@link ServletContext#getAttribute(String)}.
+   */
+  String ATTR_DATA_SOURCE = "org.geoladris.dataSource";
+
   /**
    * {@link Locale}. Obtain with {@link HttpServletRequest#getAttribute(String)}.
    */
   String ATTR_LOCALE = "org.geoladris.request.locale";
 
+  /**
+   * {@link RequestClassifier.Type}. Obtain with {@link RequestClassifier#getType}.
+   */
+  String ATTR_REQUEST_TYPE = "org.geoladris.request.type";
+
+  /**
+   * {@link ServerTiming}. Obtain with {@link ServerTiming#get}.
+   */
+  String ATTR_SERVER_TIMING = "org.geoladris.request.serverTiming";
+
   // Session attributes
   /**
    * String. Obtain with {@link HttpSession#getAttribute(String)}.
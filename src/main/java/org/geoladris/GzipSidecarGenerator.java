@@ -0,0 +1,91 @@
+package org.geoladris;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.AbstractFileFilter;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.apache.log4j.Logger;
+
+/**
+ * Generates the missing or outdated <code>&lt;file&gt;.gz</code> sidecars for the JS/CSS files in
+ * the plugin directories, so they are compressed once per deploy instead of once per request.
+ */
+public class GzipSidecarGenerator implements Runnable {
+  private static final Logger logger = Logger.getLogger(GzipSidecarGenerator.class);
+
+  public static final String EXTENSION = ".gz";
+  static final String TMP_EXTENSION = ".tmp";
+
+  /**
+   * Files smaller than this are not worth compressing.
+   */
+  static final long MIN_SIZE = 1024;
+
+  private File[] dirs;
+
+  public GzipSidecarGenerator(File... dirs) {
+    this.dirs = dirs;
+  }
+
+  public static boolean isCompressible(String path) {
+    String lower = path.toLowerCase();
+    return lower.endsWith(".js") || lower.endsWith(".css");
+  }
+
+  @Override
+  public void run() {
+    int generated = 0;
+    for (File dir : this.dirs) {
+      if (!dir.isDirectory()) {
+        continue;
+      }
+
+      Collection<File> files = FileUtils.listFiles(dir, new AbstractFileFilter() {
+        @Override
+        public boolean accept(File dir, String name) {
+          return isCompressible(name);
+        }
+      }, TrueFileFilter.INSTANCE);
+
+      for (File file : files) {
+        File gz = new File(file.getPath() + EXTENSION);
+        if (file.length() < MIN_SIZE
+            || (gz.exists() && gz.lastModified() >= file.lastModified())) {
+          continue;
+        }
+
+        try {
+          compress(file, gz);
+          generated++;
+        } catch (IOException e) {
+          logger.warn("Cannot generate " + gz.getAbsolutePath(), e);
+        }
+      }
+    }
+
+    if (generated > 0) {
+      logger.info("Generated " + generated + " gzip sidecars");
+    }
+  }
+
+  private void compress(File file, File gz) throws IOException {
+    // Write to a temporary file first so the filter never serves a partial sidecar
+    File tmp = new File(gz.getPath() + TMP_EXTENSION);
+    OutputStream out = new GZIPOutputStream(new FileOutputStream(tmp));
+    try {
+      Files.copy(file.toPath(), out);
+    } finally {
+      out.close();
+    }
+    Files.move(tmp.toPath(), gz.toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+}
@@ -0,0 +1,16 @@
+package org.geoladris;
+
+import org.geoladris.config.MessageBundles;
+
+public class MessagesUpdater implements Runnable {
+  private MessageBundles bundles;
+
+  public MessagesUpdater(MessageBundles bundles) {
+    this.bundles = bundles;
+  }
+
+  @Override
+  public void run() {
+    this.bundles.invalidate();
+  }
+}
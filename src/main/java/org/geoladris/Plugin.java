@@ -6,8 +6,8 @@ import java.util.HashSet;
 import java.util.Set;
 
 import org.apache.commons.io.IOUtils;
+import org.geoladris.config.ConfigTree;
 
-import de.csgis.commons.JSONUtils;
 import net.sf.json.JSONObject;
 import net.sf.json.JSONSerializer;
 
@@ -25,7 +25,7 @@ public class Plugin {
   public static final String CONF_ENABLED = "_enabled";
   public static final String CONF_OVERRIDE = "_override";
 
-  private JSONObject configuration = new JSONObject();
+  private ConfigTree configuration = ConfigTree.EMPTY;
   private HashSet<String> modules = new HashSet<String>();
   private String name;
   private boolean installInRoot, enabled;
@@ -100,39 +100,56 @@ public class Plugin {
     return this.enabled;
   }
 
+  /**
+   * Returns a new copy of the configuration each time; modifying it does not modify the plugin. To
+   * change the configuration use {@link #setConfiguration(JSONObject)}; to read it without copying
+   * use {@link #getConfigurationTree()}.
+   *
+   * @return a copy of the configuration.
+   */
   public JSONObject getConfiguration() {
+    return configuration.toJSON();
+  }
+
+  /**
+   * @return the configuration, with module names qualified with the plugin name unless the plugin
+   *         is installed in root.
+   */
+  public ConfigTree getConfigurationTree() {
     return configuration;
   }
 
   public void setConfiguration(JSONObject configuration) {
-    boolean override = configuration.optBoolean(CONF_OVERRIDE, false);
-    this.enabled = configuration.optBoolean(CONF_ENABLED, this.enabled);
+    setConfiguration(ConfigTree.fromJSON(configuration));
+  }
 
-    JSONObject newConfig = JSONObject.fromObject(configuration.toString());
-    newConfig.remove(CONF_ENABLED);
-    newConfig.remove(CONF_OVERRIDE);
+  public void setConfiguration(ConfigTree configuration) {
+    boolean override = configuration.getBoolean(CONF_OVERRIDE, false);
+    this.enabled = configuration.getBoolean(CONF_ENABLED, this.enabled);
 
+    ConfigTree newConfig = configuration.without(CONF_ENABLED, CONF_OVERRIDE);
     if (!this.installInRoot) {
       // prefix all keys with plugin name
-      JSONObject qualified = new JSONObject();
-      for (Object moduleName : newConfig.keySet()) {
-        qualified.put(this.name + "/" + moduleName, newConfig.get(moduleName));
-      }
-
-      newConfig = qualified;
+      newConfig = newConfig.prefixKeys(this.name + "/");
     }
 
-    this.configuration = override ? newConfig : JSONUtils.merge(this.configuration, newConfig);
+    this.configuration = override ? newConfig : this.configuration.merge(newConfig);
   }
 
   public boolean isInstallInRoot() {
     return installInRoot;
   }
 
+  /**
+   * Creates a copy of the plugin. The configuration and the descriptor are never modified, so they
+   * are shared with the copy.
+   *
+   * @return the copy.
+   */
   @SuppressWarnings("unchecked")
   public Plugin clonePlugin() {
-    Plugin ret = new Plugin(this.name, this.installInRoot, JSONObject.fromObject(this.descriptor));
-    ret.configuration = JSONObject.fromObject(this.configuration);
+    Plugin ret = new Plugin(this.name, this.installInRoot, this.descriptor);
+    ret.configuration = this.configuration;
     ret.modules = (HashSet<String>) this.modules.clone();
     return ret;
   }
@@ -142,7 +159,12 @@ public class Plugin {
     return name;
   }
 
+  /**
+   * @return a copy of the <code>requirejs</code> object in the descriptor.
+   */
   public JSONObject getRequireJS() {
-    return this.descriptor.getJSONObject(PROP_REQUIREJS);
+    JSONObject requirejs = this.descriptor.getJSONObject(PROP_REQUIREJS);
+    return requirejs != null && !requirejs.isNullObject() ? JSONObject.fromObject(requirejs)
+        : requirejs;
   }
 }
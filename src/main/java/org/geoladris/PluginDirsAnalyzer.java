@@ -3,6 +3,7 @@ package org.geoladris;
 import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -17,7 +18,7 @@ public class PluginDirsAnalyzer {
   public static final String MODULES = "src";
   public static final String CONF_FILE = "geoladris.json";
 
-  private Set<Plugin> plugins;
+  private volatile Set<Plugin> plugins;
   private File[] pluginsDirs;
 
   public PluginDirsAnalyzer(File... pluginsDirs) {
@@ -25,14 +26,19 @@ public class PluginDirsAnalyzer {
     reload();
   }
 
+  /**
+   * Scans the plugin directories again. The new plugins replace the previous ones once the scan
+   * has finished, so concurrent calls to {@link #getPlugins()} never see a partial set.
+   */
   public void reload() {
-    this.plugins = new HashSet<>();
+    Set<Plugin> plugins = new HashSet<>();
     for (File pluginsDir : this.pluginsDirs) {
-      scanPluginsDir(pluginsDir);
+      scanPluginsDir(pluginsDir, plugins);
     }
+    this.plugins = Collections.unmodifiableSet(plugins);
   }
 
-  private void scanPluginsDir(File pluginsDir) {
+  private void scanPluginsDir(File pluginsDir, Set<Plugin> ret) {
     if (!pluginsDir.isDirectory()) {
       return;
     }
@@ -61,7 +67,7 @@ public class PluginDirsAnalyzer {
       } catch (IOException e) {
         plugin = new Plugin(name, false);
       }
-      this.plugins.add(plugin);
+      ret.add(plugin);
 
       File modulesDir = new File(pluginDir, MODULES);
       if (modulesDir.isDirectory()) {
@@ -81,6 +87,9 @@ public class PluginDirsAnalyzer {
     }
   }
 
+  /**
+   * @return the plugins found by the last scan. The set cannot be modified.
+   */
   public Set<Plugin> getPlugins() {
     return plugins;
   }
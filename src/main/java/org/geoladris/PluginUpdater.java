@@ -1,19 +1,33 @@
 package org.geoladris;
 
+import java.util.concurrent.TimeUnit;
+
 import org.geoladris.config.Config;
+import org.geoladris.metrics.Metrics;
 
 public class PluginUpdater implements Runnable {
   private PluginDirsAnalyzer analyzer;
   private Config config;
+  private Metrics metrics = new Metrics();
 
   public PluginUpdater(PluginDirsAnalyzer analyzer, Config config) {
     this.analyzer = analyzer;
     this.config = config;
   }
 
+  public void setMetrics(Metrics metrics) {
+    this.metrics = metrics;
+  }
+
   @Override
   public void run() {
+    long start = System.nanoTime();
     this.analyzer.reload();
+    long duration = System.nanoTime() - start;
+    this.metrics.histogram(Metrics.PLUGIN_SCAN_DURATION).record(duration);
+    this.metrics.gauge(Metrics.PLUGIN_SCAN_LAST_DURATION_MILLIS)
+        .set(TimeUnit.NANOSECONDS.toMillis(duration));
+
     this.config.setPlugins(this.analyzer.getPlugins());
   }
 }
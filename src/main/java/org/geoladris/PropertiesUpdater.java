@@ -0,0 +1,16 @@
+package org.geoladris;
+
+import org.geoladris.config.ConfigImpl;
+
+public class PropertiesUpdater implements Runnable {
+  private ConfigImpl config;
+
+  public PropertiesUpdater(ConfigImpl config) {
+    this.config = config;
+  }
+
+  @Override
+  public void run() {
+    this.config.updateProperties();
+  }
+}
@@ -0,0 +1,147 @@
+package org.geoladris;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * Logs messages that can be repeated on every request (i.e. in hot paths) at most once per interval
+ * and key. Repetitions within the interval are counted and the count is reported with the next
+ * message that is actually logged.
+ * </p>
+ *
+ * <p>
+ * Keys identify the message, not its text: i.e. the name of a missing plugin or the class of an
+ * exception.
+ * </p>
+ */
+public class ThrottledLogger {
+  public static final long DEFAULT_INTERVAL = 60 * 1000;
+
+  /**
+   * Maximum number of keys to keep track of. If exceeded, the keys that have not been logged within
+   * the interval are forgotten (they would be logged anyway) or, if there are none, the one logged
+   * longest ago.
+   */
+  static final int MAX_KEYS = 1000;
+
+  private Logger logger;
+  private long interval;
+  private ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+  public ThrottledLogger(Logger logger) {
+    this(logger, DEFAULT_INTERVAL);
+  }
+
+  /**
+   * @param logger
+   * @param interval Minimum time in milliseconds between two messages with the same key.
+   */
+  public ThrottledLogger(Logger logger, long interval) {
+    this.logger = logger;
+    this.interval = interval;
+  }
+
+  public void info(String key, String message) {
+    int suppressed = acquire(key);
+    if (suppressed >= 0) {
+      this.logger.info(message + suffix(suppressed));
+    }
+  }
+
+  public void warn(String key, String message) {
+    int suppressed = acquire(key);
+    if (suppressed >= 0) {
+      this.logger.warn(message + suffix(suppressed));
+    }
+  }
+
+  public void error(String key, String message) {
+    int suppressed = acquire(key);
+    if (suppressed >= 0) {
+      this.logger.error(message + suffix(suppressed));
+    }
+  }
+
+  public void error(String key, String message, Throwable t) {
+    int suppressed = acquire(key);
+    if (suppressed >= 0) {
+      this.logger.error(message + suffix(suppressed), t);
+    }
+  }
+
+  /**
+   * @param key
+   * @return the number of messages suppressed since the last one for the given key if a message
+   *         must be logged now; -1 if it must be suppressed.
+   */
+  int acquire(String key) {
+    return acquire(key, System.currentTimeMillis());
+  }
+
+  int acquire(String key, long now) {
+    Entry entry = this.entries.get(key);
+    if (entry == null) {
+      if (this.entries.size() >= MAX_KEYS) {
+        evict(now);
+      }
+      entry = new Entry();
+      Entry previous = this.entries.putIfAbsent(key, entry);
+      if (previous != null) {
+        entry = previous;
+      }
+    }
+
+    long last = entry.lastLogged.get();
+    if (last == Long.MIN_VALUE || now - last >= this.interval) {
+      if (entry.lastLogged.compareAndSet(last, now)) {
+        return entry.suppressed.getAndSet(0);
+      }
+    }
+    entry.suppressed.incrementAndGet();
+    return -1;
+  }
+
+  private void evict(long now) {
+    Iterator<Entry> iterator = this.entries.values().iterator();
+    while (iterator.hasNext()) {
+      if (now - iterator.next().lastLogged.get() >= this.interval) {
+        iterator.remove();
+      }
+    }
+
+    if (this.entries.size() >= MAX_KEYS) {
+      String oldest = null;
+      long oldestTime = Long.MAX_VALUE;
+      for (Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+        long time = entry.getValue().lastLogged.get();
+        if (time < oldestTime) {
+          oldest = entry.getKey();
+          oldestTime = time;
+        }
+      }
+      if (oldest != null) {
+        this.entries.remove(oldest);
+      }
+    }
+  }
+
+  int size() {
+    return this.entries.size();
+  }
+
+  private static String suffix(int suppressed) {
+    return suppressed > 0 ? " (" + suppressed + " similar messages suppressed)" : "";
+  }
+
+  private static class Entry {
+    private final AtomicLong lastLogged = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicInteger suppressed = new AtomicInteger();
+  }
+}
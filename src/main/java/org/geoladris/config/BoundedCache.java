@@ -0,0 +1,62 @@
+package org.geoladris.config;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * Cache with an approximate maximum size that can be read and written concurrently without
+ * locking. When it grows over the maximum, arbitrary entries are discarded; concurrent writes may
+ * exceed the maximum briefly.
+ * </p>
+ *
+ * @param <K> Type of the keys.
+ * @param <V> Type of the values.
+ */
+public class BoundedCache<K, V> {
+  private final int maxSize;
+  private final ConcurrentMap<K, V> entries = new ConcurrentHashMap<>();
+
+  /**
+   * @param maxSize Maximum number of entries to keep.
+   */
+  public BoundedCache(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * @param key
+   * @return the cached value for the key or <code>null</code> if there is none.
+   */
+  public V get(K key) {
+    return this.entries.get(key);
+  }
+
+  public void put(K key, V value) {
+    this.entries.put(key, value);
+    if (this.entries.size() > this.maxSize) {
+      evict(key);
+    }
+  }
+
+  /**
+   * @param added Key just added, which is kept.
+   */
+  private void evict(K added) {
+    Iterator<K> keys = this.entries.keySet().iterator();
+    while (this.entries.size() > this.maxSize && keys.hasNext()) {
+      if (!keys.next().equals(added)) {
+        keys.remove();
+      }
+    }
+  }
+
+  public int size() {
+    return this.entries.size();
+  }
+
+  public void clear() {
+    this.entries.clear();
+  }
+}
@@ -0,0 +1,26 @@
+package org.geoladris.config;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * <p>
+ * {@link PluginConfigProvider} whose output can be cached for all the requests that share the same
+ * cache key (i.e. the same role, locale, etc.).
+ * </p>
+ *
+ * <p>
+ * For these providers, {@link #getCacheKey(Config, HttpServletRequest)} is used instead of
+ * {@link #canBeCached()}.
+ * </p>
+ */
+public interface CacheablePluginConfigProvider extends PluginConfigProvider {
+  /**
+   * @param config
+   * @param request Request that loads the application
+   * @return a key that identifies the output of
+   *         {@link #getPluginConfig(Config, java.util.Map, HttpServletRequest)} for the given
+   *         request; all the requests with the same key must get the same configuration.
+   *         <code>null</code> if the output for this request must not be cached.
+   */
+  String getCacheKey(Config config, HttpServletRequest request);
+}
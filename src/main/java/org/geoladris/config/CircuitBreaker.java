@@ -0,0 +1,106 @@
+package org.geoladris.config;
+
+import java.util.Locale;
+
+import org.apache.log4j.Logger;
+import org.geoladris.metrics.Metrics;
+
+/**
+ * <p>
+ * Circuit breaker for a {@link PluginConfigProvider}. After a number of consecutive failures
+ * (exceptions or timeouts) the circuit opens and the provider is not called for a while. Then a
+ * single call is let through: if it succeeds the circuit closes again, otherwise it opens for
+ * another period.
+ * </p>
+ *
+ * <p>
+ * State transitions are logged and recorded in the {@link Metrics#PROVIDER_CIRCUIT_STATE} gauge
+ * and the {@link Metrics#PROVIDER_CIRCUIT_TRANSITIONS} counter.
+ * </p>
+ */
+class CircuitBreaker {
+  private static final Logger logger = Logger.getLogger(CircuitBreaker.class);
+
+  enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private String name;
+  private int failureThreshold;
+  private long openMillis;
+  private Metrics metrics;
+
+  private State state = State.CLOSED;
+  private int failures;
+  private long openedAt;
+
+  /**
+   * @param name Name of the provider.
+   * @param failureThreshold Number of consecutive failures that open the circuit.
+   * @param openMillis Time in milliseconds the circuit stays open before trying again.
+   * @param metrics
+   */
+  CircuitBreaker(String name, int failureThreshold, long openMillis, Metrics metrics) {
+    this.name = name;
+    this.failureThreshold = failureThreshold;
+    this.openMillis = openMillis;
+    this.metrics = metrics;
+    metrics.gauge(Metrics.PROVIDER_CIRCUIT_STATE, Metrics.LABEL_PROVIDER, name)
+        .set(State.CLOSED.ordinal());
+  }
+
+  /**
+   * @param now Current time in milliseconds.
+   * @return true if the provider can be called. If so, {@link #onSuccess()} or
+   *         {@link #onFailure(long)} must be called afterwards.
+   */
+  synchronized boolean allowRequest(long now) {
+    switch (this.state) {
+      case CLOSED:
+        return true;
+      case OPEN:
+        if (now - this.openedAt >= this.openMillis) {
+          transition(State.HALF_OPEN);
+          return true;
+        }
+        return false;
+      default:
+        // A trial call is in progress
+        return false;
+    }
+  }
+
+  synchronized void onSuccess() {
+    this.failures = 0;
+    if (this.state != State.CLOSED) {
+      transition(State.CLOSED);
+    }
+  }
+
+  synchronized void onFailure(long now) {
+    this.failures++;
+    if (this.state == State.HALF_OPEN
+        || (this.state == State.CLOSED && this.failures >= this.failureThreshold)) {
+      this.openedAt = now;
+      transition(State.OPEN);
+    }
+  }
+
+  synchronized State getState() {
+    return this.state;
+  }
+
+  private void transition(State state) {
+    this.state = state;
+    this.metrics.gauge(Metrics.PROVIDER_CIRCUIT_STATE, Metrics.LABEL_PROVIDER, this.name)
+        .set(state.ordinal());
+    this.metrics.counter(Metrics.PROVIDER_CIRCUIT_TRANSITIONS, Metrics.LABEL_PROVIDER, this.name,
+        Metrics.LABEL_STATE, state.name().toLowerCase(Locale.ROOT)).inc();
+    if (state == State.OPEN) {
+      logger.warn("Circuit for provider " + this.name + " is open after " + this.failures
+          + " failures. Using its last known good output for " + this.openMillis + " ms");
+    } else {
+      logger.info("Circuit for provider " + this.name + " is " + state);
+    }
+  }
+}
@@ -16,9 +16,11 @@ public interface Config {
   String PROPERTY_CLIENT_MODULES = "client.modules";
   String PROPERTY_MAP_CENTER = "map.centerLonLat";
   String PROPERTY_LANGUAGES = "languages";
+  String PROPERTY_INITIAL_ZOOM_LEVEL = "map.initialZoomLevel";
 
   String DIR_STATIC = "static";
   String DIR_PLUGINS = "plugins";
+  String DIR_MESSAGES = "messages";
 
   File getDir();
 
@@ -35,20 +37,68 @@ public interface Config {
 
   ResourceBundle getMessages(Locale locale) throws ConfigException;
 
+  /**
+   * @param locale
+   * @return the messages for the given locale as a serialized JSON object, ready to be written in
+   *         the <code>i18n</code> element of the client configuration. By default they are
+   *         serialized on each call; implementations should cache them.
+   */
+  default String getMessagesJSON(Locale locale) throws ConfigException {
+    return MessageBundles.toJSON(getMessages(locale));
+  }
+
+  /**
+   * @deprecated Use {@link #localize(String, Locale)}. This method uses the locale of the last
+   *             call to {@link #getPluginConfig(Locale, HttpServletRequest)}, which is not safe
+   *             when serving concurrent requests.
+   * @param template
+   * @return the localized template.
+   */
+  @Deprecated
   String localize(String template);
 
+  /**
+   * Replaces the <code>${key}</code> placeholders in the template with the messages for the given
+   * locale. Placeholders for missing messages are kept as they are. By default the template is
+   * parsed on each call; implementations should cache it.
+   * 
+   * @param template
+   * @param locale
+   * @return the localized template.
+   */
+  default String localize(String template, Locale locale) {
+    return MessageTemplate.compile(template).render(locale, getMessages(locale));
+  }
+
   /**
    * @param property
    * @return the property as an array or null if the property does not exist.
    */
   String[] getPropertyAsArray(String property);
 
+  /**
+   * @return the {@value #PROPERTY_INITIAL_ZOOM_LEVEL} property or null if it does not exist.
+   */
+  default String getInitialZoomLevel() {
+    return getProperties().getProperty(PROPERTY_INITIAL_ZOOM_LEVEL);
+  }
+
   /**
    * @return The language defined as default in the configuration or null if no language is defined
    *         in the configuration
    */
   String getDefaultLang();
 
+  /**
+   * @return the current snapshot of <code>portal.properties</code>. It is replaced, never
+   *         modified, when the file changes, so it can be used to key values derived from it. By
+   *         default a new snapshot of {@link #getProperties()} is returned on each call;
+   *         implementations should return the same one while the properties do not change.
+   */
+  default PortalProperties getPortalProperties() {
+    return PortalProperties.of(getProperties());
+  }
+
   /**
    * @param locale
    * @param request
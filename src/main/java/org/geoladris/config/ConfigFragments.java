@@ -0,0 +1,65 @@
+package org.geoladris.config;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>
+ * Cache of plugin configurations serialized as UTF-8 JSON object members (without the enclosing
+ * braces), ready to be spliced into a response.
+ * </p>
+ *
+ * <p>
+ * The fragment is kept in the configuration tree itself, so looking up a tree that has already
+ * been serialized does not access any shared state. Other trees are looked up by structure: trees
+ * compare structurally and memoize their hash, and merged trees share the unchanged subtrees of the
+ * layers they were merged from, so looking up a configuration only hashes the parts that changed.
+ * Plugins whose configuration does not depend on the request are never serialized again.
+ * </p>
+ */
+public class ConfigFragments {
+  public static final int DEFAULT_MAX_SIZE = 1024;
+
+  private final BoundedCache<ConfigTree, byte[]> fragments;
+
+  public ConfigFragments() {
+    this(DEFAULT_MAX_SIZE);
+  }
+
+  /**
+   * @param maxSize Approximate maximum number of trees to look up by structure. Arbitrary ones are
+   *        discarded when it is exceeded.
+   */
+  public ConfigFragments(int maxSize) {
+    this.fragments = new BoundedCache<>(maxSize);
+  }
+
+  /**
+   * @param tree
+   * @return the members of the given tree as UTF-8 encoded JSON, without the enclosing braces.
+   *         Empty if the tree is empty. The returned array must not be modified.
+   */
+  public byte[] get(ConfigTree tree) {
+    byte[] ret = tree.getFragment();
+    if (ret != null) {
+      return ret;
+    }
+
+    ret = this.fragments.get(tree);
+    if (ret == null) {
+      StringBuilder sb = new StringBuilder();
+      tree.writeMembers(sb);
+      ret = sb.toString().getBytes(StandardCharsets.UTF_8);
+      this.fragments.put(tree, ret);
+    }
+    tree.setFragment(ret);
+    return ret;
+  }
+
+  public int size() {
+    return this.fragments.size();
+  }
+
+  public void clear() {
+    this.fragments.clear();
+  }
+}
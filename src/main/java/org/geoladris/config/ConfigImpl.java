@@ -1,51 +1,114 @@
 package org.geoladris.config;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.MissingResourceException;
 import java.util.Properties;
-import java.util.PropertyResourceBundle;
 import java.util.ResourceBundle;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import javax.servlet.http.HttpServletRequest;
 
 import org.apache.log4j.Logger;
+import org.geoladris.Geoladris;
 import org.geoladris.Plugin;
+import org.geoladris.ThrottledLogger;
+import org.geoladris.metrics.Counter;
+import org.geoladris.metrics.Histogram;
+import org.geoladris.metrics.Metrics;
+import org.geoladris.metrics.ServerTiming;
 
 import net.sf.json.JSONObject;
 
 public class ConfigImpl implements Config {
   private static final Logger logger = Logger.getLogger(ConfigImpl.class);
-
-  private static final String PROPERTY_DEFAULT_LANG = "languages.default";
+  private static final ThrottledLogger throttledLogger = new ThrottledLogger(logger);
+
+  private static final String DEFAULT_CACHE_KEY = "";
+  private static final int MAX_TEMPLATES = 1024;
+
+  /**
+   * Number of consecutive failures (exceptions or timeouts) of a provider before it stops being
+   * called for {@link #DEFAULT_OPEN_MILLIS}.
+   */
+  public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+  public static final long DEFAULT_OPEN_MILLIS = 30 * 1000;
+  /**
+   * Hard cache timeout as a multiple of the soft one, unless it is set with
+   * {@link #setCacheTimeout(int, int)}.
+   */
+  public static final int DEFAULT_HARD_TIMEOUT_FACTOR = 2;
+
+  // Hung providers hold a thread until their circuit opens; calls over the limit fail
+  private static final int MAX_PROVIDER_THREADS = 32;
+  private static final int MAX_REFRESH_THREADS = 4;
 
   private File configDir;
   private Set<Plugin> plugins;
   private boolean useCache;
   private List<PluginConfigProvider> configProviders;
-  private Locale currentLocale;
-
-  private Map<PluginConfigProvider, Map<String, JSONObject>> cachedConfigurations =
-      new HashMap<PluginConfigProvider, Map<String, JSONObject>>();
-  private Map<Locale, ResourceBundle> localeBundles = new HashMap<Locale, ResourceBundle>();
-  private Properties properties;
-
+  private volatile Locale currentLocale;
+
+  // (provider, cache key) -> plugin name -> configuration
+  private Map<List<Object>, CacheEntry<Map<String, ConfigTree>>> cachedConfigurations =
+      new ConcurrentHashMap<>();
+  // provider keys -> enabled plugins with the merged configuration
+  private Map<List<String>, CacheEntry<Plugin[]>> mergedConfigurations = new ConcurrentHashMap<>();
+  // Incremented when the caches are cleared, so results computed before are not cached
+  private AtomicInteger generation = new AtomicInteger();
+  private volatile long softTimeout = -1;
+  private volatile long hardTimeout = -1;
+  private volatile long lastExpiration = System.currentTimeMillis();
+  private LongSupplier clock = new LongSupplier() {
+    @Override
+    public long getAsLong() {
+      return System.currentTimeMillis();
+    }
+  };
+  // Concurrent misses of the same key wait for a single computation
+  private SingleFlight<List<Object>, ProviderOutput> providerLoads =
+      new MeteredSingleFlight<>("provider");
+  private SingleFlight<List<String>, Plugin[]> merges = new MeteredSingleFlight<>("merge");
+  private MessageBundles messageBundles;
+  private BoundedCache<String, MessageTemplate> templates = new BoundedCache<>(MAX_TEMPLATES);
+  private volatile PortalProperties properties;
+  private Metrics metrics = new Metrics();
+
+  private volatile long providerTimeout = -1;
+  private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+  private long openMillis = DEFAULT_OPEN_MILLIS;
+  private ConcurrentMap<PluginConfigProvider, ProviderState> providerStates =
+      new ConcurrentHashMap<>();
+  // (provider, variant key) -> last successful output; not cleared with the cache
+  private Map<List<Object>, Map<String, ConfigTree>> lastKnownGood = new ConcurrentHashMap<>();
+  private volatile ExecutorService executor;
+  private volatile ExecutorService refreshExecutor;
+  private volatile boolean shutdown;
 
   public ConfigImpl(File configDir, List<PluginConfigProvider> configProviders,
       Set<Plugin> plugins, boolean useCache, int cacheTimeout) {
@@ -53,18 +116,97 @@ public class ConfigImpl implements Config {
     this.plugins = plugins;
     this.useCache = useCache;
     this.configProviders = configProviders;
+    this.messageBundles = new MessageBundles(configDir);
+    setCacheTimeout(cacheTimeout, cacheTimeout * DEFAULT_HARD_TIMEOUT_FACTOR);
+  }
 
-    if (cacheTimeout > 0) {
-      int timeoutMillis = cacheTimeout * 1000;
-      new Timer(true).schedule(new TimerTask() {
-        @Override
-        public void run() {
-          cachedConfigurations.clear();
-          localeBundles.clear();
-          properties = null;
-        }
-      }, timeoutMillis, timeoutMillis);
+  /**
+   * <p>
+   * Sets how long the cached provider outputs and merged plugin configurations are valid. After
+   * the soft timeout, the cached value is still returned but it is computed again in the
+   * background, once per key and with a copy of the request (see {@link RequestSnapshot}). After
+   * the hard timeout, the value is computed again before returning it.
+   * </p>
+   *
+   * <p>
+   * The message bundles and <code>portal.properties</code> are read again after the soft timeout.
+   * </p>
+   *
+   * @param soft Soft timeout in seconds. Zero or negative to cache values until the plugins or the
+   *        configuration change.
+   * @param hard Hard timeout in seconds. Zero or negative to always return the cached values.
+   */
+  public void setCacheTimeout(int soft, int hard) {
+    setCacheTimeoutMillis(soft * 1000L, hard * 1000L);
+  }
+
+  /**
+   * For testing purposes.
+   */
+  void setCacheTimeoutMillis(long soft, long hard) {
+    this.softTimeout = soft;
+    this.hardTimeout = soft > 0 && hard > 0 ? Math.max(soft, hard) : -1;
+  }
+
+  /**
+   * For testing purposes.
+   *
+   * @param clock Source of the current time in milliseconds, used for cache expiration and the
+   *        circuit breakers.
+   */
+  void setClock(LongSupplier clock) {
+    this.clock = clock;
+    this.lastExpiration = clock.getAsLong();
+  }
+
+  /**
+   * For testing purposes.
+   *
+   * @param executor Executor for the background refreshes of stale configurations.
+   */
+  synchronized void setRefreshExecutor(ExecutorService executor) {
+    this.refreshExecutor = executor;
+  }
+
+  private long now() {
+    return this.clock.getAsLong();
+  }
+
+  /**
+   * Invalidates the message bundles and <code>portal.properties</code> and discards the cache
+   * entries past the hard timeout, if the soft timeout has elapsed since the last time.
+   */
+  private void expireCaches() {
+    long timeout = this.softTimeout;
+    long now = now();
+    if (timeout <= 0 || now - this.lastExpiration < timeout) {
+      return;
+    }
+
+    synchronized (this.messageBundles) {
+      if (now - this.lastExpiration < timeout) {
+        return;
+      }
+      this.lastExpiration = now;
+    }
+    // portal.properties is not expired; it is reloaded when it changes (see updateProperties)
+    this.messageBundles.invalidate();
+    this.metrics.counter(Metrics.CACHE_EVICTIONS, Metrics.LABEL_CACHE, "provider")
+        .add(removeExpired(this.cachedConfigurations, now));
+    this.metrics.counter(Metrics.CACHE_EVICTIONS, Metrics.LABEL_CACHE, "merge")
+        .add(removeExpired(this.mergedConfigurations, now));
+  }
+
+  private int removeExpired(Map<?, ? extends CacheEntry<?>> cache, long now) {
+    int ret = 0;
+    Iterator<? extends CacheEntry<?>> iterator = cache.values().iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().isExpired(now, this.hardTimeout)) {
+        iterator.remove();
+        ret++;
+      }
     }
+    return ret;
   }
 
   @Override
@@ -73,113 +215,163 @@ public class ConfigImpl implements Config {
   }
 
   @Override
-  @SuppressWarnings("unchecked")
   public Map<String, String>[] getLanguages() {
-    try {
-      List<Map<String, String>> ret = new ArrayList<Map<String, String>>();
-      JSONObject json = JSONObject.fromObject(getProperty("languages"));
-      for (Object langCode : json.keySet()) {
-        Map<String, String> langObject = new HashMap<String, String>();
-        langObject.put("code", langCode.toString());
-        langObject.put("name", json.getString(langCode.toString()));
-
-        ret.add(langObject);
-      }
-      return ret.toArray(new Map[ret.size()]);
-    } catch (ConfigException e) {
-      return null;
-    }
+    return getPortalProperties().getLanguages();
   }
 
   @Override
   public ResourceBundle getMessages(Locale locale) throws ConfigException {
-    ResourceBundle bundle = localeBundles.get(locale);
-    if (bundle == null || !useCache) {
-      bundle = getResourceBundle(locale);
-    }
-    return bundle;
+    expireCaches();
+    return this.messageBundles.getBundle(locale);
   }
 
-  private ResourceBundle getResourceBundle(Locale locale) {
-    try {
-      URL messagesDir = new File(getDir(), "messages").toURI().toURL();
-      URLClassLoader urlClassLoader = new URLClassLoader(new URL[] {messagesDir});
-      return ResourceBundle.getBundle("messages", locale, urlClassLoader);
-    } catch (MalformedURLException e) {
-      logger.error("Something is wrong with the configuration directory", e);
-      throw new ConfigException(e);
-    } catch (MissingResourceException e) {
-      logger.info("Missing locale bundle: " + locale);
-      try {
-        return new PropertyResourceBundle(new ByteArrayInputStream(new byte[0]));
-      } catch (IOException e1) {
-        // ignore, not an actual IO operation
-        return null;
-      }
-    }
+  @Override
+  public String getMessagesJSON(Locale locale) throws ConfigException {
+    expireCaches();
+    return this.messageBundles.getJSON(locale);
+  }
+
+  /**
+   * @return the registry of message bundles, so it can be invalidated when the messages change.
+   */
+  public MessageBundles getMessageBundles() {
+    return this.messageBundles;
   }
 
   @Override
   public Properties getProperties() {
-    if (this.properties == null || !this.useCache) {
-      this.properties = readProperties();
+    return getPortalProperties().getProperties();
+  }
+
+  /**
+   * <p>
+   * Returns the current snapshot of <code>portal.properties</code>.
+   * </p>
+   *
+   * <p>
+   * If caching is enabled, the snapshot is kept until {@link #updateProperties()} is called (i.e.
+   * by a watcher on the configuration directory). Otherwise the file is checked for changes on
+   * each call and read again only if it has changed.
+   * </p>
+   *
+   * @return the current snapshot of <code>portal.properties</code>.
+   */
+  @Override
+  public PortalProperties getPortalProperties() {
+    expireCaches();
+    PortalProperties ret = this.properties;
+    if (ret == null || (!this.useCache && ret.isStale())) {
+      ret = PortalProperties.read(getDir());
+      this.properties = ret;
     }
-    return properties;
+    return ret;
   }
 
-  private Properties readProperties() {
-    File file = new File(this.getDir(), "portal.properties");
-    logger.debug("Reading portal properties file " + file);
-    Properties properties = new Properties();
-    try {
-      properties.load(new FileInputStream(file));
-    } catch (FileNotFoundException e) {
-      logger.warn("Missing portal.properties file");
-    } catch (IOException e) {
-      logger.error("Error reading portal.properties file", e);
+  /**
+   * Reads <code>portal.properties</code> again if it has changed since the last time it was read.
+   */
+  public void updateProperties() {
+    PortalProperties current = this.properties;
+    if (current == null || current.isStale()) {
+      this.properties = PortalProperties.read(getDir());
     }
-    return properties;
   }
 
   @Override
   public String[] getPropertyAsArray(String property) {
-    try {
-      return getProperty(property).split(",");
-    } catch (ConfigException e) {
-      return null;
-    }
+    return getPortalProperties().getPropertyAsArray(property);
   }
 
-  private String getProperty(String propertyName) throws ConfigException {
-    Properties props = getProperties();
-    String value = props.getProperty(propertyName);
-    if (value != null) {
-      return value;
-    } else {
-      throw new ConfigException(
-          "No \"" + propertyName + "\" property in configuration. Conf folder: "
-              + configDir.getAbsolutePath() + ". Contents: " + props.keySet().size());
-    }
+  @Override
+  public String getInitialZoomLevel() {
+    return getPortalProperties().getInitialZoomLevel();
   }
 
   @Override
   public String getDefaultLang() {
-    try {
-      return getProperty(PROPERTY_DEFAULT_LANG);
-    } catch (ConfigException e) {
-      Map<String, String>[] langs = getLanguages();
-      if (langs != null && langs.length > 0) {
-        return langs[0].get("code");
-      } else {
-        return "en";
-      }
-    }
+    return getPortalProperties().getDefaultLang();
   }
 
   @Override
   public Plugin[] getPluginConfig(Locale locale, HttpServletRequest request) {
     this.currentLocale = locale;
 
+    // The key of the final merge is the key of each provider; null if any of them cannot be cached
+    String[] keys = new String[this.configProviders.size()];
+    boolean cacheMerge = this.useCache;
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = getVariantKey(this.configProviders.get(i), request);
+      cacheMerge &= keys[i] != null;
+    }
+
+    List<String> mergeKey = cacheMerge ? Arrays.asList(keys) : null;
+    long now = now();
+    CacheEntry<Plugin[]> entry = mergeKey != null ? this.mergedConfigurations.get(mergeKey) : null;
+    Plugin[] merged;
+    if (entry == null || entry.isExpired(now, this.hardTimeout)) {
+      if (mergeKey != null) {
+        this.metrics.counter(Metrics.MERGE_CACHE_MISSES).inc();
+      }
+      merged = coalescedMerge(keys, mergeKey, request, false);
+    } else {
+      this.metrics.counter(Metrics.MERGE_CACHE_HITS).inc();
+      merged = entry.value;
+      if (entry.isExpired(now, this.softTimeout) && entry.startRefresh()) {
+        final HttpServletRequest snapshot = snapshot(request);
+        refresh(entry, "merge", new Runnable() {
+          @Override
+          public void run() {
+            coalescedMerge(keys, mergeKey, snapshot, true);
+          }
+        });
+      }
+    }
+
+    // Plugins are mutable; never return the cached ones
+    Plugin[] ret = new Plugin[merged.length];
+    for (int i = 0; i < merged.length; i++) {
+      ret[i] = merged[i].clonePlugin();
+    }
+    return ret;
+  }
+
+  /**
+   * Merges the configuration, waiting for the merge in progress for the same key, if any.
+   */
+  private Plugin[] coalescedMerge(final String[] keys, final List<String> mergeKey,
+      final HttpServletRequest request, final boolean revalidate) {
+    if (mergeKey == null) {
+      return merge(keys, null, request, revalidate);
+    }
+    return this.merges.execute(mergeKey, new Supplier<Plugin[]>() {
+      @Override
+      public Plugin[] get() {
+        return merge(keys, mergeKey, request, revalidate);
+      }
+    });
+  }
+
+  /**
+   * @param revalidate Whether the provider outputs past the soft timeout must be computed again.
+   */
+  private Plugin[] merge(String[] keys, List<String> mergeKey, HttpServletRequest request,
+      boolean revalidate) {
+    ServerTiming timing = ServerTiming.get(request);
+    long start = System.nanoTime();
+    Merge merge = mergePluginConfig(keys, request, revalidate);
+    if (timing != null) {
+      timing.add("merge", null, System.nanoTime() - start - merge.providerNanos);
+    }
+    // Do not keep fallbacks longer than the providers need to recover
+    if (mergeKey != null && !merge.degraded && merge.generation == this.generation.get()) {
+      this.mergedConfigurations.put(mergeKey, new CacheEntry<>(merge.plugins, merge.created));
+    }
+    return merge.plugins;
+  }
+
+  private Merge mergePluginConfig(String[] keys, HttpServletRequest request, boolean revalidate) {
+    Merge merge = new Merge(this.generation.get(), now());
+
     // Get a map: name -> cloned plugin
     Map<String, Plugin> namePluginMap = new HashMap<String, Plugin>();
     for (Plugin plugin : this.plugins) {
@@ -187,44 +379,25 @@ public class ConfigImpl implements Config {
       namePluginMap.put(clone.getName(), clone);
     }
 
-    // PortalRequestConfigurationImpl requestConfig = new PortalRequestConfigurationImpl(locale);
-    Map<String, JSONObject> pluginConfig = new HashMap<>();
-
     // Get the providers configuration and merge it
-    for (PluginConfigProvider provider : this.configProviders) {
-      pluginConfig.clear();
-      for (Plugin plugin : namePluginMap.values()) {
-        JSONObject config = new JSONObject();
-        JSONObject c = plugin.getConfiguration();
-        for (Object key : c.keySet()) {
-          String unqualified = key.toString().substring(plugin.getName().length() + 1);
-          config.element(unqualified, c.get(key));
-        }
-        pluginConfig.put(plugin.getName(), config);
-      }
-
-      Map<String, JSONObject> providerConfig = cachedConfigurations.get(provider);
-      if (providerConfig == null || !useCache || !provider.canBeCached()) {
-        try {
-          providerConfig = provider.getPluginConfig(this, pluginConfig, request);
-          cachedConfigurations.put(provider, providerConfig);
-        } catch (IOException e) {
-          logger.info("Provider failed to contribute configuration: " + provider.getClass());
-        }
-      }
-
+    for (int i = 0; i < keys.length; i++) {
+      PluginConfigProvider provider = this.configProviders.get(i);
+      long start = System.nanoTime();
+      Map<String, ConfigTree> providerConfig =
+          getProviderConfig(provider, keys[i], namePluginMap.values(), request, merge, revalidate);
+      merge.providerNanos += System.nanoTime() - start;
       if (providerConfig == null) {
         continue;
       }
 
       // Merge the configuration in the result
       for (String pluginName : providerConfig.keySet()) {
-        JSONObject pluginConf = providerConfig.get(pluginName);
         Plugin plugin = namePluginMap.get(pluginName);
         if (plugin == null) {
-          logger.warn("Configuration has been defined for a non-existing plugin: " + pluginName);
+          throttledLogger.warn(pluginName,
+              "Configuration has been defined for a non-existing plugin: " + pluginName);
         } else {
-          plugin.setConfiguration(pluginConf);
+          plugin.setConfiguration(providerConfig.get(pluginName));
         }
       }
     }
@@ -237,7 +410,340 @@ public class ConfigImpl implements Config {
       }
     }
 
-    return enabled.toArray(new Plugin[enabled.size()]);
+    merge.plugins = enabled.toArray(new Plugin[enabled.size()]);
+    return merge;
+  }
+
+  /**
+   * @param provider
+   * @param request
+   * @return the key of the variant of the provider output for the given request (i.e. the role)
+   *         or <code>null</code> if the output cannot be reused for other requests.
+   */
+  private String getVariantKey(PluginConfigProvider provider, HttpServletRequest request) {
+    if (provider instanceof CacheablePluginConfigProvider) {
+      return ((CacheablePluginConfigProvider) provider).getCacheKey(this, request);
+    } else {
+      return provider.canBeCached() ? DEFAULT_CACHE_KEY : null;
+    }
+  }
+
+  /**
+   * @param revalidate Whether an output past the soft timeout must be computed again instead of
+   *        refreshing it in the background.
+   */
+  private Map<String, ConfigTree> getProviderConfig(final PluginConfigProvider provider,
+      final String key, Collection<Plugin> currentPlugins, HttpServletRequest request, Merge merge,
+      boolean revalidate) {
+    ProviderState state = getProviderState(provider);
+    List<Object> cacheKey = this.useCache && key != null ? Arrays.asList(provider, key) : null;
+    long now = now();
+    CacheEntry<Map<String, ConfigTree>> entry =
+        cacheKey != null ? this.cachedConfigurations.get(cacheKey) : null;
+    if (entry != null && !entry.isExpired(now, revalidate ? this.softTimeout : this.hardTimeout)) {
+      state.cacheHits.inc();
+      merge.created = Math.min(merge.created, entry.created);
+      if (entry.isExpired(now, this.softTimeout) && entry.startRefresh()) {
+        // Copy the current configuration now; the merge goes on with the request
+        final Map<String, JSONObject> currentConfig = new UnqualifiedConfigView(currentPlugins);
+        final HttpServletRequest snapshot = snapshot(request);
+        refresh(entry, "provider", new Runnable() {
+          @Override
+          public void run() {
+            Merge load = new Merge(generation.get(), now());
+            coalescedLoad(provider, key, currentConfig, snapshot, load);
+          }
+        });
+      }
+      return entry.value;
+    } else if (cacheKey != null) {
+      state.cacheMisses.inc();
+    }
+
+    return coalescedLoad(provider, key, new UnqualifiedConfigView(currentPlugins), request, merge);
+  }
+
+  /**
+   * Calls the provider, waiting for the call in progress for the same cache key, if any.
+   */
+  private Map<String, ConfigTree> coalescedLoad(final PluginConfigProvider provider,
+      final String key, final Map<String, JSONObject> currentConfig,
+      final HttpServletRequest request, Merge merge) {
+    if (!this.useCache || key == null) {
+      return loadProviderConfig(provider, key, currentConfig, request, merge);
+    }
+
+    final int generation = merge.generation;
+    ProviderOutput output = this.providerLoads.execute(Arrays.<Object>asList(provider, key),
+        new Supplier<ProviderOutput>() {
+          @Override
+          public ProviderOutput get() {
+            Merge load = new Merge(generation, now());
+            Map<String, ConfigTree> config =
+                loadProviderConfig(provider, key, currentConfig, request, load);
+            return new ProviderOutput(config, load.degraded);
+          }
+        });
+    merge.degraded |= output.degraded;
+    return output.config;
+  }
+
+  /**
+   * Calls the provider and caches its output.
+   */
+  private Map<String, ConfigTree> loadProviderConfig(PluginConfigProvider provider, String key,
+      Map<String, JSONObject> currentConfig, HttpServletRequest request, Merge merge) {
+    ProviderState state = getProviderState(provider);
+    List<Object> variantKey = key != null ? Arrays.<Object>asList(provider, key) : null;
+    List<Object> cacheKey = this.useCache ? variantKey : null;
+    CircuitBreaker breaker = state.breaker;
+    if (!breaker.allowRequest(now())) {
+      return getLastKnownGood(state, variantKey, merge);
+    }
+
+    // Anything but a success counts as a failure, even an Error, so a trial call never leaves the
+    // circuit half open
+    boolean success = false;
+    try {
+      long start = System.nanoTime();
+      Map<String, JSONObject> output;
+      try {
+        output = callProvider(provider, currentConfig, request);
+      } finally {
+        long duration = System.nanoTime() - start;
+        state.duration.record(duration);
+        ServerTiming timing = ServerTiming.get(request);
+        if (timing != null) {
+          timing.add("provider", state.name, duration);
+        }
+      }
+      success = true;
+      breaker.onSuccess();
+      if (output == null) {
+        return null;
+      }
+
+      Map<String, ConfigTree> ret = new HashMap<>();
+      for (String pluginName : output.keySet()) {
+        ret.put(pluginName, ConfigTree.fromJSON(output.get(pluginName)));
+      }
+      if (cacheKey != null && merge.generation == this.generation.get()) {
+        this.cachedConfigurations.put(cacheKey, new CacheEntry<>(ret, now()));
+      }
+      if (variantKey != null) {
+        this.lastKnownGood.put(variantKey, ret);
+      }
+      return ret;
+    } catch (TimeoutException e) {
+      state.timeouts.inc();
+      throttledLogger.warn(state.name + "@timeout", "Provider did not contribute configuration "
+          + "in " + this.providerTimeout + " ms: " + provider.getClass());
+    } catch (IOException e) {
+      throttledLogger.info(state.name,
+          "Provider failed to contribute configuration: " + provider.getClass());
+    } catch (RuntimeException e) {
+      throttledLogger.error(state.name + "@bug",
+          "Provider failed to contribute configuration: " + provider.getClass(), e);
+    } finally {
+      if (!success) {
+        state.failures.inc();
+        breaker.onFailure(now());
+      }
+    }
+
+    return getLastKnownGood(state, variantKey, merge);
+  }
+
+  /**
+   * Calls the provider, in another thread if a timeout is set.
+   */
+  private Map<String, JSONObject> callProvider(final PluginConfigProvider provider,
+      final Map<String, JSONObject> currentConfig, final HttpServletRequest request)
+      throws IOException, TimeoutException {
+    if (this.providerTimeout <= 0) {
+      return provider.getPluginConfig(this, currentConfig, request);
+    }
+
+    // The container recycles the request once it finishes, even if the provider timed out
+    final HttpServletRequest snapshot = snapshot(request);
+    Future<Map<String, JSONObject>> future =
+        getExecutor().submit(new Callable<Map<String, JSONObject>>() {
+          @Override
+          public Map<String, JSONObject> call() throws Exception {
+            return provider.getPluginConfig(ConfigImpl.this, currentConfig, snapshot);
+          }
+        });
+    try {
+      return future.get(this.providerTimeout, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      future.cancel(true);
+      throw e;
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  private Map<String, ConfigTree> getLastKnownGood(ProviderState state, List<Object> variantKey,
+      Merge merge) {
+    merge.degraded = true;
+    Map<String, ConfigTree> ret = variantKey != null ? this.lastKnownGood.get(variantKey) : null;
+    if (ret != null) {
+      state.fallbacks.inc();
+    }
+    return ret;
+  }
+
+  private ProviderState getProviderState(PluginConfigProvider provider) {
+    ProviderState ret = this.providerStates.get(provider);
+    if (ret == null) {
+      ret = new ProviderState(provider.getClass().getName(), this.failureThreshold,
+          this.openMillis, this.metrics);
+      ProviderState previous = this.providerStates.putIfAbsent(provider, ret);
+      if (previous != null) {
+        ret = previous;
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Runs the given refresh of a cache entry in the background. The entry must have been marked
+   * with {@link CacheEntry#startRefresh()}.
+   */
+  private void refresh(final CacheEntry<?> entry, final String cache, final Runnable refresh) {
+    this.metrics.counter(Metrics.CACHE_REFRESHES, Metrics.LABEL_CACHE, cache).inc();
+    try {
+      getRefreshExecutor().execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            refresh.run();
+          } catch (RuntimeException e) {
+            logger.warn("Cannot refresh cached " + cache + " configuration", e);
+          } finally {
+            // Only matters if the entry has not been replaced (i.e. the providers failed)
+            entry.refreshing.set(false);
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      entry.refreshing.set(false);
+    }
+  }
+
+  private static HttpServletRequest snapshot(HttpServletRequest request) {
+    HttpServletRequest ret = RequestSnapshot.snapshot(request);
+    // Background work must not show up in the response of this request
+    ret.removeAttribute(Geoladris.ATTR_SERVER_TIMING);
+    return ret;
+  }
+
+  private ExecutorService getExecutor() {
+    if (this.executor == null) {
+      synchronized (this) {
+        checkNotShutdown();
+        if (this.executor == null) {
+          this.executor = newDaemonThreadPool("geoladris-provider-", MAX_PROVIDER_THREADS);
+        }
+      }
+    }
+    return this.executor;
+  }
+
+  private ExecutorService getRefreshExecutor() {
+    if (this.refreshExecutor == null) {
+      synchronized (this) {
+        checkNotShutdown();
+        if (this.refreshExecutor == null) {
+          this.refreshExecutor = newDaemonThreadPool("geoladris-refresh-", MAX_REFRESH_THREADS);
+        }
+      }
+    }
+    return this.refreshExecutor;
+  }
+
+  private void checkNotShutdown() {
+    if (this.shutdown) {
+      throw new RejectedExecutionException("Configuration has been shut down");
+    }
+  }
+
+  /**
+   * @return a pool that starts threads as needed, up to <code>maxThreads</code>, and rejects tasks
+   *         when all of them are busy.
+   */
+  private static ExecutorService newDaemonThreadPool(final String prefix, int maxThreads) {
+    return new ThreadPoolExecutor(0, maxThreads, 60, TimeUnit.SECONDS,
+        new SynchronousQueue<Runnable>(), new ThreadFactory() {
+          private AtomicInteger count = new AtomicInteger();
+
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+  }
+
+  /**
+   * Stops the threads that call providers with a timeout and refresh stale configurations, so they
+   * do not outlive the application. Afterwards, provider calls with a timeout fail and stale
+   * configurations are no longer refreshed.
+   */
+  public synchronized void shutdown() {
+    this.shutdown = true;
+    if (this.executor != null) {
+      this.executor.shutdownNow();
+    }
+    if (this.refreshExecutor != null) {
+      this.refreshExecutor.shutdownNow();
+    }
+  }
+
+  /**
+   * <p>
+   * Sets the maximum time a provider can take to contribute its configuration. Providers that
+   * exceed it are considered to have failed and their last known good output for the same variant
+   * (i.e. role) is used instead.
+   * </p>
+   *
+   * <p>
+   * If set, providers are called in a separate thread, so they must not rely on thread locals.
+   * They get a copy of the request (see {@link RequestSnapshot}), since the container may reuse
+   * the original one for another request once it finishes. A provider that times out is
+   * interrupted.
+   * </p>
+   *
+   * @param millis Timeout in milliseconds. Zero or negative to disable it (default).
+   */
+  public void setProviderTimeout(long millis) {
+    this.providerTimeout = millis;
+  }
+
+  /**
+   * For testing purposes. Only affects providers that have not been called yet.
+   */
+  void setCircuitBreaker(int failureThreshold, long openMillis) {
+    this.failureThreshold = failureThreshold;
+    this.openMillis = openMillis;
+  }
+
+  CircuitBreaker.State getCircuitState(PluginConfigProvider provider) {
+    ProviderState state = this.providerStates.get(provider);
+    return state != null ? state.breaker.getState() : CircuitBreaker.State.CLOSED;
   }
 
   @Override
@@ -248,11 +754,86 @@ public class ConfigImpl implements Config {
   @Override
   public void setPlugins(Set<Plugin> plugins) {
     this.plugins = plugins;
+    this.metrics.gauge(Metrics.PLUGINS).set(plugins.size());
+    clearCachedConfigurations();
   }
 
   @Override
   public void addPluginConfigProvider(PluginConfigProvider provider) {
     this.configProviders.add(provider);
+    this.mergedConfigurations.clear();
+  }
+
+  /**
+   * Discards the cached provider outputs and merged plugin configurations.
+   */
+  public void clearCachedConfigurations() {
+    this.generation.incrementAndGet();
+    int providerEntries = this.cachedConfigurations.size();
+    int mergedEntries = this.mergedConfigurations.size();
+    this.cachedConfigurations.clear();
+    this.mergedConfigurations.clear();
+    this.metrics.counter(Metrics.CACHE_EVICTIONS, Metrics.LABEL_CACHE, "provider")
+        .add(providerEntries);
+    this.metrics.counter(Metrics.CACHE_EVICTIONS, Metrics.LABEL_CACHE, "merge")
+        .add(mergedEntries);
+  }
+
+  /**
+   * Discards the cached outputs of the given provider for the matching keys and the merged plugin
+   * configurations built from them.
+   *
+   * @param provider
+   * @param keys Matches the keys returned by
+   *        {@link CacheablePluginConfigProvider#getCacheKey(Config, HttpServletRequest)}.
+   */
+  public void clearCachedConfigurations(PluginConfigProvider provider, Predicate<String> keys) {
+    this.generation.incrementAndGet();
+    int providerEntries = 0;
+    Iterator<List<Object>> cached = this.cachedConfigurations.keySet().iterator();
+    while (cached.hasNext()) {
+      List<Object> key = cached.next();
+      if (key.get(0) == provider && keys.test((String) key.get(1))) {
+        cached.remove();
+        providerEntries++;
+      }
+    }
+
+    int mergedEntries = 0;
+    int index = this.configProviders.indexOf(provider);
+    Iterator<List<String>> merged = this.mergedConfigurations.keySet().iterator();
+    while (index >= 0 && merged.hasNext()) {
+      List<String> key = merged.next();
+      if (index < key.size() && keys.test(key.get(index))) {
+        merged.remove();
+        mergedEntries++;
+      }
+    }
+
+    this.metrics.counter(Metrics.CACHE_EVICTIONS, Metrics.LABEL_CACHE, "provider")
+        .add(providerEntries);
+    this.metrics.counter(Metrics.CACHE_EVICTIONS, Metrics.LABEL_CACHE, "merge")
+        .add(mergedEntries);
+  }
+
+  /**
+   * @return the registry where the configuration pipeline records its metrics.
+   */
+  public Metrics getMetrics() {
+    return this.metrics;
+  }
+
+  /**
+   * @param metrics The registry where the configuration pipeline must record its metrics. By
+   *        default, an unregistered one.
+   */
+  public void setMetrics(Metrics metrics) {
+    this.metrics = metrics;
+    // Resolved again in the new registry; circuits start closed
+    this.providerStates.clear();
+    if (this.plugins != null) {
+      metrics.gauge(Metrics.PLUGINS).set(this.plugins.size());
+    }
   }
 
   @Override
@@ -261,21 +842,107 @@ public class ConfigImpl implements Config {
   }
 
   @Override
+  @Deprecated
   public String localize(String template) {
-    Pattern patt = Pattern.compile("\\$\\{([\\w.]*)\\}");
-    Matcher m = patt.matcher(template);
-    StringBuffer sb = new StringBuffer(template.length());
-    ResourceBundle messages = getMessages(this.currentLocale);
-    while (m.find()) {
-      String text;
-      try {
-        text = messages.getString(m.group(1));
-        m.appendReplacement(sb, text);
-      } catch (MissingResourceException e) {
-        // do not replace
-      }
+    return localize(template, this.currentLocale);
+  }
+
+  @Override
+  public String localize(String template, Locale locale) {
+    MessageTemplate compiled = this.templates.get(template);
+    if (compiled == null) {
+      compiled = MessageTemplate.compile(template);
+      this.templates.put(template, compiled);
+    }
+    return compiled.render(locale, getMessages(locale));
+  }
+
+  /**
+   * Records the callers that wait for a computation in the {@link Metrics#SINGLE_FLIGHT_WAITS}
+   * counter.
+   */
+  private class MeteredSingleFlight<K, V> extends SingleFlight<K, V> {
+    private String cache;
+
+    private MeteredSingleFlight(String cache) {
+      this.cache = cache;
+    }
+
+    @Override
+    protected void onWait(K key) {
+      metrics.counter(Metrics.SINGLE_FLIGHT_WAITS, Metrics.LABEL_CACHE, this.cache).inc();
+    }
+  }
+
+  /**
+   * Circuit breaker and metrics of a provider, resolved once instead of on every call.
+   */
+  private static class ProviderState {
+    private final String name;
+    private final CircuitBreaker breaker;
+    private final Counter cacheHits, cacheMisses, timeouts, failures, fallbacks;
+    private final Histogram duration;
+
+    private ProviderState(String name, int failureThreshold, long openMillis, Metrics metrics) {
+      this.name = name;
+      this.breaker = new CircuitBreaker(name, failureThreshold, openMillis, metrics);
+      this.cacheHits = metrics.counter(Metrics.PROVIDER_CACHE_HITS, Metrics.LABEL_PROVIDER, name);
+      this.cacheMisses =
+          metrics.counter(Metrics.PROVIDER_CACHE_MISSES, Metrics.LABEL_PROVIDER, name);
+      this.timeouts = metrics.counter(Metrics.PROVIDER_TIMEOUTS, Metrics.LABEL_PROVIDER, name);
+      this.failures = metrics.counter(Metrics.PROVIDER_FAILURES, Metrics.LABEL_PROVIDER, name);
+      this.fallbacks = metrics.counter(Metrics.PROVIDER_FALLBACKS, Metrics.LABEL_PROVIDER, name);
+      this.duration = metrics.histogram(Metrics.PROVIDER_DURATION, Metrics.LABEL_PROVIDER, name);
+    }
+  }
+
+  private static class ProviderOutput {
+    private final Map<String, ConfigTree> config;
+    // Whether the provider failed and the output is a fallback
+    private final boolean degraded;
+
+    private ProviderOutput(Map<String, ConfigTree> config, boolean degraded) {
+      this.config = config;
+      this.degraded = degraded;
+    }
+  }
+
+  private static class CacheEntry<V> {
+    private final V value;
+    // Time in milliseconds when the oldest data in the value was computed
+    private final long created;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private CacheEntry(V value, long created) {
+      this.value = value;
+      this.created = created;
+    }
+
+    boolean isExpired(long now, long timeout) {
+      return timeout > 0 && now - this.created >= timeout;
+    }
+
+    /**
+     * @return true if the caller must refresh the entry; false if it is already being refreshed.
+     */
+    boolean startRefresh() {
+      return this.refreshing.compareAndSet(false, true);
+    }
+  }
+
+  private static class Merge {
+    private final int generation;
+    // Time in milliseconds when the oldest provider output was computed
+    private long created;
+    private Plugin[] plugins;
+    // Time spent in the providers
+    private long providerNanos;
+    // Whether any provider failed, so the result must not be cached
+    private boolean degraded;
+
+    private Merge(int generation, long created) {
+      this.generation = generation;
+      this.created = created;
     }
-    m.appendTail(sb);
-    return sb.toString();
   }
 }
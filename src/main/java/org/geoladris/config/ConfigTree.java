@@ -0,0 +1,378 @@
+package org.geoladris.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONFunction;
+import net.sf.json.JSONNull;
+import net.sf.json.JSONObject;
+
+/**
+ * <p>
+ * Persistent, immutable JSON object used to hold plugin configurations.
+ * </p>
+ *
+ * <p>
+ * Operations never modify the tree; they return a new tree that shares all the unchanged subtrees
+ * with the original one, so merging two configurations only allocates the paths that actually
+ * change. Values are {@link ConfigTree} objects, unmodifiable {@link List}s, strings, numbers,
+ * booleans or <code>null</code>.
+ * </p>
+ *
+ * <p>
+ * json-lib is only used at the boundaries: {@link #fromJSON(JSONObject)} and {@link #toJSON()}.
+ * </p>
+ */
+public final class ConfigTree {
+  public static final ConfigTree EMPTY = new ConfigTree(Collections.<String, Object>emptyMap());
+
+  private final Map<String, Object> children;
+
+  // Lazily computed; safe to race since the tree is immutable
+  private int hash;
+  private volatile String json;
+  // Set by ConfigFragments
+  private volatile byte[] fragment;
+
+  private ConfigTree(Map<String, Object> children) {
+    this.children = children;
+  }
+
+  public static ConfigTree fromJSON(JSONObject json) {
+    if (json == null || json.isNullObject() || json.isEmpty()) {
+      return EMPTY;
+    }
+
+    Map<String, Object> children = new LinkedHashMap<>();
+    for (Object key : json.keySet()) {
+      children.put(key.toString(), fromJSONValue(json.get(key)));
+    }
+    return new ConfigTree(Collections.unmodifiableMap(children));
+  }
+
+  private static Object fromJSONValue(Object value) {
+    if (value instanceof JSONObject) {
+      JSONObject object = (JSONObject) value;
+      return object.isNullObject() ? null : fromJSON(object);
+    } else if (value instanceof JSONArray) {
+      JSONArray array = (JSONArray) value;
+      List<Object> list = new ArrayList<>(array.size());
+      for (Object element : array) {
+        list.add(fromJSONValue(element));
+      }
+      return Collections.unmodifiableList(list);
+    } else if (value instanceof JSONNull) {
+      return null;
+    } else {
+      return value;
+    }
+  }
+
+  public boolean has(String key) {
+    return this.children.containsKey(key);
+  }
+
+  public Object get(String key) {
+    return this.children.get(key);
+  }
+
+  public ConfigTree getTree(String key) {
+    Object value = this.children.get(key);
+    return value instanceof ConfigTree ? (ConfigTree) value : null;
+  }
+
+  /**
+   * @param key
+   * @param defaultValue
+   * @return the value as a boolean (either a {@link Boolean} or a <code>"true"</code>/
+   *         <code>"false"</code> string) or the default value if it is missing or not a boolean.
+   */
+  public boolean getBoolean(String key, boolean defaultValue) {
+    Object value = this.children.get(key);
+    if (value instanceof Boolean) {
+      return (Boolean) value;
+    } else if ("true".equalsIgnoreCase(String.valueOf(value))) {
+      return true;
+    } else if ("false".equalsIgnoreCase(String.valueOf(value))) {
+      return false;
+    }
+    return defaultValue;
+  }
+
+  public Set<String> keySet() {
+    return this.children.keySet();
+  }
+
+  public int size() {
+    return this.children.size();
+  }
+
+  public boolean isEmpty() {
+    return this.children.isEmpty();
+  }
+
+  /**
+   * @param keys
+   * @return a tree without the given keys; this same tree if it contains none of them.
+   */
+  public ConfigTree without(String... keys) {
+    Map<String, Object> ret = null;
+    for (String key : keys) {
+      if (this.children.containsKey(key)) {
+        if (ret == null) {
+          ret = new LinkedHashMap<>(this.children);
+        }
+        ret.remove(key);
+      }
+    }
+    return ret != null ? create(ret) : this;
+  }
+
+  /**
+   * @param prefix
+   * @return a tree where all the keys at the first level are prefixed with the given prefix. Values
+   *         are shared with this tree.
+   */
+  public ConfigTree prefixKeys(String prefix) {
+    if (isEmpty()) {
+      return this;
+    }
+
+    Map<String, Object> ret = new LinkedHashMap<>();
+    for (Map.Entry<String, Object> entry : this.children.entrySet()) {
+      ret.put(prefix + entry.getKey(), entry.getValue());
+    }
+    return create(ret);
+  }
+
+  /**
+   * @param prefix
+   * @return a tree where the given prefix is removed from the keys at the first level that start
+   *         with it. Values are shared with this tree.
+   */
+  public ConfigTree unprefixKeys(String prefix) {
+    boolean prefixed = false;
+    for (String key : this.children.keySet()) {
+      if (key.startsWith(prefix)) {
+        prefixed = true;
+        break;
+      }
+    }
+    if (!prefixed) {
+      return this;
+    }
+
+    Map<String, Object> ret = new LinkedHashMap<>();
+    for (Map.Entry<String, Object> entry : this.children.entrySet()) {
+      String key = entry.getKey();
+      ret.put(key.startsWith(prefix) ? key.substring(prefix.length()) : key, entry.getValue());
+    }
+    return create(ret);
+  }
+
+  /**
+   * <p>
+   * Deep merges the given tree into this one. Objects present in both trees are merged recursively;
+   * any other value in <code>other</code> replaces the value in this tree.
+   * </p>
+   *
+   * <p>
+   * Unchanged subtrees are shared with the resulting tree. If the merge changes nothing, this same
+   * tree is returned.
+   * </p>
+   *
+   * @param other
+   * @return the merged tree.
+   */
+  public ConfigTree merge(ConfigTree other) {
+    if (other == null || other.isEmpty() || other == this) {
+      return this;
+    }
+    if (isEmpty()) {
+      return other;
+    }
+
+    Map<String, Object> ret = null;
+    for (Map.Entry<String, Object> entry : other.children.entrySet()) {
+      String key = entry.getKey();
+      Object current = this.children.get(key);
+      Object value = entry.getValue();
+      if (current instanceof ConfigTree && value instanceof ConfigTree) {
+        value = ((ConfigTree) current).merge((ConfigTree) value);
+      }
+
+      if (current == value && this.children.containsKey(key)) {
+        continue;
+      }
+
+      if (ret == null) {
+        ret = new LinkedHashMap<>(this.children);
+      }
+      ret.put(key, value);
+    }
+    return ret != null ? create(ret) : this;
+  }
+
+  private static ConfigTree create(Map<String, Object> children) {
+    return children.isEmpty() ? EMPTY : new ConfigTree(Collections.unmodifiableMap(children));
+  }
+
+  /**
+   * @return a new {@link JSONObject} with the contents of this tree. Modifying it does not affect
+   *         the tree.
+   */
+  public JSONObject toJSON() {
+    return isEmpty() ? new JSONObject() : JSONObject.fromObject(toString());
+  }
+
+  /**
+   * @return this tree serialized as a JSON object. The result is computed once and reused.
+   */
+  @Override
+  public String toString() {
+    String ret = this.json;
+    if (ret == null) {
+      StringBuilder sb = new StringBuilder();
+      write(sb);
+      ret = sb.toString();
+      this.json = ret;
+    }
+    return ret;
+  }
+
+  byte[] getFragment() {
+    return this.fragment;
+  }
+
+  void setFragment(byte[] fragment) {
+    this.fragment = fragment;
+  }
+
+  /**
+   * Writes the members of this object, without the enclosing braces.
+   *
+   * @param sb
+   */
+  void writeMembers(StringBuilder sb) {
+    boolean first = true;
+    for (Map.Entry<String, Object> entry : this.children.entrySet()) {
+      if (!first) {
+        sb.append(',');
+      }
+      first = false;
+      quote(entry.getKey(), sb);
+      sb.append(':');
+      writeValue(entry.getValue(), sb);
+    }
+  }
+
+  private void write(StringBuilder sb) {
+    String cached = this.json;
+    if (cached != null) {
+      sb.append(cached);
+      return;
+    }
+    sb.append('{');
+    writeMembers(sb);
+    sb.append('}');
+  }
+
+  private static void writeValue(Object value, StringBuilder sb) {
+    if (value == null) {
+      sb.append("null");
+    } else if (value instanceof ConfigTree) {
+      ((ConfigTree) value).write(sb);
+    } else if (value instanceof List) {
+      sb.append('[');
+      boolean first = true;
+      for (Object element : (List<?>) value) {
+        if (!first) {
+          sb.append(',');
+        }
+        first = false;
+        writeValue(element, sb);
+      }
+      sb.append(']');
+    } else if (value instanceof Number || value instanceof Boolean
+        || value instanceof JSONFunction) {
+      sb.append(value.toString());
+    } else {
+      quote(value.toString(), sb);
+    }
+  }
+
+  private static void quote(String s, StringBuilder sb) {
+    sb.append('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      switch (c) {
+        case '"':
+        case '\\':
+          sb.append('\\').append(c);
+          break;
+        case '/':
+          // Avoid closing script tags when the output is inlined
+          if (i > 0 && s.charAt(i - 1) == '<') {
+            sb.append('\\');
+          }
+          sb.append(c);
+          break;
+        case '\b':
+          sb.append("\\b");
+          break;
+        case '\f':
+          sb.append("\\f");
+          break;
+        case '\n':
+          sb.append("\\n");
+          break;
+        case '\r':
+          sb.append("\\r");
+          break;
+        case '\t':
+          sb.append("\\t");
+          break;
+        default:
+          // Control characters and the line separators that are not valid in JavaScript strings
+          if (c < ' ' || c == '\u2028' || c == '\u2029') {
+            String hex = Integer.toHexString(c);
+            sb.append("\\u");
+            for (int j = hex.length(); j < 4; j++) {
+              sb.append('0');
+            }
+            sb.append(hex);
+          } else {
+            sb.append(c);
+          }
+      }
+    }
+    sb.append('"');
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
+    if (!(obj instanceof ConfigTree)) {
+      return false;
+    }
+    ConfigTree other = (ConfigTree) obj;
+    return hashCode() == other.hashCode() && this.children.equals(other.children);
+  }
+
+  @Override
+  public int hashCode() {
+    int ret = this.hash;
+    if (ret == 0) {
+      ret = this.children.hashCode();
+      this.hash = ret;
+    }
+    return ret;
+  }
+}
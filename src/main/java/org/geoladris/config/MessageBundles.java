@@ -0,0 +1,168 @@
+package org.geoladris.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.PropertyResourceBundle;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.apache.log4j.Logger;
+
+import net.sf.json.JSONObject;
+
+/**
+ * <p>
+ * Registry of the message bundles in <code>&lt;config_dir&gt;/</code>{@value Config#DIR_MESSAGES}.
+ * </p>
+ *
+ * <p>
+ * The bundle for each locale is loaded once, together with its serialized i18n JSON object, and
+ * kept until {@link #invalidate()} is called (typically because the messages directory changed).
+ * Concurrent requests for a locale that is not loaded yet wait for a single load.
+ * </p>
+ */
+public class MessageBundles {
+  private static final Logger logger = Logger.getLogger(MessageBundles.class);
+
+  private static final String BUNDLE_NAME = "messages";
+
+  private File configDir;
+  private volatile Generation generation;
+
+  public MessageBundles(File configDir) {
+    this.configDir = configDir;
+    this.generation = new Generation();
+  }
+
+  public ResourceBundle getBundle(Locale locale) throws ConfigException {
+    return get(locale).bundle;
+  }
+
+  /**
+   * @param locale
+   * @return the messages for the given locale as a serialized JSON object.
+   */
+  public String getJSON(Locale locale) throws ConfigException {
+    return get(locale).json;
+  }
+
+  /**
+   * Discards all the loaded bundles. They will be loaded again when requested.
+   */
+  public void invalidate() {
+    Generation old = this.generation;
+    this.generation = new Generation();
+    old.discard();
+  }
+
+  private Entry get(final Locale locale) {
+    final Generation current = this.generation;
+    Entry entry = current.entries.get(locale);
+    if (entry == null) {
+      entry = current.loads.execute(locale, new Supplier<Entry>() {
+        @Override
+        public Entry get() {
+          // It may have been loaded since the first check
+          Entry ret = current.entries.get(locale);
+          if (ret == null) {
+            ret = new Entry(current.load(locale));
+            current.entries.put(locale, ret);
+          }
+          return ret;
+        }
+      });
+    }
+    return entry;
+  }
+
+  /**
+   * Bundles loaded with the same class loader. Invalidating the registry replaces the whole
+   * generation so that loads in progress never end up in the new one.
+   */
+  private class Generation {
+    private Map<Locale, Entry> entries = new ConcurrentHashMap<>();
+    private SingleFlight<Locale, Entry> loads = new SingleFlight<>();
+    private URLClassLoader loader;
+    private boolean discarded;
+
+    /**
+     * Releases the class loader and the bundles it loaded. Loads still in progress release it
+     * again when they finish.
+     */
+    private synchronized void discard() {
+      this.discarded = true;
+      releaseIfDiscarded();
+    }
+
+    private synchronized void releaseIfDiscarded() {
+      if (!this.discarded || this.loader == null) {
+        return;
+      }
+      ResourceBundle.clearCache(this.loader);
+      try {
+        this.loader.close();
+      } catch (IOException e) {
+        logger.warn("Cannot close the message bundles class loader", e);
+      }
+      this.loader = null;
+    }
+
+    private synchronized URLClassLoader getLoader() throws MalformedURLException {
+      if (this.loader == null) {
+        URL messagesDir = new File(configDir, Config.DIR_MESSAGES).toURI().toURL();
+        this.loader = new URLClassLoader(new URL[] {messagesDir});
+      }
+      return this.loader;
+    }
+
+    private ResourceBundle load(Locale locale) {
+      try {
+        return ResourceBundle.getBundle(BUNDLE_NAME, locale, getLoader());
+      } catch (MalformedURLException e) {
+        logger.error("Something is wrong with the configuration directory", e);
+        throw new ConfigException(e);
+      } catch (MissingResourceException e) {
+        logger.info("Missing locale bundle: " + locale);
+        try {
+          return new PropertyResourceBundle(new ByteArrayInputStream(new byte[0]));
+        } catch (IOException e1) {
+          // ignore, not an actual IO operation
+          return null;
+        }
+      } finally {
+        releaseIfDiscarded();
+      }
+    }
+  }
+
+  private static class Entry {
+    private final ResourceBundle bundle;
+    private final String json;
+
+    private Entry(ResourceBundle bundle) {
+      this.bundle = bundle;
+      this.json = toJSON(bundle);
+    }
+  }
+
+  /**
+   * @param bundle
+   * @return the messages in the bundle as a serialized JSON object.
+   */
+  static String toJSON(ResourceBundle bundle) {
+    Map<String, String> messages = new HashMap<>();
+    for (String key : bundle.keySet()) {
+      messages.put(key, bundle.getString(key));
+    }
+    return JSONObject.fromObject(messages).toString();
+  }
+}
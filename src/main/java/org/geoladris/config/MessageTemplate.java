@@ -0,0 +1,110 @@
+package org.geoladris.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * A template with <code>${key}</code> placeholders, parsed once into a list of literal and
+ * placeholder segments.
+ * </p>
+ *
+ * <p>
+ * Rendered results are kept for each locale as long as the bundle used to render them does not
+ * change.
+ * </p>
+ */
+public class MessageTemplate {
+  private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{([\\w.]*)\\}");
+
+  /**
+   * Literal segments. There is always one more literal than keys; <code>literals[i]</code> goes
+   * before <code>keys[i]</code>.
+   */
+  private final String[] literals;
+  private final String[] keys;
+  private final int literalsLength;
+
+  private final Map<Locale, Rendered> rendered = new ConcurrentHashMap<>();
+
+  private MessageTemplate(String[] literals, String[] keys) {
+    this.literals = literals;
+    this.keys = keys;
+
+    int length = 0;
+    for (String literal : literals) {
+      length += literal.length();
+    }
+    this.literalsLength = length;
+  }
+
+  public static MessageTemplate compile(String template) {
+    List<String> literals = new ArrayList<>();
+    List<String> keys = new ArrayList<>();
+
+    Matcher m = PLACEHOLDER.matcher(template);
+    int start = 0;
+    while (m.find()) {
+      literals.add(template.substring(start, m.start()));
+      keys.add(m.group(1));
+      start = m.end();
+    }
+    literals.add(template.substring(start));
+
+    return new MessageTemplate(literals.toArray(new String[literals.size()]),
+        keys.toArray(new String[keys.size()]));
+  }
+
+  /**
+   * @param locale The locale of the messages. Used to cache the rendered result.
+   * @param messages The messages to replace the placeholders with. Placeholders for missing
+   *        messages are kept as they are.
+   * @return the rendered template.
+   */
+  public String render(Locale locale, ResourceBundle messages) {
+    if (this.keys.length == 0) {
+      return this.literals[0];
+    }
+
+    Rendered ret = locale != null ? this.rendered.get(locale) : null;
+    if (ret == null || ret.messages != messages) {
+      ret = new Rendered(messages, render(messages));
+      if (locale != null) {
+        this.rendered.put(locale, ret);
+      }
+    }
+    return ret.text;
+  }
+
+  private String render(ResourceBundle messages) {
+    StringBuilder sb = new StringBuilder(this.literalsLength + 16 * this.keys.length);
+    for (int i = 0; i < this.keys.length; i++) {
+      sb.append(this.literals[i]);
+      try {
+        sb.append(messages.getString(this.keys[i]));
+      } catch (MissingResourceException e) {
+        // do not replace
+        sb.append("${").append(this.keys[i]).append('}');
+      }
+    }
+    sb.append(this.literals[this.keys.length]);
+    return sb.toString();
+  }
+
+  private static class Rendered {
+    private final ResourceBundle messages;
+    private final String text;
+
+    private Rendered(ResourceBundle messages, String text) {
+      this.messages = messages;
+      this.text = text;
+    }
+  }
+}
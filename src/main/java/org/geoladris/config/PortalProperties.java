@@ -0,0 +1,176 @@
+package org.geoladris.config;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+
+/**
+ * Immutable snapshot of <code>portal.properties</code>, with the values derived from it (languages,
+ * default language, map center, initial zoom level, client modules) computed once.
+ */
+public final class PortalProperties {
+  private static final Logger logger = Logger.getLogger(PortalProperties.class);
+
+  public static final String FILE = "portal.properties";
+
+  private static final String PROPERTY_DEFAULT_LANG = "languages.default";
+
+  private final File file;
+  private final long lastModified, length;
+  private final Properties properties;
+  private final Map<String, String>[] languages;
+  private final String defaultLang, initialZoomLevel;
+  private final String[] mapCenter, clientModules;
+
+  private PortalProperties(File file, long lastModified, long length, Properties properties) {
+    this.file = file;
+    this.lastModified = lastModified;
+    this.length = length;
+    this.properties = properties;
+    this.languages = parseLanguages(properties.getProperty(Config.PROPERTY_LANGUAGES));
+    this.mapCenter = split(properties.getProperty(Config.PROPERTY_MAP_CENTER));
+    this.clientModules = split(properties.getProperty(Config.PROPERTY_CLIENT_MODULES));
+    this.initialZoomLevel = properties.getProperty(Config.PROPERTY_INITIAL_ZOOM_LEVEL);
+
+    String defaultLang = properties.getProperty(PROPERTY_DEFAULT_LANG);
+    if (defaultLang == null) {
+      defaultLang = this.languages != null && this.languages.length > 0
+          ? this.languages[0].get("code") : "en";
+    }
+    this.defaultLang = defaultLang;
+  }
+
+  /**
+   * Reads <code>portal.properties</code> from the given configuration directory.
+   *
+   * @param configDir
+   * @return the snapshot. If the file is missing or cannot be read, the snapshot is empty.
+   */
+  public static PortalProperties read(File configDir) {
+    File file = new File(configDir, FILE);
+    logger.debug("Reading portal properties file " + file);
+
+    // Stat before reading so a concurrent change is detected in the next check
+    long lastModified = file.lastModified();
+    long length = file.length();
+    Properties properties = new Properties();
+    try {
+      InputStream in = new FileInputStream(file);
+      try {
+        properties.load(in);
+      } finally {
+        in.close();
+      }
+    } catch (FileNotFoundException e) {
+      logger.warn("Missing portal.properties file");
+    } catch (IOException e) {
+      logger.error("Error reading portal.properties file", e);
+    }
+    return new PortalProperties(file, lastModified, length, properties);
+  }
+
+  /**
+   * @param properties
+   * @return a snapshot of the given properties, not read from any file.
+   */
+  public static PortalProperties of(Properties properties) {
+    return new PortalProperties(null, 0, 0, (Properties) properties.clone());
+  }
+
+  /**
+   * @return <code>true</code> if the file has changed since this snapshot was read;
+   *         <code>false</code> if it was not read from a file.
+   */
+  public boolean isStale() {
+    return this.file != null
+        && (this.file.lastModified() != this.lastModified || this.file.length() != this.length);
+  }
+
+  /**
+   * @return a copy of the properties.
+   */
+  public Properties getProperties() {
+    return (Properties) this.properties.clone();
+  }
+
+  /**
+   * @param name
+   * @return the property value or <code>null</code> if the property does not exist.
+   */
+  public String getProperty(String name) {
+    return this.properties.getProperty(name);
+  }
+
+  /**
+   * @param name
+   * @return the property as an array or <code>null</code> if the property does not exist.
+   */
+  public String[] getPropertyAsArray(String name) {
+    String[] ret;
+    if (Config.PROPERTY_MAP_CENTER.equals(name)) {
+      ret = this.mapCenter;
+    } else if (Config.PROPERTY_CLIENT_MODULES.equals(name)) {
+      ret = this.clientModules;
+    } else {
+      return split(this.properties.getProperty(name));
+    }
+    return ret != null ? ret.clone() : null;
+  }
+
+  /**
+   * @return the languages as described in {@link Config#getLanguages()} or <code>null</code> if
+   *         there is no language configuration.
+   */
+  public Map<String, String>[] getLanguages() {
+    return this.languages != null ? this.languages.clone() : null;
+  }
+
+  public String getDefaultLang() {
+    return this.defaultLang;
+  }
+
+  public String getInitialZoomLevel() {
+    return this.initialZoomLevel;
+  }
+
+  private static String[] split(String value) {
+    return value != null ? value.split(",") : null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, String>[] parseLanguages(String value) {
+    if (value == null) {
+      return null;
+    }
+
+    JSONObject json;
+    try {
+      json = JSONObject.fromObject(value);
+    } catch (JSONException e) {
+      logger.error("Invalid '" + Config.PROPERTY_LANGUAGES + "' property: " + value, e);
+      return null;
+    }
+
+    List<Map<String, String>> ret = new ArrayList<Map<String, String>>();
+    for (Object langCode : json.keySet()) {
+      Map<String, String> langObject = new HashMap<String, String>();
+      langObject.put("code", langCode.toString());
+      langObject.put("name", json.getString(langCode.toString()));
+      ret.add(Collections.unmodifiableMap(langObject));
+    }
+    return ret.toArray(new Map[ret.size()]);
+  }
+}
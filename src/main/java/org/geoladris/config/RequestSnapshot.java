@@ -0,0 +1,236 @@
+package org.geoladris.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+/**
+ * <p>
+ * Request that does not depend on the servlet container, so it can be used after the original
+ * request has finished (i.e. to refresh a cached configuration in the background).
+ * </p>
+ *
+ * <p>
+ * It keeps a copy of the attributes, session attributes, parameters, headers, locales, paths and
+ * user of the original request. {@link HttpServletRequest#isUserInRole(String)} always returns
+ * <code>false</code> and any other method returns <code>null</code>, <code>false</code> or
+ * <code>0</code>.
+ * </p>
+ */
+public class RequestSnapshot implements InvocationHandler {
+  private Map<String, Object> attributes;
+  private Map<String, Object> sessionAttributes;
+  private Map<String, String[]> parameters = new HashMap<>();
+  // Lower case name -> values
+  private Map<String, List<String>> headers = new HashMap<>();
+  private List<Locale> locales = new ArrayList<>();
+  private Map<String, String> strings = new HashMap<>();
+  private Principal principal;
+  private Cookie[] cookies;
+
+  private RequestSnapshot(Map<String, Object> attributes, Map<String, Object> sessionAttributes) {
+    this.attributes = Collections.synchronizedMap(new HashMap<>(attributes));
+    this.sessionAttributes = sessionAttributes != null
+        ? Collections.synchronizedMap(new HashMap<>(sessionAttributes)) : null;
+  }
+
+  /**
+   * @param request
+   * @return a copy of the given request.
+   */
+  public static HttpServletRequest snapshot(HttpServletRequest request) {
+    Map<String, Object> attributes = new HashMap<>();
+    if (request.getAttributeNames() != null) {
+      for (String name : Collections.list(request.getAttributeNames())) {
+        attributes.put(name, request.getAttribute(name));
+      }
+    }
+
+    Map<String, Object> sessionAttributes = null;
+    HttpSession session = request.getSession(false);
+    if (session != null) {
+      try {
+        sessionAttributes = new HashMap<>();
+        for (String name : Collections.list(session.getAttributeNames())) {
+          sessionAttributes.put(name, session.getAttribute(name));
+        }
+      } catch (IllegalStateException e) {
+        // Invalidated session
+        sessionAttributes = null;
+      }
+    }
+
+    RequestSnapshot snapshot = new RequestSnapshot(attributes, sessionAttributes);
+    Map<String, String[]> parameters = request.getParameterMap();
+    if (parameters != null) {
+      snapshot.parameters.putAll(parameters);
+    }
+    if (request.getHeaderNames() != null) {
+      for (String name : Collections.list(request.getHeaderNames())) {
+        snapshot.headers.put(name.toLowerCase(Locale.ROOT),
+            Collections.list(request.getHeaders(name)));
+      }
+    }
+    if (request.getLocales() != null) {
+      snapshot.locales.addAll(Collections.list(request.getLocales()));
+    }
+    snapshot.strings.put("getMethod", request.getMethod());
+    snapshot.strings.put("getContextPath", request.getContextPath());
+    snapshot.strings.put("getServletPath", request.getServletPath());
+    snapshot.strings.put("getPathInfo", request.getPathInfo());
+    snapshot.strings.put("getRequestURI", request.getRequestURI());
+    snapshot.strings.put("getQueryString", request.getQueryString());
+    snapshot.strings.put("getRemoteUser", request.getRemoteUser());
+    snapshot.principal = request.getUserPrincipal();
+    snapshot.cookies = request.getCookies();
+    return snapshot.toRequest();
+  }
+
+  /**
+   * @param attributes Request attributes.
+   * @param sessionAttributes Session attributes; <code>null</code> if the request has no session.
+   * @return a new <code>GET</code> request with the given attributes.
+   */
+  public static HttpServletRequest create(Map<String, Object> attributes,
+      Map<String, Object> sessionAttributes) {
+    RequestSnapshot snapshot = new RequestSnapshot(attributes, sessionAttributes);
+    snapshot.strings.put("getMethod", "GET");
+    return snapshot.toRequest();
+  }
+
+  private HttpServletRequest toRequest() {
+    return (HttpServletRequest) Proxy.newProxyInstance(RequestSnapshot.class.getClassLoader(),
+        new Class<?>[] {HttpServletRequest.class}, this);
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    String name = method.getName();
+    switch (name) {
+      case "getAttribute":
+        return this.attributes.get(args[0]);
+      case "getAttributeNames":
+        return enumeration(this.attributes);
+      case "setAttribute":
+        if (args[1] == null) {
+          this.attributes.remove(args[0]);
+        } else {
+          this.attributes.put((String) args[0], args[1]);
+        }
+        return null;
+      case "removeAttribute":
+        this.attributes.remove(args[0]);
+        return null;
+      case "getSession":
+        return getSession(args == null || (Boolean) args[0]);
+      case "getParameter":
+        String[] values = this.parameters.get(args[0]);
+        return values != null && values.length > 0 ? values[0] : null;
+      case "getParameterValues":
+        return this.parameters.get(args[0]);
+      case "getParameterMap":
+        return Collections.unmodifiableMap(this.parameters);
+      case "getParameterNames":
+        return Collections.enumeration(this.parameters.keySet());
+      case "getHeader":
+        List<String> header = this.headers.get(((String) args[0]).toLowerCase(Locale.ROOT));
+        return header != null && !header.isEmpty() ? header.get(0) : null;
+      case "getHeaders":
+        header = this.headers.get(((String) args[0]).toLowerCase(Locale.ROOT));
+        return Collections.enumeration(header != null ? header : Collections.<String>emptyList());
+      case "getHeaderNames":
+        return Collections.enumeration(this.headers.keySet());
+      case "getLocale":
+        return this.locales.isEmpty() ? Locale.getDefault() : this.locales.get(0);
+      case "getLocales":
+        return Collections.enumeration(
+            this.locales.isEmpty() ? Collections.singletonList(Locale.getDefault()) : this.locales);
+      case "getUserPrincipal":
+        return this.principal;
+      case "getCookies":
+        return this.cookies;
+      case "equals":
+        return proxy == args[0];
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      case "toString":
+        return "RequestSnapshot" + this.strings;
+      default:
+        if (this.strings.containsKey(name)) {
+          return this.strings.get(name);
+        }
+        return defaultValue(method.getReturnType());
+    }
+  }
+
+  private synchronized HttpSession getSession(boolean create) {
+    if (this.sessionAttributes == null && create) {
+      this.sessionAttributes = Collections.synchronizedMap(new HashMap<String, Object>());
+    }
+    if (this.sessionAttributes == null) {
+      return null;
+    }
+
+    final Map<String, Object> sessionAttributes = this.sessionAttributes;
+    return (HttpSession) Proxy.newProxyInstance(RequestSnapshot.class.getClassLoader(),
+        new Class<?>[] {HttpSession.class}, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+              case "getAttribute":
+                return sessionAttributes.get(args[0]);
+              case "getAttributeNames":
+                return enumeration(sessionAttributes);
+              case "setAttribute":
+                if (args[1] == null) {
+                  sessionAttributes.remove(args[0]);
+                } else {
+                  sessionAttributes.put((String) args[0], args[1]);
+                }
+                return null;
+              case "removeAttribute":
+                sessionAttributes.remove(args[0]);
+                return null;
+              case "getId":
+                return "snapshot";
+              case "equals":
+                return proxy == args[0];
+              case "hashCode":
+                return System.identityHashCode(proxy);
+              case "toString":
+                return "RequestSnapshot session";
+              default:
+                return defaultValue(method.getReturnType());
+            }
+          }
+        });
+  }
+
+  private static Object enumeration(Map<String, Object> synchronizedMap) {
+    synchronized (synchronizedMap) {
+      return Collections.enumeration(new ArrayList<>(synchronizedMap.keySet()));
+    }
+  }
+
+  private static Object defaultValue(Class<?> type) {
+    if (type == boolean.class) {
+      return false;
+    } else if (type == int.class) {
+      return 0;
+    } else if (type == long.class) {
+      return 0L;
+    }
+    return null;
+  }
+}
@@ -0,0 +1,84 @@
+package org.geoladris.config;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * Coalesces concurrent computations of the same key: the first caller computes the value and the
+ * rest wait for it and get the same result (or exception), instead of computing it again.
+ * </p>
+ *
+ * <p>
+ * Nothing is kept once the computation finishes; callers must cache the value themselves.
+ * </p>
+ *
+ * @param <K> Type of the keys.
+ * @param <V> Type of the values.
+ */
+public class SingleFlight<K, V> {
+  private ConcurrentMap<K, FutureTask<V>> calls = new ConcurrentHashMap<>();
+
+  /**
+   * @param key
+   * @param loader Computes the value if there is no computation in progress for the key.
+   * @return the value computed by this call or by a concurrent one for the same key.
+   */
+  public V execute(K key, final Supplier<V> loader) {
+    FutureTask<V> task = new FutureTask<>(new Callable<V>() {
+      @Override
+      public V call() throws Exception {
+        return loader.get();
+      }
+    });
+    FutureTask<V> current = this.calls.putIfAbsent(key, task);
+    if (current == null) {
+      try {
+        task.run();
+      } finally {
+        this.calls.remove(key, task);
+      }
+      current = task;
+    } else {
+      onWait(key);
+    }
+    return get(current);
+  }
+
+  /**
+   * Called when a caller waits for the computation of another one. Does nothing by default.
+   *
+   * @param key
+   */
+  protected void onWait(K key) {}
+
+  private V get(FutureTask<V> task) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return task.get();
+        } catch (InterruptedException e) {
+          // The computation runs in another request; wait for it anyway
+          interrupted = true;
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          } else if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          throw new IllegalStateException(cause);
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
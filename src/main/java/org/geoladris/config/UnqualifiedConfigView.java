@@ -0,0 +1,95 @@
+package org.geoladris.config;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.geoladris.Plugin;
+
+import net.sf.json.JSONObject;
+
+/**
+ * <p>
+ * Read-only view of the plugin configurations with unqualified module names (i.e. without the
+ * <code>&lt;plugin&gt;/</code> prefix), as expected by
+ * {@link PluginConfigProvider#getPluginConfig(Config, Map, HttpServletRequest)}.
+ * </p>
+ *
+ * <p>
+ * The configuration trees are taken when the view is created, but each plugin configuration is
+ * only unqualified and converted to {@link JSONObject} the first time it is requested. Providers
+ * that do not read the current configuration do not pay for it.
+ * </p>
+ */
+class UnqualifiedConfigView extends AbstractMap<String, JSONObject> {
+  private final Map<String, ConfigTree> trees;
+  private final Map<String, JSONObject> resolved = new HashMap<>();
+
+  UnqualifiedConfigView(Iterable<Plugin> plugins) {
+    this.trees = new HashMap<>();
+    for (Plugin plugin : plugins) {
+      this.trees.put(plugin.getName(), plugin.getConfigurationTree());
+    }
+  }
+
+  @Override
+  public JSONObject get(Object key) {
+    JSONObject ret = this.resolved.get(key);
+    if (ret == null) {
+      ConfigTree tree = this.trees.get(key);
+      if (tree == null) {
+        return null;
+      }
+      ret = tree.unprefixKeys(key + "/").toJSON();
+      this.resolved.put((String) key, ret);
+    }
+    return ret;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return this.trees.containsKey(key);
+  }
+
+  @Override
+  public int size() {
+    return this.trees.size();
+  }
+
+  @Override
+  public Set<String> keySet() {
+    return this.trees.keySet();
+  }
+
+  @Override
+  public Set<Map.Entry<String, JSONObject>> entrySet() {
+    return new AbstractSet<Map.Entry<String, JSONObject>>() {
+      @Override
+      public Iterator<Map.Entry<String, JSONObject>> iterator() {
+        final Iterator<String> names = trees.keySet().iterator();
+        return new Iterator<Map.Entry<String, JSONObject>>() {
+          @Override
+          public boolean hasNext() {
+            return names.hasNext();
+          }
+
+          @Override
+          public Map.Entry<String, JSONObject> next() {
+            String name = names.next();
+            return new SimpleImmutableEntry<>(name, get(name));
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return trees.size();
+      }
+    };
+  }
+}
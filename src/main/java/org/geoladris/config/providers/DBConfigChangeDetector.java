@@ -0,0 +1,152 @@
+package org.geoladris.config.providers;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+import javax.sql.DataSource;
+
+import org.apache.log4j.Logger;
+import org.geoladris.config.ConfigImpl;
+import org.geoladris.metrics.Metrics;
+
+/**
+ * <p>
+ * Detects changes in the configuration read by {@link DBConfigProvider} by polling the
+ * <code>version</code> column of a table with <code>plugin</code>, <code>role</code> and
+ * <code>version</code> columns: {@value DBConfigProvider#TABLE} itself or a change log filled by
+ * triggers (needed to detect deleted rows). Writers must increase the version of the changed rows
+ * (i.e. from a sequence).
+ * </p>
+ *
+ * <p>
+ * Versions are not committed in order: a transaction can commit a version lower than one already
+ * seen. So each poll reads again the last {@link #setOverlap(long) overlap} versions below the
+ * highest one seen and reports the versions it had not seen before. A row is detected as long as
+ * it commits before the highest version grows past its own by more than the overlap; rows
+ * committed later than that are missed until the cached configuration expires.
+ * </p>
+ *
+ * <p>
+ * For the new versions, the roles of the changed rows are read and only the cached configurations
+ * for those roles are discarded from {@link ConfigImpl}. A row without role discards all of them.
+ * Plugins with the same configuration as before are not serialized again (see
+ * {@link org.geoladris.config.ConfigFragments}).
+ * </p>
+ *
+ * <p>
+ * Each {@link #run()} polls once; it is meant to be scheduled at a fixed rate. The first run only
+ * reads the current versions.
+ * </p>
+ */
+public class DBConfigChangeDetector implements Runnable {
+  private static final Logger logger = Logger.getLogger(DBConfigChangeDetector.class);
+
+  public static final long DEFAULT_OVERLAP = 1000;
+
+  private DataSource dataSource;
+  private DBConfigProvider provider;
+  private ConfigImpl config;
+  private String versionQuery;
+  private String changesQuery;
+  private Metrics metrics = new Metrics();
+  private long overlap = DEFAULT_OVERLAP;
+
+  private Long version;
+  // Versions within the overlap below the highest one, already reported
+  private Set<Long> seen = new HashSet<>();
+
+  /**
+   * @param dataSource Pool to get the connections from.
+   * @param schema Schema of the table; <code>null</code> for the default one.
+   * @param table Table with the versions.
+   * @param provider
+   * @param config
+   */
+  public DBConfigChangeDetector(DataSource dataSource, String schema, String table,
+      DBConfigProvider provider, ConfigImpl config) {
+    this.dataSource = dataSource;
+    this.provider = provider;
+    this.config = config;
+    String qualified = schema != null && !schema.isEmpty() ? schema + "." + table : table;
+    this.versionQuery = "SELECT max(version) FROM " + qualified;
+    this.changesQuery = "SELECT plugin, role, version FROM " + qualified + " WHERE version > ?";
+  }
+
+  public void setMetrics(Metrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * @param overlap Number of versions below the highest one that are read again on each poll, to
+   *        detect transactions that commit out of order. {@value #DEFAULT_OVERLAP} by default.
+   */
+  public void setOverlap(long overlap) {
+    this.overlap = overlap;
+  }
+
+  @Override
+  public synchronized void run() {
+    try (Connection connection = this.dataSource.getConnection()) {
+      boolean first = this.version == null;
+      if (first) {
+        this.version = getVersion(connection);
+      }
+
+      long current = this.version;
+      Set<Long> versions = new HashSet<>();
+      Set<Long> changed = new TreeSet<>();
+      Set<String> plugins = new TreeSet<>();
+      final Set<String> roles = new HashSet<>();
+      try (PreparedStatement statement = connection.prepareStatement(this.changesQuery)) {
+        statement.setLong(1, this.version - this.overlap);
+        try (ResultSet result = statement.executeQuery()) {
+          while (result.next()) {
+            long version = result.getLong(3);
+            versions.add(version);
+            current = Math.max(current, version);
+            if (first || this.seen.contains(version)) {
+              continue;
+            }
+            changed.add(version);
+            if (result.getString(1) != null) {
+              plugins.add(result.getString(1));
+            }
+            roles.add(result.getString(2));
+          }
+        }
+      }
+      // Versions below the next window are not read again
+      this.seen = versions;
+
+      if (!changed.isEmpty()) {
+        logger.info("Plugin configuration changed in the database (versions " + changed
+            + ") for plugins " + plugins + (roles.contains(null) ? " and all roles"
+                : " and roles " + new TreeSet<>(roles)));
+        this.config.clearCachedConfigurations(this.provider, new Predicate<String>() {
+          @Override
+          public boolean test(String key) {
+            return provider.dependsOn(key, roles);
+          }
+        });
+        this.metrics.counter(Metrics.DB_CONFIG_CHANGES).inc();
+      }
+      this.version = current;
+    } catch (SQLException e) {
+      logger.warn("Cannot check the plugin configuration version in the database", e);
+    }
+  }
+
+  private long getVersion(Connection connection) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(this.versionQuery);
+        ResultSet result = statement.executeQuery()) {
+      // No rows: max is null, read as 0
+      return result.next() ? result.getLong(1) : 0;
+    }
+  }
+}
@@ -0,0 +1,179 @@
+package org.geoladris.config.providers;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import javax.sql.DataSource;
+
+import org.apache.log4j.Logger;
+import org.geoladris.Geoladris;
+import org.geoladris.config.CacheablePluginConfigProvider;
+import org.geoladris.config.Config;
+import org.geoladris.config.SingleFlight;
+
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+
+/**
+ * <p>
+ * Provider that reads the plugin configuration from the {@value #TABLE} table, with the
+ * <code>plugin</code>, <code>role</code>, <code>locale</code> (language code) and
+ * <code>conf</code> (JSON object) columns. A <code>NULL</code> role or locale applies to all of
+ * them. For each plugin, the most specific row is used: role and locale, role, locale and none.
+ * </p>
+ *
+ * <p>
+ * The active role is taken from the {@link Geoladris#ATTR_ROLE} session attribute, as in
+ * {@link RoleConfigProvider}, and the locale from the {@link Geoladris#ATTR_LOCALE} attribute. All
+ * the plugins for a role and locale are read with a single query, shared by concurrent requests.
+ * The result is not kept; {@link org.geoladris.config.ConfigImpl} caches it by
+ * {@link #getCacheKey(Config, HttpServletRequest)} if caching is enabled.
+ * </p>
+ */
+public class DBConfigProvider implements CacheablePluginConfigProvider {
+  private static final Logger logger = Logger.getLogger(DBConfigProvider.class);
+
+  public static final String TABLE = "plugin_conf";
+
+  // Not a valid role nor language, so it cannot clash with them
+  private static final String NONE = "/";
+
+  private DataSource dataSource;
+  private String query;
+  private SingleFlight<String, Map<String, JSONObject>> queries = new SingleFlight<>();
+
+  /**
+   * @param dataSource Pool to get the connections from.
+   * @param schema Schema of the {@value #TABLE} table; <code>null</code> for the default one.
+   */
+  public DBConfigProvider(DataSource dataSource, String schema) {
+    this.dataSource = dataSource;
+    String table = schema != null && !schema.isEmpty() ? schema + "." + TABLE : TABLE;
+    this.query = "SELECT plugin, role, locale, conf FROM " + table
+        + " WHERE (role IS NULL OR role = ?) AND (locale IS NULL OR locale = ?)";
+  }
+
+  @Override
+  public Map<String, JSONObject> getPluginConfig(Config config,
+      Map<String, JSONObject> currentConfig, HttpServletRequest request) throws IOException {
+    final String role = getRole(request);
+    final String locale = getLocale(request);
+    try {
+      return this.queries.execute(getKey(role, locale), new Supplier<Map<String, JSONObject>>() {
+        @Override
+        public Map<String, JSONObject> get() {
+          try {
+            return query(role, locale);
+          } catch (SQLException e) {
+            throw new IllegalStateException(e);
+          }
+        }
+      });
+    } catch (IllegalStateException e) {
+      if (e.getCause() instanceof SQLException) {
+        throw new IOException("Cannot read plugin configuration from the database", e.getCause());
+      }
+      throw e;
+    }
+  }
+
+  private Map<String, JSONObject> query(String role, String locale) throws SQLException {
+    Map<String, JSONObject> ret = new HashMap<>();
+    // Specificity of the row used for each plugin
+    Map<String, Integer> specificity = new HashMap<>();
+    try (Connection connection = this.dataSource.getConnection();
+        PreparedStatement statement = connection.prepareStatement(this.query)) {
+      setString(statement, 1, role);
+      setString(statement, 2, locale);
+      try (ResultSet result = statement.executeQuery()) {
+        while (result.next()) {
+          String plugin = result.getString(1);
+          int rowSpecificity =
+              (result.getString(2) != null ? 2 : 0) + (result.getString(3) != null ? 1 : 0);
+          Integer current = specificity.get(plugin);
+          if (current != null && current >= rowSpecificity) {
+            continue;
+          }
+
+          try {
+            ret.put(plugin, JSONObject.fromObject(result.getString(4)));
+            specificity.put(plugin, rowSpecificity);
+          } catch (JSONException e) {
+            logger.warn("Invalid configuration in " + TABLE + " for plugin " + plugin + ", role "
+                + role + " and locale " + locale, e);
+          }
+        }
+      }
+    }
+
+    return Collections.unmodifiableMap(ret);
+  }
+
+  private static void setString(PreparedStatement statement, int index, String value)
+      throws SQLException {
+    if (value != null) {
+      statement.setString(index, value);
+    } else {
+      statement.setNull(index, Types.VARCHAR);
+    }
+  }
+
+  /**
+   * @param key A key returned by {@link #getCacheKey(Config, HttpServletRequest)}.
+   * @param roles Changed roles; <code>null</code> stands for the rows without role, which apply to
+   *        all roles.
+   * @return true if the output for the given key depends on any of the given roles.
+   */
+  public boolean dependsOn(String key, Collection<String> roles) {
+    if (roles.contains(null)) {
+      return true;
+    }
+    String role = key.substring(0, key.lastIndexOf('|'));
+    return !NONE.equals(role) && roles.contains(role);
+  }
+
+  private static String getRole(HttpServletRequest request) {
+    HttpSession session = request.getSession(false);
+    Object attr = session != null ? session.getAttribute(Geoladris.ATTR_ROLE) : null;
+    return attr != null ? attr.toString() : null;
+  }
+
+  private static String getLocale(HttpServletRequest request) {
+    Object attr = request.getAttribute(Geoladris.ATTR_LOCALE);
+    if (attr == null) {
+      HttpSession session = request.getSession(false);
+      attr = session != null ? session.getAttribute(Geoladris.ATTR_LOCALE) : null;
+    }
+    return attr instanceof Locale ? ((Locale) attr).getLanguage() : null;
+  }
+
+  private static String getKey(String role, String locale) {
+    return (role != null ? role : NONE) + "|" + (locale != null ? locale : NONE);
+  }
+
+  @Override
+  public String getCacheKey(Config config, HttpServletRequest request) {
+    return getKey(getRole(request), getLocale(request));
+  }
+
+  /**
+   * @return <code>false</code>; the output depends on the role and locale. See
+   *         {@link #getCacheKey(Config, HttpServletRequest)}.
+   */
+  @Override
+  public boolean canBeCached() {
+    return false;
+  }
+}
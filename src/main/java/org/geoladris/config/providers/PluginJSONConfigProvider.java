@@ -9,6 +9,7 @@ import javax.servlet.http.HttpServletRequest;
 
 import org.apache.log4j.Logger;
 import org.geoladris.Plugin;
+import org.geoladris.ThrottledLogger;
 import org.geoladris.config.Config;
 import org.geoladris.config.PluginConfigProvider;
 
@@ -19,7 +20,8 @@ import net.sf.json.JSONObject;
  * @author victorzinho
  */
 public class PluginJSONConfigProvider implements PluginConfigProvider {
-  private static final Logger logger = Logger.getLogger(PluginJSONConfigProvider.class);
+  private static final ThrottledLogger logger =
+      new ThrottledLogger(Logger.getLogger(PluginJSONConfigProvider.class));
 
   private static final String PLUGIN_NAME = "core";
 
@@ -31,7 +33,7 @@ public class PluginJSONConfigProvider implements PluginConfigProvider {
       return null;
     }
 
-    logger.warn("Using deprecated plugin-conf.json; use public-conf instead");
+    logger.warn("deprecated", "Using deprecated plugin-conf.json; use public-conf instead");
     File pluginConf = new File(config.getDir(), "plugin-conf.json");
 
     try {
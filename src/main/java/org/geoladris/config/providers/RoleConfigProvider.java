@@ -9,8 +9,8 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 
 import org.geoladris.Geoladris;
+import org.geoladris.config.CacheablePluginConfigProvider;
 import org.geoladris.config.Config;
-import org.geoladris.config.PluginConfigProvider;
 
 import de.csgis.commons.JSONContentProvider;
 import net.sf.json.JSONObject;
@@ -23,14 +23,18 @@ import net.sf.json.JSONObject;
  * </p>
  * 
  * <p>
- * The active role is taken from the {@link Geoladris#ATTR_ROLE} session attribute.
+ * The active role is taken from the {@link Geoladris#ATTR_ROLE} session attribute. The output
+ * only depends on the role, so the role is used as cache key.
  * </p>
  * 
  * @author victorzinho
  */
-public class RoleConfigProvider implements PluginConfigProvider {
+public class RoleConfigProvider implements CacheablePluginConfigProvider {
   public static final String ROLE_DIR = "role_conf";
 
+  // Not a valid file name, so it cannot clash with any role
+  private static final String NO_ROLE_KEY = "/";
+
   private Map<File, JSONContentProvider> contents = new HashMap<>();
 
   @SuppressWarnings("unchecked")
@@ -49,7 +53,7 @@ public class RoleConfigProvider implements PluginConfigProvider {
   }
 
   private String getRole(HttpServletRequest request) {
-    HttpSession session = request.getSession();
+    HttpSession session = request.getSession(false);
     if (session == null) {
       return null;
     }
@@ -61,6 +65,16 @@ public class RoleConfigProvider implements PluginConfigProvider {
     return attr.toString();
   }
 
+  @Override
+  public String getCacheKey(Config config, HttpServletRequest request) {
+    String role = getRole(request);
+    return role != null ? role : NO_ROLE_KEY;
+  }
+
+  /**
+   * @return <code>false</code>; the output depends on the role. See
+   *         {@link #getCacheKey(Config, HttpServletRequest)}.
+   */
   @Override
   public boolean canBeCached() {
     return false;
@@ -0,0 +1,29 @@
+package org.geoladris.metrics;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic counter. It is striped, so it can be incremented concurrently on every request without
+ * contention.
+ */
+public class Counter extends Metric implements CounterMBean {
+  private LongAdder count = new LongAdder();
+
+  Counter(String name, Map<String, String> labels) {
+    super(name, labels);
+  }
+
+  public void inc() {
+    this.count.increment();
+  }
+
+  public void add(long n) {
+    this.count.add(n);
+  }
+
+  @Override
+  public long getCount() {
+    return this.count.sum();
+  }
+}
@@ -0,0 +1,5 @@
+package org.geoladris.metrics;
+
+public interface CounterMBean {
+  long getCount();
+}
@@ -0,0 +1,34 @@
+package org.geoladris.metrics;
+
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Value that can go up and down, i.e. the number of plugins. It is either set or read from a
+ * supplier each time it is requested.
+ */
+public class Gauge extends Metric implements GaugeMBean {
+  private volatile long value;
+  private LongSupplier supplier;
+
+  Gauge(String name, Map<String, String> labels) {
+    this(name, labels, null);
+  }
+
+  Gauge(String name, Map<String, String> labels, LongSupplier supplier) {
+    super(name, labels);
+    this.supplier = supplier;
+  }
+
+  /**
+   * Ignored if the value is read from a supplier.
+   */
+  public void set(long value) {
+    this.value = value;
+  }
+
+  @Override
+  public long getValue() {
+    return this.supplier != null ? this.supplier.getAsLong() : this.value;
+  }
+}
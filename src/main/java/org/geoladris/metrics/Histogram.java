@@ -0,0 +1,130 @@
+package org.geoladris.metrics;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Distribution of durations, recorded in nanoseconds into fixed buckets. Recording only increments
+ * striped counters, so it does not allocate nor contend on hot paths.
+ * </p>
+ *
+ * <p>
+ * Buckets have the upper bounds in {@link #DEFAULT_BOUNDS}, from 50 microseconds to 10 seconds,
+ * plus an overflow bucket.
+ * </p>
+ */
+public class Histogram extends Metric implements HistogramMBean {
+  public static final long[] DEFAULT_BOUNDS = toNanos(0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 25, 50,
+      100, 250, 500, 1000, 2500, 5000, 10000);
+
+  private long[] bounds;
+  private LongAdder[] buckets;
+  private LongAdder sum = new LongAdder();
+  private AtomicLong max = new AtomicLong();
+
+  Histogram(String name, Map<String, String> labels) {
+    super(name, labels);
+    this.bounds = DEFAULT_BOUNDS;
+    this.buckets = new LongAdder[this.bounds.length + 1];
+    for (int i = 0; i < this.buckets.length; i++) {
+      this.buckets[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * @param nanos Duration in nanoseconds.
+   */
+  public void record(long nanos) {
+    int index = Arrays.binarySearch(this.bounds, nanos);
+    // Bounds are inclusive
+    this.buckets[index >= 0 ? index : -index - 1].increment();
+    this.sum.add(nanos);
+
+    long current = this.max.get();
+    while (nanos > current && !this.max.compareAndSet(current, nanos)) {
+      current = this.max.get();
+    }
+  }
+
+  /**
+   * @param start Start time, as returned by {@link System#nanoTime()}.
+   */
+  public void recordSince(long start) {
+    record(System.nanoTime() - start);
+  }
+
+  @Override
+  public long getCount() {
+    long ret = 0;
+    for (LongAdder bucket : this.buckets) {
+      ret += bucket.sum();
+    }
+    return ret;
+  }
+
+  /**
+   * @return the sum of all the recorded durations in nanoseconds.
+   */
+  public long getSum() {
+    return this.sum.sum();
+  }
+
+  /**
+   * @return the upper bound of each bucket in nanoseconds.
+   */
+  public long[] getBucketBounds() {
+    return this.bounds.clone();
+  }
+
+  @Override
+  public long[] getBucketCounts() {
+    long[] ret = new long[this.buckets.length];
+    long cumulative = 0;
+    for (int i = 0; i < this.buckets.length; i++) {
+      cumulative += this.buckets[i].sum();
+      ret[i] = cumulative;
+    }
+    return ret;
+  }
+
+  @Override
+  public double getSumMillis() {
+    return toMillis(getSum());
+  }
+
+  @Override
+  public double getMeanMillis() {
+    long count = getCount();
+    return count > 0 ? getSumMillis() / count : 0;
+  }
+
+  @Override
+  public double getMaxMillis() {
+    return toMillis(this.max.get());
+  }
+
+  @Override
+  public double[] getBucketBoundsMillis() {
+    double[] ret = new double[this.bounds.length];
+    for (int i = 0; i < ret.length; i++) {
+      ret[i] = toMillis(this.bounds[i]);
+    }
+    return ret;
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  private static long[] toNanos(double... millis) {
+    long[] ret = new long[millis.length];
+    for (int i = 0; i < millis.length; i++) {
+      ret[i] = Math.round(millis[i] * TimeUnit.MILLISECONDS.toNanos(1));
+    }
+    return ret;
+  }
+}
@@ -0,0 +1,21 @@
+package org.geoladris.metrics;
+
+public interface HistogramMBean {
+  long getCount();
+
+  double getSumMillis();
+
+  double getMeanMillis();
+
+  double getMaxMillis();
+
+  /**
+   * @return the upper bound of each bucket.
+   */
+  double[] getBucketBoundsMillis();
+
+  /**
+   * @return the number of values lower or equal than each bucket bound, plus the total count.
+   */
+  long[] getBucketCounts();
+}
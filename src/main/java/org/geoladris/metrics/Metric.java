@@ -0,0 +1,26 @@
+package org.geoladris.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Base class for the metrics in a {@link Metrics} registry: a name and an ordered set of labels
+ * (i.e. the provider a latency is measured for).
+ */
+public abstract class Metric {
+  private String name;
+  private Map<String, String> labels;
+
+  Metric(String name, Map<String, String> labels) {
+    this.name = name;
+    this.labels = Collections.unmodifiableMap(labels);
+  }
+
+  public String getName() {
+    return this.name;
+  }
+
+  public Map<String, String> getLabels() {
+    return this.labels;
+  }
+}
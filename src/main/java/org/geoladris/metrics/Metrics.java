@@ -0,0 +1,331 @@
+package org.geoladris.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.ServletContext;
+
+import org.apache.log4j.Logger;
+import org.geoladris.Geoladris;
+
+/**
+ * <p>
+ * Registry of the Geoladris metrics of an application. Metrics are identified by their name and
+ * labels and created the first time they are requested, so callers just ask for the metric each
+ * time they record a value.
+ * </p>
+ *
+ * <p>
+ * Metrics can be exposed as MBeans with {@link #registerMBeans(MBeanServer, String)}, under
+ * <code>org.geoladris:type=&lt;type&gt;,context=&lt;context&gt;,name=&lt;name&gt;</code> plus a key
+ * for each label, where the type is <code>Counter</code>, <code>Gauge</code> or
+ * <code>Histogram</code>. Metrics created after that are registered as well.
+ * </p>
+ */
+public class Metrics {
+  private static final Logger logger = Logger.getLogger(Metrics.class);
+
+  public static final String DOMAIN = "org.geoladris";
+
+  // Configuration pipeline
+  /**
+   * Histogram of {@link org.geoladris.config.PluginConfigProvider#getPluginConfig} calls. Label:
+   * {@link #LABEL_PROVIDER}.
+   */
+  public static final String PROVIDER_DURATION = "provider_duration";
+  /**
+   * Counters of provider outputs taken from or missing in the cache. Label:
+   * {@link #LABEL_PROVIDER}.
+   */
+  public static final String PROVIDER_CACHE_HITS = "provider_cache_hits";
+  public static final String PROVIDER_CACHE_MISSES = "provider_cache_misses";
+  /**
+   * Counters of merged plugin configurations taken from or missing in the cache.
+   */
+  public static final String MERGE_CACHE_HITS = "merge_cache_hits";
+  public static final String MERGE_CACHE_MISSES = "merge_cache_misses";
+  /**
+   * Counter of entries discarded from a cache. Label: {@link #LABEL_CACHE}.
+   */
+  public static final String CACHE_EVICTIONS = "cache_evictions";
+  /**
+   * Counter of cache entries refreshed in the background after their soft timeout. Label:
+   * {@link #LABEL_CACHE}.
+   */
+  public static final String CACHE_REFRESHES = "cache_refreshes";
+  /**
+   * Counter of cache misses that waited for the computation of a concurrent miss of the same key
+   * instead of computing the value again. Label: {@link #LABEL_CACHE}.
+   */
+  public static final String SINGLE_FLIGHT_WAITS = "single_flight_waits";
+  /**
+   * Counters of provider calls that failed (including timeouts), that timed out and that were
+   * replaced by the last known good output of the provider. Label: {@link #LABEL_PROVIDER}.
+   */
+  public static final String PROVIDER_FAILURES = "provider_failures";
+  public static final String PROVIDER_TIMEOUTS = "provider_timeouts";
+  public static final String PROVIDER_FALLBACKS = "provider_fallbacks";
+  /**
+   * Gauge with the state of the circuit breaker of a provider: 0 (closed), 1 (open) or 2 (half
+   * open). Label: {@link #LABEL_PROVIDER}.
+   */
+  public static final String PROVIDER_CIRCUIT_STATE = "provider_circuit_state";
+  /**
+   * Counter of the transitions of the circuit breaker of a provider. Labels:
+   * {@link #LABEL_PROVIDER} and {@link #LABEL_STATE} (the new state).
+   */
+  public static final String PROVIDER_CIRCUIT_TRANSITIONS = "provider_circuit_transitions";
+
+  // Requests
+  /**
+   * Histogram of the <code>config.js</code> calls.
+   */
+  public static final String CONFIG_RENDER_DURATION = "config_render_duration";
+  /**
+   * Counter of the requests handled by {@link org.geoladris.servlet.RedirectFilter}. Label:
+   * {@link #LABEL_RESULT}; <code>hit</code> for existing resources, <code>forward</code> for
+   * plugin resources and <code>miss</code> for paths that are not resolved.
+   */
+  public static final String REDIRECT_REQUESTS = "redirect_requests";
+  /**
+   * Counter of the sessions created by {@link org.geoladris.servlet.LangFilter} to store the
+   * locale.
+   */
+  public static final String LANG_SESSIONS_CREATED = "lang_sessions_created";
+
+  // Plugins and watchers
+  public static final String PLUGINS = "plugins";
+  public static final String PLUGIN_SCAN_DURATION = "plugin_scan_duration";
+  public static final String PLUGIN_SCAN_LAST_DURATION_MILLIS = "plugin_scan_last_duration_millis";
+  public static final String CSS_IMPORTS_DURATION = "css_imports_duration";
+  /**
+   * Counters of the file system events received by the directory watchers and the actions run as
+   * a result. Label: {@link #LABEL_ACTION}.
+   */
+  public static final String WATCHER_EVENTS = "watcher_events";
+  public static final String WATCHER_ACTIONS = "watcher_actions";
+  /**
+   * Histogram of the actions run by the directory watchers (i.e. reloading the plugins). Label:
+   * {@link #LABEL_ACTION}.
+   */
+  public static final String WATCHER_ACTION_DURATION = "watcher_action_duration";
+  /**
+   * Gauge with the number of language and role combinations left to compute by
+   * {@link org.geoladris.ConfigWarmUp}.
+   */
+  public static final String WARM_UP_REMAINING = "warm_up_remaining";
+  /**
+   * Counter of the changes of the database plugin configuration detected by
+   * {@link org.geoladris.config.providers.DBConfigChangeDetector}.
+   */
+  public static final String DB_CONFIG_CHANGES = "db_config_changes";
+
+  // Database
+  /**
+   * Gauges with the active, idle and maximum connections of the pool in the
+   * {@link Geoladris#ATTR_DATA_SOURCE} context attribute.
+   */
+  public static final String DB_POOL_ACTIVE = "db_pool_active";
+  public static final String DB_POOL_IDLE = "db_pool_idle";
+  public static final String DB_POOL_MAX = "db_pool_max";
+
+  public static final String LABEL_PROVIDER = "provider";
+  public static final String LABEL_CACHE = "cache";
+  public static final String LABEL_ACTION = "action";
+  public static final String LABEL_RESULT = "result";
+  public static final String LABEL_STATE = "state";
+
+  private Map<String, Metric> metrics = new ConcurrentHashMap<>();
+
+  private MBeanServer server;
+  private String context;
+  private List<ObjectName> registered = new ArrayList<>();
+
+  /**
+   * @param context
+   * @return the registry in the {@link Geoladris#ATTR_METRICS} context attribute or a new,
+   *         unregistered one if there is none.
+   */
+  public static Metrics get(ServletContext context) {
+    Metrics ret = (Metrics) context.getAttribute(Geoladris.ATTR_METRICS);
+    return ret != null ? ret : new Metrics();
+  }
+
+  /**
+   * @param name
+   * @param labels Label names and values: <code>name1, value1, name2, value2...</code>
+   * @return the counter with the given name and labels.
+   */
+  public Counter counter(String name, String... labels) {
+    String key = getKey(name, labels);
+    Metric ret = this.metrics.get(key);
+    if (ret == null) {
+      ret = register(key, new Counter(name, toMap(labels)));
+    }
+    return (Counter) ret;
+  }
+
+  /**
+   * @param name
+   * @param labels Label names and values: <code>name1, value1, name2, value2...</code>
+   * @return the gauge with the given name and labels.
+   */
+  public Gauge gauge(String name, String... labels) {
+    String key = getKey(name, labels);
+    Metric ret = this.metrics.get(key);
+    if (ret == null) {
+      ret = register(key, new Gauge(name, toMap(labels)));
+    }
+    return (Gauge) ret;
+  }
+
+  /**
+   * @param name
+   * @param supplier Reads the value of the gauge each time it is requested. Ignored if the gauge
+   *        already exists.
+   * @param labels Label names and values: <code>name1, value1, name2, value2...</code>
+   * @return the gauge with the given name and labels.
+   */
+  public Gauge gauge(String name, LongSupplier supplier, String... labels) {
+    String key = getKey(name, labels);
+    Metric ret = this.metrics.get(key);
+    if (ret == null) {
+      ret = register(key, new Gauge(name, toMap(labels), supplier));
+    }
+    return (Gauge) ret;
+  }
+
+  /**
+   * @param name
+   * @param labels Label names and values: <code>name1, value1, name2, value2...</code>
+   * @return the histogram with the given name and labels.
+   */
+  public Histogram histogram(String name, String... labels) {
+    String key = getKey(name, labels);
+    Metric ret = this.metrics.get(key);
+    if (ret == null) {
+      ret = register(key, new Histogram(name, toMap(labels)));
+    }
+    return (Histogram) ret;
+  }
+
+  /**
+   * @return all the metrics, sorted by name and labels.
+   */
+  public Collection<Metric> getMetrics() {
+    return new TreeMap<>(this.metrics).values();
+  }
+
+  private synchronized Metric register(String key, Metric metric) {
+    Metric existing = this.metrics.get(key);
+    if (existing != null) {
+      return existing;
+    }
+
+    this.metrics.put(key, metric);
+    if (this.server != null) {
+      registerMBean(metric);
+    }
+    return metric;
+  }
+
+  /**
+   * Registers all the metrics, current and future, as MBeans.
+   *
+   * @param server
+   * @param context Name of the application, to tell apart the metrics of different applications
+   *        in the same server.
+   */
+  public synchronized void registerMBeans(MBeanServer server, String context) {
+    unregisterMBeans();
+    this.server = server;
+    this.context = context;
+    for (Metric metric : this.metrics.values()) {
+      registerMBean(metric);
+    }
+  }
+
+  /**
+   * Unregisters the MBeans registered by {@link #registerMBeans(MBeanServer, String)}.
+   */
+  public synchronized void unregisterMBeans() {
+    for (ObjectName name : this.registered) {
+      try {
+        this.server.unregisterMBean(name);
+      } catch (JMException e) {
+        logger.warn("Cannot unregister MBean: " + name, e);
+      }
+    }
+    this.registered.clear();
+    this.server = null;
+  }
+
+  private void registerMBean(Metric metric) {
+    ObjectName name = null;
+    try {
+      name = getObjectName(metric, this.context);
+      if (this.server.isRegistered(name)) {
+        this.server.unregisterMBean(name);
+      }
+      this.server.registerMBean(metric, name);
+      this.registered.add(name);
+    } catch (JMException e) {
+      logger.warn("Cannot register MBean for metric: " + (name != null ? name : metric.getName()),
+          e);
+    }
+  }
+
+  static ObjectName getObjectName(Metric metric, String context) throws JMException {
+    Hashtable<String, String> properties = new Hashtable<>();
+    for (Map.Entry<String, String> label : metric.getLabels().entrySet()) {
+      properties.put(label.getKey(), quote(label.getValue()));
+    }
+    properties.put("type", metric.getClass().getSimpleName());
+    properties.put("context", quote(context));
+    properties.put("name", quote(metric.getName()));
+    return new ObjectName(DOMAIN, properties);
+  }
+
+  private static String quote(String value) {
+    for (char c : new char[] {',', '=', ':', '"', '*', '?', '\n'}) {
+      if (value.indexOf(c) >= 0) {
+        return ObjectName.quote(value);
+      }
+    }
+    return value;
+  }
+
+  private static String getKey(String name, String... labels) {
+    if (labels.length == 0) {
+      return name;
+    }
+
+    StringBuilder ret = new StringBuilder(name).append('{');
+    for (int i = 0; i + 1 < labels.length; i += 2) {
+      ret.append(labels[i]).append('=').append(labels[i + 1]).append(',');
+    }
+    return ret.append('}').toString();
+  }
+
+  private static Map<String, String> toMap(String... labels) {
+    if (labels.length % 2 != 0) {
+      throw new IllegalArgumentException("Labels must be name/value pairs");
+    }
+
+    Map<String, String> ret = new LinkedHashMap<>();
+    for (int i = 0; i < labels.length; i += 2) {
+      ret.put(labels[i], labels[i + 1]);
+    }
+    return ret;
+  }
+}
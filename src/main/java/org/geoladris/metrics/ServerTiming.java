@@ -0,0 +1,79 @@
+package org.geoladris.metrics;
+
+import java.util.Locale;
+
+import javax.servlet.ServletRequest;
+
+import org.geoladris.Geoladris;
+
+/**
+ * <p>
+ * Collects the duration of the stages of a request for the <code>Server-Timing</code> response
+ * header, so the breakdown is shown by the browser developer tools.
+ * </p>
+ *
+ * <p>
+ * The collector is stored in the {@link Geoladris#ATTR_SERVER_TIMING} request attribute by the
+ * servlet that writes the header. Code deeper in the call (i.e. the configuration providers) adds
+ * its stages with {@link #get(ServletRequest)}, which returns <code>null</code> if the header is
+ * not enabled.
+ * </p>
+ */
+public class ServerTiming {
+  public static final String HEADER = "Server-Timing";
+
+  private StringBuilder header = new StringBuilder();
+
+  /**
+   * Creates a new collector and stores it in the given request.
+   *
+   * @param request
+   * @return the new collector.
+   */
+  public static ServerTiming start(ServletRequest request) {
+    ServerTiming ret = new ServerTiming();
+    request.setAttribute(Geoladris.ATTR_SERVER_TIMING, ret);
+    return ret;
+  }
+
+  /**
+   * @param request It can be <code>null</code>.
+   * @return the collector for the given request or <code>null</code> if there is none.
+   */
+  public static ServerTiming get(ServletRequest request) {
+    Object ret = request != null ? request.getAttribute(Geoladris.ATTR_SERVER_TIMING) : null;
+    return ret instanceof ServerTiming ? (ServerTiming) ret : null;
+  }
+
+  /**
+   * @param name Name of the stage; it must be a token (i.e. no spaces nor commas).
+   * @param start Start time, as returned by {@link System#nanoTime()}.
+   */
+  public void addSince(String name, long start) {
+    add(name, null, System.nanoTime() - start);
+  }
+
+  /**
+   * @param name Name of the stage; it must be a token (i.e. no spaces nor commas).
+   * @param description Description of the stage; it can be <code>null</code>.
+   * @param nanos Duration in nanoseconds.
+   */
+  public synchronized void add(String name, String description, long nanos) {
+    if (this.header.length() > 0) {
+      this.header.append(", ");
+    }
+    this.header.append(name);
+    if (description != null) {
+      this.header.append(";desc=\"").append(description.replace("\\", "\\\\").replace("\"", "\\\""))
+          .append('"');
+    }
+    this.header.append(";dur=").append(String.format(Locale.ROOT, "%.3f", nanos / 1e6));
+  }
+
+  /**
+   * @return the value of the header.
+   */
+  public synchronized String getHeader() {
+    return this.header.toString();
+  }
+}
@@ -2,9 +2,16 @@ package org.geoladris.servlet;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
@@ -13,25 +20,42 @@ import javax.servlet.ServletContextListener;
 import org.apache.catalina.Globals;
 import org.apache.catalina.WebResourceRoot;
 import org.apache.catalina.webresources.DirResourceSet;
+import org.apache.commons.dbcp2.BasicDataSource;
 import org.apache.log4j.Logger;
 import org.geoladris.CSSPluginImportsUpdater;
+import org.geoladris.ConfigWarmUp;
 import org.geoladris.DirectoryWatcher;
 import org.geoladris.Environment;
 import org.geoladris.Geoladris;
+import org.geoladris.GzipSidecarGenerator;
+import org.geoladris.MessagesUpdater;
 import org.geoladris.Plugin;
 import org.geoladris.PluginDirsAnalyzer;
 import org.geoladris.PluginUpdater;
+import org.geoladris.PropertiesUpdater;
 import org.geoladris.config.Config;
 import org.geoladris.config.ConfigImpl;
 import org.geoladris.config.PluginConfigProvider;
+import org.geoladris.config.providers.DBConfigChangeDetector;
+import org.geoladris.config.providers.DBConfigProvider;
 import org.geoladris.config.providers.PluginJSONConfigProvider;
 import org.geoladris.config.providers.PublicConfProvider;
 import org.geoladris.config.providers.RoleConfigProvider;
+import org.geoladris.metrics.Metrics;
 
 
 public class AppContextListener implements ServletContextListener {
   private static final Logger logger = Logger.getLogger(AppContextListener.class);
 
+  private static final int DEFAULT_DB_CONFIG_POLL = 30;
+  // Per connection
+  private static final int MAX_OPEN_PREPARED_STATEMENTS = 100;
+
+  private Metrics metrics;
+  private ConfigImpl config;
+  private BasicDataSource dataSource;
+  private ScheduledExecutorService scheduler;
+
   @Override
   public void contextInitialized(ServletContextEvent sce) {
     ServletContext servletContext = sce.getServletContext();
@@ -49,24 +73,46 @@ public class AppContextListener implements ServletContextListener {
     Set<Plugin> plugins = analyzer.getPlugins();
     boolean useCache = Environment.getInstance().getConfigCache();
 
-    String timeoutProp = Environment.getInstance().get(Environment.CACHE_TIMEOUT);
-    int cacheTimeout = -1;
-    if (timeoutProp != null) {
-      try {
-        cacheTimeout = Integer.parseInt(timeoutProp);
-      } catch (NumberFormatException e) {
-        logger.info("Invalid integer value for '" + Environment.CACHE_TIMEOUT
-            + "'. Cache timeout disabled");
-      }
-    }
+    int cacheTimeout = getTimeout(Environment.CACHE_TIMEOUT, "Cache timeout");
 
     List<PluginConfigProvider> providers = new ArrayList<>();
     providers.add(new PublicConfProvider());
     providers.add(new PluginJSONConfigProvider());
     providers.add(new RoleConfigProvider());
-    Config config = new ConfigImpl(configDir, providers, plugins, useCache, cacheTimeout);
+    this.dataSource = createDataSource();
+    DBConfigProvider dbProvider = null;
+    if (Environment.getInstance().getDBConfig(servletContext)) {
+      if (this.dataSource != null) {
+        dbProvider = new DBConfigProvider(this.dataSource,
+            Environment.getInstance().get(Environment.JDBC_SCHEMA));
+        providers.add(dbProvider);
+      } else {
+        logger.warn(Environment.JDBC_URL + " is not set. Plugin configuration will not be read "
+            + "from the database");
+      }
+    }
+    ConfigImpl config = new ConfigImpl(configDir, providers, plugins, useCache, cacheTimeout);
+    this.config = config;
+
+    this.metrics = new Metrics();
+    this.metrics.registerMBeans(ManagementFactory.getPlatformMBeanServer(),
+        servletContext.getContextPath().isEmpty() ? "/" : servletContext.getContextPath());
+    config.setMetrics(this.metrics);
+    config.setProviderTimeout(getTimeout(Environment.PROVIDER_TIMEOUT, "Provider timeout"));
+    int hardCacheTimeout = getTimeout(Environment.CACHE_HARD_TIMEOUT, "Hard cache timeout");
+    if (hardCacheTimeout > 0) {
+      config.setCacheTimeout(cacheTimeout, hardCacheTimeout);
+    }
 
+    if (this.dataSource != null) {
+      addDataSourceMetrics(this.dataSource);
+      servletContext.setAttribute(Geoladris.ATTR_DATA_SOURCE, this.dataSource);
+    }
+
+    servletContext.setAttribute(Geoladris.ATTR_METRICS, this.metrics);
     servletContext.setAttribute(Geoladris.ATTR_CONFIG, config);
+    servletContext.setAttribute(Geoladris.ATTR_REQUEST_CLASSIFIER,
+        new RequestClassifier(analyzer));
 
     File staticDir = new File(configDir, Config.DIR_STATIC);
     WebResourceRoot resourcesRoot =
@@ -75,14 +121,140 @@ public class AppContextListener implements ServletContextListener {
     addStaticResources(resourcesRoot, "/" + Geoladris.PATH_PLUGINS_FROM_CONFIG, pluginsFromConfig);
 
     CSSPluginImportsUpdater cssOverridesUpdater = new CSSPluginImportsUpdater(config);
+    cssOverridesUpdater.setMetrics(this.metrics);
     cssOverridesUpdater.run();
-    addDirectoryWatcher(new PluginUpdater(analyzer, config), pluginsDirs);
+    PluginUpdater pluginUpdater = new PluginUpdater(analyzer, config);
+    pluginUpdater.setMetrics(this.metrics);
+    addDirectoryWatcher(pluginUpdater, pluginsDirs);
     addDirectoryWatcher(cssOverridesUpdater, staticDir, pluginsFromConfig);
+    addDirectoryWatcher(new MessagesUpdater(config.getMessageBundles()), true,
+        new File(configDir, Config.DIR_MESSAGES));
+    // Only portal.properties is relevant in the configuration directory itself
+    addDirectoryWatcher(new PropertiesUpdater(config), true, false, configDir);
+
+    if (Environment.getInstance().getGzipSidecars()) {
+      GzipSidecarGenerator gzipGenerator = new GzipSidecarGenerator(pluginsDirs);
+      Thread thread = new Thread(gzipGenerator, "geoladris-gzip");
+      thread.setDaemon(true);
+      thread.start();
+      addDirectoryWatcher(gzipGenerator, pluginsDirs);
+    }
+
+    if (dbProvider != null) {
+      addDBConfigChangeDetector(dbProvider, config);
+    }
+
+    if (Environment.getInstance().getWarmUp(servletContext) && !useCache) {
+      logger.info(Environment.WARM_UP + " is ignored because " + Environment.CONFIG_CACHE
+          + " is not set");
+    } else if (Environment.getInstance().getWarmUp(servletContext)) {
+      ConfigWarmUp warmUp = new ConfigWarmUp(config);
+      warmUp.setMetrics(this.metrics);
+      servletContext.setAttribute(Geoladris.ATTR_WARM_UP, warmUp);
+      Thread thread = new Thread(warmUp, "geoladris-warm-up");
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  /**
+   * @param property
+   * @param description
+   * @return the integer value of the given environment property or -1 if it is not set or not
+   *         valid.
+   */
+  private int getTimeout(String property, String description) {
+    String value = Environment.getInstance().get(property);
+    if (value != null) {
+      try {
+        return Integer.parseInt(value);
+      } catch (NumberFormatException e) {
+        logger.info("Invalid integer value for '" + property + "'. " + description + " disabled");
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return a connection pool for the {@link Environment#JDBC_URL} database, shared by core and
+   *         the plugins, or <code>null</code> if it is not set.
+   */
+  private BasicDataSource createDataSource() {
+    Environment env = Environment.getInstance();
+    String url = env.get(Environment.JDBC_URL);
+    if (url == null) {
+      return null;
+    }
+
+    BasicDataSource ret = new BasicDataSource();
+    ret.setUrl(url);
+    ret.setUsername(env.get(Environment.JDBC_USER));
+    ret.setPassword(env.get(Environment.JDBC_PASS));
+    ret.setPoolPreparedStatements(true);
+    ret.setMaxOpenPreparedStatements(MAX_OPEN_PREPARED_STATEMENTS);
+    return ret;
+  }
+
+  private void addDataSourceMetrics(final BasicDataSource dataSource) {
+    this.metrics.gauge(Metrics.DB_POOL_ACTIVE, new LongSupplier() {
+      @Override
+      public long getAsLong() {
+        return dataSource.getNumActive();
+      }
+    });
+    this.metrics.gauge(Metrics.DB_POOL_IDLE, new LongSupplier() {
+      @Override
+      public long getAsLong() {
+        return dataSource.getNumIdle();
+      }
+    });
+    this.metrics.gauge(Metrics.DB_POOL_MAX, new LongSupplier() {
+      @Override
+      public long getAsLong() {
+        return dataSource.getMaxTotal();
+      }
+    });
+  }
+
+  private void addDBConfigChangeDetector(DBConfigProvider provider, ConfigImpl config) {
+    Environment env = Environment.getInstance();
+    int poll = getTimeout(Environment.DB_CONFIG_POLL, "Database configuration polling");
+    if (poll < 0) {
+      poll = DEFAULT_DB_CONFIG_POLL;
+    } else if (poll == 0) {
+      return;
+    }
+
+    String table = env.get(Environment.DB_CONFIG_VERSIONS);
+    DBConfigChangeDetector detector = new DBConfigChangeDetector(this.dataSource,
+        env.get(Environment.JDBC_SCHEMA), table != null ? table : DBConfigProvider.TABLE, provider,
+        config);
+    detector.setMetrics(this.metrics);
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "geoladris-db-config");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    this.scheduler.scheduleWithFixedDelay(detector, 0, poll, TimeUnit.SECONDS);
   }
 
   private void addDirectoryWatcher(Runnable action, File... dirs) {
+    addDirectoryWatcher(action, false, dirs);
+  }
+
+  private void addDirectoryWatcher(Runnable action, boolean modifications, File... dirs) {
+    addDirectoryWatcher(action, modifications, true, dirs);
+  }
+
+  private void addDirectoryWatcher(Runnable action, boolean modifications, boolean recursive,
+      File... dirs) {
     try {
-      DirectoryWatcher.watch(action, dirs);
+      DirectoryWatcher watcher = new DirectoryWatcher(action, modifications, recursive, dirs);
+      watcher.setMetrics(this.metrics);
+      new Thread(watcher).start();
     } catch (IOException e) {
       logger.warn("Cannot start updater: " + action.getClass().getCanonicalName()
           + ". It won't be updated", e);
@@ -145,5 +317,23 @@ public class AppContextListener implements ServletContextListener {
   }
 
   @Override
-  public void contextDestroyed(ServletContextEvent sce) {}
+  public void contextDestroyed(ServletContextEvent sce) {
+    if (this.metrics != null) {
+      this.metrics.unregisterMBeans();
+    }
+    if (this.scheduler != null) {
+      this.scheduler.shutdownNow();
+    }
+    if (this.config != null) {
+      this.config.shutdown();
+    }
+    if (this.dataSource != null) {
+      sce.getServletContext().removeAttribute(Geoladris.ATTR_DATA_SOURCE);
+      try {
+        this.dataSource.close();
+      } catch (SQLException e) {
+        logger.warn("Cannot close the database connection pool", e);
+      }
+    }
+  }
 }
@@ -1,7 +1,9 @@
 package org.geoladris.servlet;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -15,9 +17,14 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.geoladris.Environment;
 import org.geoladris.Geoladris;
 import org.geoladris.Plugin;
 import org.geoladris.config.Config;
+import org.geoladris.config.ConfigFragments;
+import org.geoladris.metrics.Histogram;
+import org.geoladris.metrics.Metrics;
+import org.geoladris.metrics.ServerTiming;
 
 import net.sf.json.JSONObject;
 import net.sf.json.JSONSerializer;
@@ -25,11 +32,35 @@ import net.sf.json.JSONSerializer;
 public class ConfigServlet extends HttpServlet {
   private static final long serialVersionUID = 1L;
 
+  private final ConfigFragments fragments = new ConfigFragments();
+  private Histogram renderDuration;
+  private boolean serverTiming;
+
+  @Override
+  public void init() throws ServletException {
+    this.renderDuration =
+        Metrics.get(getServletContext()).histogram(Metrics.CONFIG_RENDER_DURATION);
+    this.serverTiming = Environment.getInstance().getServerTiming(getServletContext());
+  }
+
   @Override
   protected void doGet(HttpServletRequest req, HttpServletResponse resp)
       throws ServletException, IOException {
+    long start = System.nanoTime();
+    try {
+      writeConfig(req, resp);
+    } finally {
+      this.renderDuration.recordSince(start);
+    }
+  }
+
+  private void writeConfig(HttpServletRequest req, HttpServletResponse resp)
+      throws ServletException, IOException {
+    ServerTiming timing = this.serverTiming ? ServerTiming.start(req) : null;
+    long stageStart = System.nanoTime();
+
     Config config = (Config) getServletContext().getAttribute(Geoladris.ATTR_CONFIG);
-    Locale locale = (Locale) req.getSession().getAttribute(Geoladris.ATTR_LOCALE);
+    Locale locale = LangFilter.getLocale(req);
 
     ResourceBundle bundle = config.getMessages(locale);
 
@@ -40,23 +71,29 @@ public class ConfigServlet extends HttpServlet {
       title = "Untitled";
     }
 
+    // The i18n object is already serialized; splice it instead of parsing it again
+    String i18n = config.getMessagesJSON(locale);
+    if (i18n == null) {
+      i18n = JSONObject.fromObject(buildI18NObject(bundle)).toString();
+    }
+    if (timing != null) {
+      timing.addSince("i18n", stageStart);
+    }
+
+    // Providers and merge are timed by the configuration
+    Plugin[] enabledPluginDescriptors = config.getPluginConfig(locale, req);
+    stageStart = System.nanoTime();
+
     JSONObject moduleConfig = new JSONObject();
     // Fixed elements
-    Plugin[] enabledPluginDescriptors = config.getPluginConfig(locale, req);
     moduleConfig.element("customization", buildCustomizationObject(getServletContext(), config,
         locale, title, enabledPluginDescriptors));
-    moduleConfig.element("i18n", buildI18NObject(bundle));
     moduleConfig.element("url-parameters", JSONSerializer.toJSON(req.getParameterMap()));
 
     JSONObject paths = new JSONObject();
     JSONObject shim = new JSONObject();
 
     for (Plugin pluginDescriptor : enabledPluginDescriptors) {
-      JSONObject configuration = pluginDescriptor.getConfiguration();
-      if (configuration != null) {
-        moduleConfig.putAll(configuration);
-      }
-
       JSONObject requirejs = pluginDescriptor.getRequireJS();
       if (requirejs != null && !requirejs.isNullObject()) {
         if (requirejs.has("paths")) {
@@ -68,16 +105,41 @@ public class ConfigServlet extends HttpServlet {
       }
     }
 
-    JSONObject ret = new JSONObject();
-    ret.element("config", moduleConfig);
-    ret.element("paths", paths);
-    ret.element("shim", shim);
-    String json = ret.toString();
+    String moduleConfigJSON = moduleConfig.toString();
 
     resp.setContentType("application/javascript");
     resp.setCharacterEncoding("utf8");
-    PrintWriter writer = resp.getWriter();
-    writer.write("var require = " + json);
+    // Headers cannot be set once the body is written; buffer it to time the serialization
+    ByteArrayOutputStream buffer = timing != null ? new ByteArrayOutputStream() : null;
+    OutputStream out = buffer != null ? buffer : resp.getOutputStream();
+    write(out, "var require = {\"config\":{\"i18n\":");
+    write(out, i18n);
+    write(out, ",");
+    write(out, moduleConfigJSON.substring(1, moduleConfigJSON.length() - 1));
+    // Plugin configurations are spliced as they are cached. Keys are qualified with the plugin
+    // name; if they clash anyway, the last one wins, as with the former JSONObject.putAll
+    for (Plugin pluginDescriptor : enabledPluginDescriptors) {
+      byte[] fragment = this.fragments.get(pluginDescriptor.getConfigurationTree());
+      if (fragment.length > 0) {
+        out.write(',');
+        out.write(fragment);
+      }
+    }
+    write(out, "},\"paths\":");
+    write(out, paths.toString());
+    write(out, ",\"shim\":");
+    write(out, shim.toString());
+    write(out, "}");
+
+    if (timing != null) {
+      timing.addSince("serialize", stageStart);
+      resp.setHeader(ServerTiming.HEADER, timing.getHeader());
+      buffer.writeTo(resp.getOutputStream());
+    }
+  }
+
+  private static void write(OutputStream out, String s) throws IOException {
+    out.write(s.getBytes(StandardCharsets.UTF_8));
   }
 
   private HashMap<String, String> buildI18NObject(ResourceBundle bundle) {
@@ -96,7 +158,7 @@ public class ConfigServlet extends HttpServlet {
     obj.element(Config.PROPERTY_LANGUAGES, config.getLanguages());
     obj.element("languageCode", locale.getLanguage());
     obj.element(Config.PROPERTY_MAP_CENTER, config.getPropertyAsArray(Config.PROPERTY_MAP_CENTER));
-    obj.element("map.initialZoomLevel", config.getProperties().get("map.initialZoomLevel"));
+    obj.element(Config.PROPERTY_INITIAL_ZOOM_LEVEL, config.getInitialZoomLevel());
 
     ArrayList<String> modules = new ArrayList<String>();
     String[] extraModules = config.getPropertyAsArray(Config.PROPERTY_CLIENT_MODULES);
@@ -14,10 +14,12 @@ import javax.servlet.http.HttpServletResponse;
 import net.sf.json.JSONSerializer;
 
 import org.apache.log4j.Logger;
+import org.geoladris.ThrottledLogger;
 
 public class ErrorFilter implements Filter {
 
   private static Logger logger = Logger.getLogger(ErrorFilter.class);
+  private static ThrottledLogger throttledLogger = new ThrottledLogger(logger);
 
   @Override
   public void init(FilterConfig filterConfig) throws ServletException {}
@@ -38,10 +40,13 @@ public class ErrorFilter implements Filter {
         status = 500;
       }
       httpResponse.setStatus(status);
+      // Failing requests tend to fail repeatedly; log each kind of error once in a while
       if (status == 500) {
-        logger.error("Error handling request", e);
+        throttledLogger.error(getKey(e), "Error handling request", e);
       } else {
-        logger.error("Error handling request: " + e.getMessage());
+        // Messages usually contain the requested path; do not use them as keys
+        throttledLogger.error(status + ":" + e.getClass().getName(),
+            "Error handling request: " + e.getMessage());
       }
       while (e != null) {
         errorMsg += e.getMessage() + ". ";
@@ -56,6 +61,16 @@ public class ErrorFilter implements Filter {
     }
   }
 
+  /**
+   * @param e
+   * @return a key that identifies where the error comes from: the exception class and the place
+   *         where it was thrown.
+   */
+  private static String getKey(Throwable e) {
+    StackTraceElement[] trace = e.getStackTrace();
+    return trace.length > 0 ? e.getClass().getName() + "@" + trace[0] : e.getClass().getName();
+  }
+
   @Override
   public void destroy() {}
 
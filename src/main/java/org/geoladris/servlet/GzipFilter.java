@@ -0,0 +1,128 @@
+package org.geoladris.servlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.geoladris.GzipSidecarGenerator;
+
+/**
+ * <p>
+ * Serves the precompressed <code>&lt;file&gt;.gz</code> sidecar of a JS/CSS resource instead of
+ * the resource itself when the client accepts gzip and the sidecar is not older than the resource.
+ * </p>
+ *
+ * <p>
+ * Sidecars can be shipped with the plugins or generated by {@link GzipSidecarGenerator}.
+ * </p>
+ */
+public class GzipFilter implements Filter {
+  private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+  private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+  private static final String GZIP = "gzip";
+
+  private ServletContext context;
+
+  @Override
+  public void init(FilterConfig filterConfig) throws ServletException {
+    this.context = filterConfig.getServletContext();
+  }
+
+  @Override
+  public void doFilter(ServletRequest req, ServletResponse resp, FilterChain chain)
+      throws IOException, ServletException {
+    HttpServletRequest request = (HttpServletRequest) req;
+    HttpServletResponse response = (HttpServletResponse) resp;
+
+    String method = request.getMethod();
+    String path = getPath(request);
+    if (!("GET".equals(method) || "HEAD".equals(method))
+        || !GzipSidecarGenerator.isCompressible(path)) {
+      chain.doFilter(req, resp);
+      return;
+    }
+
+    String realPath = this.context.getRealPath(path);
+    File file = realPath != null ? new File(realPath) : null;
+    File gz = realPath != null ? new File(realPath + GzipSidecarGenerator.EXTENSION) : null;
+    if (file == null || !file.isFile() || !gz.isFile() || gz.lastModified() < file.lastModified()) {
+      chain.doFilter(req, resp);
+      return;
+    }
+
+    // The response depends on the Accept-Encoding header from now on
+    response.setHeader("Vary", HEADER_ACCEPT_ENCODING);
+    if (!acceptsGzip(request.getHeader(HEADER_ACCEPT_ENCODING))) {
+      chain.doFilter(req, resp);
+      return;
+    }
+
+    long lastModified = file.lastModified();
+    long since = request.getDateHeader(HEADER_IF_MODIFIED_SINCE);
+    if (since >= 0 && lastModified / 1000 <= since / 1000) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
+    String mimeType = this.context.getMimeType(path);
+    if (mimeType != null) {
+      response.setContentType(mimeType);
+    }
+    response.setHeader("Content-Encoding", GZIP);
+    response.setDateHeader("Last-Modified", lastModified);
+    response.setContentLengthLong(gz.length());
+    if (!"HEAD".equals(method)) {
+      Files.copy(gz.toPath(), response.getOutputStream());
+    }
+  }
+
+  private String getPath(HttpServletRequest request) {
+    String path = request.getServletPath();
+    String pathInfo = request.getPathInfo();
+    if (path == null) {
+      path = "";
+    }
+    return pathInfo != null ? path + pathInfo : path;
+  }
+
+  static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+
+    for (String encoding : acceptEncoding.split(",")) {
+      String[] parts = encoding.split(";");
+      String name = parts[0].trim();
+      if (!name.equalsIgnoreCase(GZIP) && !name.equals("*")) {
+        continue;
+      }
+
+      for (int i = 1; i < parts.length; i++) {
+        String param = parts[i].trim();
+        if (param.startsWith("q=")) {
+          try {
+            return Double.parseDouble(param.substring(2)) > 0;
+          } catch (NumberFormatException e) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+
+    return false;
+  }
+
+  @Override
+  public void destroy() {}
+}
@@ -6,50 +6,183 @@ import java.util.Locale;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
+import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
+import org.geoladris.Environment;
 import org.geoladris.Geoladris;
 import org.geoladris.config.Config;
+import org.geoladris.metrics.Counter;
+import org.geoladris.metrics.Metrics;
 
+/**
+ * <p>
+ * Resolves the locale for each request and makes it available as the {@link Geoladris#ATTR_LOCALE}
+ * request attribute. <code>/setlang?&lt;lang&gt;</code> changes the locale.
+ * </p>
+ *
+ * <p>
+ * By default the locale is kept in the session, starting with the default language. If
+ * {@link Environment#SESSIONLESS_LANG} is set, no session is ever created; the locale is taken from
+ * the {@value #PARAM_LANG} query parameter or the {@value #COOKIE_LANG} cookie (set by
+ * <code>/setlang</code>), or negotiated from the <code>Accept-Language</code> header with
+ * {@link LocaleNegotiator}.
+ * </p>
+ *
+ * <p>
+ * Only the languages in {@link Config#getLanguages()} are accepted.
+ * </p>
+ */
 public class LangFilter implements Filter {
   public static final String PATH_SETLANG = "/setlang";
-  private Config config;
+  public static final String PARAM_LANG = "lang";
+  public static final String COOKIE_LANG = "geoladris_lang";
+
+  private static final int COOKIE_MAX_AGE = 365 * 24 * 3600;
+
+  private ServletContext context;
+  private LocaleNegotiator negotiator;
+  private boolean sessionless;
+  private Counter sessionsCreated;
 
   @Override
   public void init(FilterConfig filterConfig) throws ServletException {
-    this.config = (Config) filterConfig.getServletContext().getAttribute(Geoladris.ATTR_CONFIG);
+    this.context = filterConfig.getServletContext();
+    Config config = (Config) this.context.getAttribute(Geoladris.ATTR_CONFIG);
+    this.negotiator = new LocaleNegotiator(config);
+    this.sessionless = Environment.getInstance().getSessionlessLang(this.context);
+    this.sessionsCreated = Metrics.get(this.context).counter(Metrics.LANG_SESSIONS_CREATED);
   }
 
   @Override
   public void doFilter(ServletRequest req, ServletResponse resp, FilterChain chain)
       throws IOException, ServletException {
+    if (RequestClassifier.getType(req, this.context) == RequestClassifier.Type.STATIC) {
+      chain.doFilter(req, resp);
+      return;
+    }
+
     HttpServletRequest request = (HttpServletRequest) req;
     HttpServletResponse response = (HttpServletResponse) resp;
 
-    HttpSession session = request.getSession();
     if (PATH_SETLANG.equals(request.getServletPath())) {
-      String lang = request.getQueryString();
-      if (lang == null) {
-        lang = config.getDefaultLang();
+      Locale locale = get(request.getQueryString());
+      if (locale == null) {
+        locale = this.negotiator.getDefault();
       }
 
-      session.setAttribute(Geoladris.ATTR_LOCALE, get(lang, request));
+      if (this.sessionless) {
+        Cookie cookie = new Cookie(COOKIE_LANG, locale.toString());
+        String contextPath = request.getContextPath();
+        cookie.setPath(contextPath != null && contextPath.length() > 0 ? contextPath : "/");
+        cookie.setMaxAge(COOKIE_MAX_AGE);
+        cookie.setHttpOnly(true);
+        response.addCookie(cookie);
+      } else {
+        getSession(request).setAttribute(Geoladris.ATTR_LOCALE, locale);
+      }
       response.sendRedirect(request.getContextPath());
-    } else if (session.getAttribute(Geoladris.ATTR_LOCALE) == null) {
-      session.setAttribute(Geoladris.ATTR_LOCALE, get(config.getDefaultLang(), request));
-      chain.doFilter(req, resp);
-    } else {
-      chain.doFilter(req, resp);
+      return;
+    }
+
+    Locale locale = this.sessionless ? resolveSessionless(request) : resolveFromSession(request);
+    request.setAttribute(Geoladris.ATTR_LOCALE, locale);
+    chain.doFilter(req, resp);
+  }
+
+  private Locale resolveFromSession(HttpServletRequest request) {
+    HttpSession session = getSession(request);
+    Locale locale = (Locale) session.getAttribute(Geoladris.ATTR_LOCALE);
+    if (locale == null) {
+      locale = this.negotiator.getDefault();
+      session.setAttribute(Geoladris.ATTR_LOCALE, locale);
+    }
+    return locale;
+  }
+
+  private HttpSession getSession(HttpServletRequest request) {
+    HttpSession session = request.getSession(false);
+    if (session == null) {
+      session = request.getSession();
+      this.sessionsCreated.inc();
+    }
+    return session;
+  }
+
+  private Locale resolveSessionless(HttpServletRequest request) {
+    // Not getParameter: it would consume the body of form posts
+    Locale locale = get(getQueryParameter(request.getQueryString(), PARAM_LANG));
+    if (locale == null) {
+      locale = get(getCookie(request, COOKIE_LANG));
+    }
+    return locale != null ? locale : negotiate(request);
+  }
+
+  /**
+   * @param lang
+   * @return the locale for the given language or <code>null</code> if it is not valid or not one
+   *         of the configured languages.
+   */
+  private Locale get(String lang) {
+    return isValidLang(lang) ? this.negotiator.get(lang) : null;
+  }
+
+  private Locale negotiate(HttpServletRequest request) {
+    return this.negotiator.negotiate(request.getHeader("Accept-Language"));
+  }
+
+  /**
+   * @param request
+   * @return the locale resolved by this filter for the given request. If the request has not been
+   *         filtered, the locale in the session, or <code>null</code> if there is no session (it is
+   *         never created).
+   */
+  public static Locale getLocale(HttpServletRequest request) {
+    Locale locale = (Locale) request.getAttribute(Geoladris.ATTR_LOCALE);
+    if (locale == null) {
+      HttpSession session = request.getSession(false);
+      locale = session != null ? (Locale) session.getAttribute(Geoladris.ATTR_LOCALE) : null;
+    }
+    return locale;
+  }
+
+  /**
+   * @param query
+   * @param name
+   * @return the raw (not decoded) value of the given parameter in the query string or
+   *         <code>null</code> if it is not there. Valid languages need no decoding.
+   */
+  private static String getQueryParameter(String query, String name) {
+    if (query != null) {
+      for (String param : query.split("&")) {
+        if (param.startsWith(name + "=")) {
+          return param.substring(name.length() + 1);
+        }
+      }
+    }
+    return null;
+  }
+
+  private static String getCookie(HttpServletRequest request, String name) {
+    Cookie[] cookies = request.getCookies();
+    if (cookies != null) {
+      for (Cookie cookie : cookies) {
+        if (name.equals(cookie.getName())) {
+          return cookie.getValue();
+        }
+      }
     }
+    return null;
   }
 
-  private Locale get(String lang, ServletRequest request) {
-    return (lang != null && lang.trim().length() > 0) ? new Locale(lang) : request.getLocale();
+  private static boolean isValidLang(String lang) {
+    return lang != null && lang.matches("[a-zA-Z]{2,8}([_-][a-zA-Z0-9]{1,8})*");
   }
 
   @Override
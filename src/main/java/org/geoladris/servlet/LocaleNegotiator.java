@@ -0,0 +1,142 @@
+package org.geoladris.servlet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.geoladris.config.BoundedCache;
+import org.geoladris.config.Config;
+import org.geoladris.config.PortalProperties;
+
+/**
+ * <p>
+ * Chooses the locale for a request among the languages in {@link Config#getLanguages()}, so the
+ * number of distinct locales stays bounded by the number of configured languages.
+ * </p>
+ *
+ * <p>
+ * The configured locales are computed once per {@link PortalProperties} snapshot, together with a
+ * bounded cache of <code>Accept-Language</code> negotiation results per header value. Both are
+ * replaced when the snapshot changes; no lock is taken. If no languages are configured, the
+ * default language is always used for negotiation.
+ * </p>
+ */
+public class LocaleNegotiator {
+  public static final int DEFAULT_MAX_SIZE = 256;
+
+  private Config config;
+  private int maxSize;
+  private volatile Languages languages;
+
+  public LocaleNegotiator(Config config) {
+    this(config, DEFAULT_MAX_SIZE);
+  }
+
+  /**
+   * @param config
+   * @param maxSize Approximate maximum number of <code>Accept-Language</code> values to remember.
+   */
+  public LocaleNegotiator(Config config, int maxSize) {
+    this.config = config;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * @param acceptLanguage Value of the <code>Accept-Language</code> header. It can be
+   *        <code>null</code>.
+   * @return the configured locale that best matches the given header or the default one if none
+   *         matches.
+   */
+  public Locale negotiate(String acceptLanguage) {
+    Languages languages = getLanguages();
+    if (acceptLanguage == null || languages.tags.isEmpty()) {
+      return languages.defaultLocale;
+    }
+
+    Locale ret = languages.negotiated.get(acceptLanguage);
+    if (ret == null) {
+      String tag;
+      try {
+        tag = Locale.lookupTag(Locale.LanguageRange.parse(acceptLanguage), languages.tags);
+      } catch (IllegalArgumentException e) {
+        tag = null;
+      }
+      ret = tag != null ? languages.locales.get(tag) : languages.defaultLocale;
+      languages.negotiated.put(acceptLanguage, ret);
+    }
+    return ret;
+  }
+
+  /**
+   * @param lang Language code, as in {@link Config#getLanguages()}.
+   * @return the locale for the given language, or <code>null</code> if it is not configured. If no
+   *         languages are configured, any language is accepted.
+   */
+  public Locale get(String lang) {
+    Languages languages = getLanguages();
+    if (lang == null) {
+      return null;
+    } else if (languages.tags.isEmpty()) {
+      return new Locale(lang);
+    }
+    return languages.locales.get(toTag(lang));
+  }
+
+  /**
+   * @return the locale for {@link Config#getDefaultLang()}.
+   */
+  public Locale getDefault() {
+    return getLanguages().defaultLocale;
+  }
+
+  private Languages getLanguages() {
+    PortalProperties properties = this.config.getPortalProperties();
+    Languages ret = this.languages;
+    if (ret == null || ret.properties != properties) {
+      // Concurrent requests may compute it twice; the results are equivalent
+      ret = new Languages(properties, this.maxSize);
+      this.languages = ret;
+    }
+    return ret;
+  }
+
+  private static String toTag(String lang) {
+    return lang.replace('_', '-').toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Locales derived from a {@link PortalProperties} snapshot.
+   */
+  private static class Languages {
+    private final PortalProperties properties;
+    // Configured code (lower case, with '-') -> locale
+    private final Map<String, Locale> locales;
+    private final List<String> tags;
+    private final Locale defaultLocale;
+    private final BoundedCache<String, Locale> negotiated;
+
+    private Languages(PortalProperties properties, int maxSize) {
+      this.properties = properties;
+      Map<String, Locale> locales = new HashMap<>();
+      List<String> tags = new ArrayList<>();
+      Map<String, String>[] languages = properties.getLanguages();
+      if (languages != null) {
+        for (Map<String, String> language : languages) {
+          String code = language.get("code");
+          tags.add(toTag(code));
+          locales.put(toTag(code), new Locale(code));
+        }
+      }
+      this.locales = Collections.unmodifiableMap(locales);
+      this.tags = Collections.unmodifiableList(tags);
+
+      String lang = properties.getDefaultLang();
+      Locale defaultLocale = locales.get(toTag(lang));
+      this.defaultLocale = defaultLocale != null ? defaultLocale : new Locale(lang);
+      this.negotiated = new BoundedCache<>(maxSize);
+    }
+  }
+}
@@ -0,0 +1,159 @@
+package org.geoladris.servlet;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.geoladris.Environment;
+import org.geoladris.metrics.Counter;
+import org.geoladris.metrics.Gauge;
+import org.geoladris.metrics.Histogram;
+import org.geoladris.metrics.Metric;
+import org.geoladris.metrics.Metrics;
+
+/**
+ * <p>
+ * Writes the application {@link Metrics} in the Prometheus text format. Metric names are prefixed
+ * with {@value #PREFIX}; counters have the <code>_total</code> suffix and histograms are in
+ * seconds, with the <code>_seconds</code> suffix.
+ * </p>
+ *
+ * <p>
+ * It is only enabled if {@link Environment#METRICS} is <code>true</code> (i.e. as a context init
+ * parameter); otherwise it responds with 404.
+ * </p>
+ */
+public class MetricsServlet extends HttpServlet {
+  private static final long serialVersionUID = 1L;
+
+  public static final String PATH = "/metrics";
+  public static final String PREFIX = "geoladris_";
+
+  private static final String CONTENT_TYPE = "text/plain; version=0.0.4";
+  private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private boolean enabled;
+
+  @Override
+  public void init() throws ServletException {
+    this.enabled = Environment.getInstance().getMetrics(getServletContext());
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+      throws ServletException, IOException {
+    if (!this.enabled) {
+      resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+
+    resp.setContentType(CONTENT_TYPE);
+    resp.setCharacterEncoding("utf-8");
+    PrintWriter writer = resp.getWriter();
+
+    // Metrics are sorted by name and labels; families must be written together
+    Map<String, List<Metric>> families = new LinkedHashMap<>();
+    for (Metric metric : Metrics.get(getServletContext()).getMetrics()) {
+      List<Metric> family = families.get(metric.getName());
+      if (family == null) {
+        family = new ArrayList<>();
+        families.put(metric.getName(), family);
+      }
+      family.add(metric);
+    }
+
+    for (List<Metric> family : families.values()) {
+      Metric first = family.get(0);
+      if (first instanceof Counter) {
+        writeType(writer, first.getName() + "_total", "counter");
+        for (Metric metric : family) {
+          writeSample(writer, metric.getName() + "_total", metric.getLabels(), null,
+              Long.toString(((Counter) metric).getCount()));
+        }
+      } else if (first instanceof Gauge) {
+        writeType(writer, first.getName(), "gauge");
+        for (Metric metric : family) {
+          writeSample(writer, metric.getName(), metric.getLabels(), null,
+              Long.toString(((Gauge) metric).getValue()));
+        }
+      } else if (first instanceof Histogram) {
+        String name = first.getName() + "_seconds";
+        writeType(writer, name, "histogram");
+        for (Metric metric : family) {
+          writeHistogram(writer, name, (Histogram) metric);
+        }
+      }
+    }
+    writer.flush();
+  }
+
+  private void writeHistogram(PrintWriter writer, String name, Histogram histogram) {
+    Map<String, String> labels = histogram.getLabels();
+    long[] bounds = histogram.getBucketBounds();
+    long[] counts = histogram.getBucketCounts();
+    for (int i = 0; i < bounds.length; i++) {
+      writeSample(writer, name + "_bucket", labels, toSeconds(bounds[i]),
+          Long.toString(counts[i]));
+    }
+    long count = counts[counts.length - 1];
+    writeSample(writer, name + "_bucket", labels, "+Inf", Long.toString(count));
+    writeSample(writer, name + "_sum", labels, null, toSeconds(histogram.getSum()));
+    writeSample(writer, name + "_count", labels, null, Long.toString(count));
+  }
+
+  private static void writeType(PrintWriter writer, String name, String type) {
+    writer.print("# TYPE ");
+    writer.print(PREFIX);
+    writer.print(name);
+    writer.print(' ');
+    writer.print(type);
+    writer.print('\n');
+  }
+
+  /**
+   * @param le Upper bound of the histogram bucket, written as the <code>le</code> label; null if
+   *        the sample is not a bucket.
+   */
+  private static void writeSample(PrintWriter writer, String name, Map<String, String> labels,
+      String le, String value) {
+    writer.print(PREFIX);
+    writer.print(name);
+    if (!labels.isEmpty() || le != null) {
+      writer.print('{');
+      String separator = "";
+      for (Map.Entry<String, String> label : labels.entrySet()) {
+        writer.print(separator);
+        writeLabel(writer, label.getKey(), label.getValue());
+        separator = ",";
+      }
+      if (le != null) {
+        writer.print(separator);
+        writeLabel(writer, "le", le);
+      }
+      writer.print('}');
+    }
+    writer.print(' ');
+    writer.print(value);
+    writer.print('\n');
+  }
+
+  private static void writeLabel(PrintWriter writer, String name, String value) {
+    writer.print(name);
+    writer.print("=\"");
+    writer.print(value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"));
+    writer.print('"');
+  }
+
+  private static String toSeconds(long nanos) {
+    return Double.toString(nanos / NANOS_PER_SECOND);
+  }
+}
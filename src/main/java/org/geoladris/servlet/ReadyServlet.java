@@ -0,0 +1,38 @@
+package org.geoladris.servlet;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.geoladris.ConfigWarmUp;
+import org.geoladris.Environment;
+import org.geoladris.Geoladris;
+
+/**
+ * <p>
+ * Readiness check for load balancers. It responds with 503 while the {@link ConfigWarmUp} is in
+ * progress and with 200 afterwards, or always if {@link Environment#WARM_UP} is not enabled.
+ * </p>
+ */
+public class ReadyServlet extends HttpServlet {
+  private static final long serialVersionUID = 1L;
+
+  public static final String PATH = "/ready";
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+      throws ServletException, IOException {
+    ConfigWarmUp warmUp =
+        (ConfigWarmUp) getServletContext().getAttribute(Geoladris.ATTR_WARM_UP);
+    boolean ready = warmUp == null || warmUp.isReady();
+
+    resp.setStatus(ready ? HttpServletResponse.SC_OK : HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    resp.setHeader("Cache-Control", "no-store");
+    resp.setContentType("text/plain");
+    resp.getWriter().print(ready ? "ready" : "warming up");
+    resp.getWriter().flush();
+  }
+}
@@ -17,15 +17,23 @@ import org.geoladris.Geoladris;
 import org.geoladris.Plugin;
 import org.geoladris.PluginDirsAnalyzer;
 import org.geoladris.config.Config;
+import org.geoladris.metrics.Counter;
+import org.geoladris.metrics.Metrics;
 
 public class RedirectFilter implements Filter {
   private Config config;
   private ServletContext context;
+  private Counter hits, forwards, misses;
 
   @Override
   public void init(FilterConfig filterConfig) throws ServletException {
     this.context = filterConfig.getServletContext();
     this.config = (Config) this.context.getAttribute(Geoladris.ATTR_CONFIG);
+
+    Metrics metrics = Metrics.get(this.context);
+    this.hits = metrics.counter(Metrics.REDIRECT_REQUESTS, Metrics.LABEL_RESULT, "hit");
+    this.forwards = metrics.counter(Metrics.REDIRECT_REQUESTS, Metrics.LABEL_RESULT, "forward");
+    this.misses = metrics.counter(Metrics.REDIRECT_REQUESTS, Metrics.LABEL_RESULT, "miss");
   }
 
   private boolean isActualPluginPath(String path) {
@@ -37,12 +45,19 @@ public class RedirectFilter implements Filter {
   @Override
   public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
       throws IOException, ServletException {
+    RequestClassifier.Type type = RequestClassifier.getType(request, this.context);
+    if (type != null && type != RequestClassifier.Type.PLUGIN) {
+      chain.doFilter(request, response);
+      return;
+    }
+
     HttpServletRequest req = (HttpServletRequest) request;
 
     String path = req.getRequestURI().substring(req.getContextPath().length() + 1);
 
     try {
       if (this.context.getResource("/" + path) != null) {
+        this.hits.inc();
         chain.doFilter(request, response);
         return;
       }
@@ -53,6 +68,7 @@ public class RedirectFilter implements Filter {
 
     int index = path.indexOf('/');
     if (index < 0 && !path.endsWith(".js")) {
+      this.misses.inc();
       chain.doFilter(request, response);
       return;
     }
@@ -70,7 +86,7 @@ public class RedirectFilter implements Filter {
       subdir = PluginDirsAnalyzer.MODULES;
     }
 
-    Locale locale = (Locale) req.getSession().getAttribute(Geoladris.ATTR_LOCALE);
+    Locale locale = LangFilter.getLocale(req);
     Plugin[] plugins = this.config.getPluginConfig(locale, req);
     for (Plugin plugin : plugins) {
       String qualifiedPath;
@@ -86,14 +102,17 @@ public class RedirectFilter implements Filter {
       File configFile = new File(this.config.getDir(), Config.DIR_PLUGINS + "/" + qualifiedPath);
       if (configFile.exists()) {
         String configPath = "/" + Geoladris.PATH_PLUGINS_FROM_CONFIG + "/" + qualifiedPath;
+        this.forwards.inc();
         request.getRequestDispatcher(configPath).forward(request, response);
         return;
       } else if (this.context.getResource(warPath) != null) {
+        this.forwards.inc();
         request.getRequestDispatcher(warPath).forward(request, response);
         return;
       }
     }
 
+    this.misses.inc();
     chain.doFilter(request, response);
   }
 
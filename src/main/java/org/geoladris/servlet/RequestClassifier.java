@@ -0,0 +1,147 @@
+package org.geoladris.servlet;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+
+import org.geoladris.Geoladris;
+import org.geoladris.Plugin;
+import org.geoladris.PluginDirsAnalyzer;
+
+/**
+ * <p>
+ * Tags each request with a {@link Type} so the filters can skip the work that does not apply to
+ * it. The tag is computed once per request and stored in the {@link Geoladris#ATTR_REQUEST_TYPE}
+ * request attribute.
+ * </p>
+ *
+ * <p>
+ * Classification only looks at the first path segment, which is compared against the plugin names
+ * (from the plugin scan) and the directories with static and plugin resources. Other directories in
+ * the application may have pages, so they are not static.
+ * </p>
+ */
+public class RequestClassifier {
+  public enum Type {
+    /**
+     * Static and plugin resources served directly by the container, {@link MetricsServlet#PATH} and
+     * {@link ReadyServlet#PATH}: no locale nor redirection needed.
+     */
+    STATIC,
+    /**
+     * The <code>config.js</code> call.
+     */
+    CONFIG,
+    /**
+     * {@link LangFilter#PATH_SETLANG}.
+     */
+    SETLANG,
+    /**
+     * Paths that may have to be redirected to a plugin resource by {@link RedirectFilter}.
+     */
+    PLUGIN,
+    /**
+     * Anything else (i.e. pages).
+     */
+    OTHER
+  }
+
+  public static final String PATH_CONFIG = "/config.js";
+
+  private static final Set<String> PLUGIN_SUBDIRS =
+      new HashSet<>(Arrays.asList("css", "jslib", "node_modules"));
+
+  private static final Set<String> STATIC_DIRS = new HashSet<>(Arrays.asList(
+      Geoladris.PATH_STATIC, Geoladris.PATH_PLUGINS_FROM_CONFIG, Geoladris.PATH_PLUGINS_FROM_WAR));
+
+  private PluginDirsAnalyzer analyzer;
+
+  private volatile PluginNames pluginNames;
+
+  /**
+   * @param analyzer Analyzer with the current plugins. Plugin names are updated when the analyzer
+   *        is reloaded.
+   */
+  public RequestClassifier(PluginDirsAnalyzer analyzer) {
+    this.analyzer = analyzer;
+  }
+
+  /**
+   * @param request
+   * @param context
+   * @return the type of the request or <code>null</code> if there is no classifier in the context.
+   */
+  public static Type getType(ServletRequest request, ServletContext context) {
+    Type type = (Type) request.getAttribute(Geoladris.ATTR_REQUEST_TYPE);
+    if (type == null) {
+      RequestClassifier classifier =
+          (RequestClassifier) context.getAttribute(Geoladris.ATTR_REQUEST_CLASSIFIER);
+      if (classifier != null && request instanceof HttpServletRequest) {
+        type = classifier.classify((HttpServletRequest) request);
+        request.setAttribute(Geoladris.ATTR_REQUEST_TYPE, type);
+      }
+    }
+    return type;
+  }
+
+  public Type classify(HttpServletRequest request) {
+    String path = request.getRequestURI().substring(request.getContextPath().length());
+    return classify(path);
+  }
+
+  /**
+   * @param path Path within the application, starting with '/'.
+   * @return the type for the given path.
+   */
+  public Type classify(String path) {
+    if (PATH_CONFIG.equals(path)) {
+      return Type.CONFIG;
+    } else if (LangFilter.PATH_SETLANG.equals(path)) {
+      return Type.SETLANG;
+    } else if (MetricsServlet.PATH.equals(path) || ReadyServlet.PATH.equals(path)) {
+      // Scrapers and health checks do not keep cookies; do not create a session on each call
+      return Type.STATIC;
+    }
+
+    int start = path.startsWith("/") ? 1 : 0;
+    int index = path.indexOf('/', start);
+    if (index < 0) {
+      // Same rule as RedirectFilter: only scripts can be redirected from the root
+      return path.endsWith(".js") ? Type.PLUGIN : Type.OTHER;
+    }
+
+    // Plugin names take precedence over static directories with the same name
+    String first = path.substring(start, index);
+    boolean pluginPath = getPluginNames().contains(first) || PLUGIN_SUBDIRS.contains(first);
+    return !pluginPath && STATIC_DIRS.contains(first) ? Type.STATIC : Type.PLUGIN;
+  }
+
+  private Set<String> getPluginNames() {
+    Set<Plugin> plugins = this.analyzer.getPlugins();
+    PluginNames names = this.pluginNames;
+    if (names == null || names.plugins != plugins) {
+      names = new PluginNames(plugins);
+      this.pluginNames = names;
+    }
+    return names.names;
+  }
+
+  private static class PluginNames {
+    private final Set<Plugin> plugins;
+    private final Set<String> names;
+
+    private PluginNames(Set<Plugin> plugins) {
+      this.plugins = plugins;
+      Set<String> names = new HashSet<>();
+      for (Plugin plugin : plugins) {
+        names.add(plugin.getName());
+      }
+      this.names = Collections.unmodifiableSet(names);
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package org.geoladris;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+import org.geoladris.config.Config;
+import org.geoladris.config.providers.RoleConfigProvider;
+import org.geoladris.metrics.Metrics;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class ConfigWarmUpTest {
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private Config config;
+  private List<String> computed = new ArrayList<>();
+
+  @SuppressWarnings("unchecked")
+  @Before
+  public void setup() throws Exception {
+    this.config = mock(Config.class);
+    when(this.config.getDir()).thenReturn(tmp.getRoot());
+    Map<String, String> es = new HashMap<>();
+    es.put("code", "es");
+    Map<String, String> fr = new HashMap<>();
+    fr.put("code", "fr");
+    when(this.config.getLanguages()).thenReturn(new Map[] {es, fr});
+    when(this.config.getPluginConfig(any(Locale.class), any(HttpServletRequest.class)))
+        .then(new Answer<Plugin[]>() {
+          @Override
+          public Plugin[] answer(InvocationOnMock invocation) throws Throwable {
+            Locale locale = (Locale) invocation.getArguments()[0];
+            HttpServletRequest request = (HttpServletRequest) invocation.getArguments()[1];
+            HttpSession session = request.getSession(false);
+            Object role = session != null ? session.getAttribute(Geoladris.ATTR_ROLE) : null;
+            assertEquals(locale, request.getAttribute(Geoladris.ATTR_LOCALE));
+            computed.add(locale + ":" + role);
+            return new Plugin[0];
+          }
+        });
+
+    File roleDir = tmp.newFolder(RoleConfigProvider.ROLE_DIR);
+    new File(roleDir, "admin.json").createNewFile();
+    new File(roleDir, "README").createNewFile();
+  }
+
+  @Test
+  public void computesAllLanguagesAndRoles() {
+    ConfigWarmUp warmUp = new ConfigWarmUp(this.config);
+    Metrics metrics = new Metrics();
+    warmUp.setMetrics(metrics);
+    assertEquals(false, warmUp.isReady());
+
+    warmUp.run();
+
+    assertTrue(warmUp.isReady());
+    assertEquals(4, this.computed.size());
+    assertTrue(this.computed.contains("es:null"));
+    assertTrue(this.computed.contains("es:admin"));
+    assertTrue(this.computed.contains("fr:null"));
+    assertTrue(this.computed.contains("fr:admin"));
+    verify(this.config, times(2)).getMessagesJSON(any(Locale.class));
+    assertEquals(0, metrics.gauge(Metrics.WARM_UP_REMAINING).getValue());
+  }
+
+  @Test
+  public void readyEvenIfFailed() {
+    when(this.config.getPluginConfig(any(Locale.class), any(HttpServletRequest.class)))
+        .thenThrow(new RuntimeException("mock"));
+    ConfigWarmUp warmUp = new ConfigWarmUp(this.config);
+    warmUp.run();
+    assertTrue(warmUp.isReady());
+  }
+}
@@ -1,10 +1,13 @@
 package org.geoladris;
 
 import static junit.framework.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.Before;
@@ -16,7 +19,7 @@ public class DirectoryWatcherTest {
   @Rule
   public TemporaryFolder tmp = new TemporaryFolder();
 
-  private int nActions;
+  private volatile int nActions;
 
   @Before
   public void setup() throws IOException {
@@ -39,10 +42,7 @@ public class DirectoryWatcherTest {
     assertEquals(0, nActions);
 
     tmp.newFolder("plugin");
-    // Wait a bit until the updater does its job
-    Thread.sleep(100);
-
-    assertEquals(1, nActions);
+    awaitActions(1);
   }
 
   @Test
@@ -53,10 +53,7 @@ public class DirectoryWatcherTest {
     assertEquals(0, nActions);
 
     plugin.delete();
-    // Wait a bit until the updater does its job
-    Thread.sleep(100);
-
-    assertEquals(1, nActions);
+    awaitActions(1);
   }
 
   @Test
@@ -67,10 +64,7 @@ public class DirectoryWatcherTest {
     assertEquals(0, nActions);
 
     FileUtils.moveDirectory(plugin, new File(tmp.getRoot(), "another_plugin"));
-    // Wait a bit until the updater does its job
-    Thread.sleep(100);
-
-    assertEquals(1, nActions);
+    awaitActions(1);
   }
 
   @Test
@@ -79,15 +73,86 @@ public class DirectoryWatcherTest {
     assertEquals(0, nActions);
 
     File plugin = tmp.newFolder("plugin");
-    // Wait more than the updater threshold
-    Thread.sleep(300);
-    assertEquals(1, nActions);
+    awaitActions(1);
+
+    new File(plugin, "modules").mkdir();
+    awaitActions(2);
+  }
+
+  @Test
+  public void updatesOnModificationIfSpecified() throws Exception {
+    File file = tmp.newFile("file");
+    new Thread(new DirectoryWatcher(new TestAction(), true, tmp.getRoot())).start();
+
+    FileUtils.write(file, "modified");
+    awaitActions(1);
+  }
+
+  @Test
+  public void ignoresSubdirectoriesIfNotRecursive() throws Exception {
+    File plugin = tmp.newFolder("plugin");
+    new Thread(new DirectoryWatcher(new TestAction(), false, false, tmp.getRoot())).start();
 
     new File(plugin, "modules").mkdir();
+    // Wait longer than the quiet period
+    Thread.sleep(DirectoryWatcher.QUIET_MILLIS * 3);
 
-    // Wait a bit until the updater does its job
-    Thread.sleep(100);
-    assertEquals(2, nActions);
+    assertEquals(0, nActions);
+  }
+
+  @Test
+  public void ignoresGzipSidecars() throws Exception {
+    StringBuilder content = new StringBuilder();
+    while (content.length() < GzipSidecarGenerator.MIN_SIZE) {
+      content.append("a");
+    }
+    File js = new File(tmp.newFolder("plugin"), "module.js");
+    FileUtils.write(js, content.toString());
+
+    new Thread(new DirectoryWatcher(new TestAction(), true, tmp.getRoot())).start();
+    new GzipSidecarGenerator(tmp.getRoot()).run();
+    // Wait longer than the quiet period
+    Thread.sleep(DirectoryWatcher.QUIET_MILLIS * 3);
+
+    assertTrue(new File(js.getPath() + GzipSidecarGenerator.EXTENSION).exists());
+    assertEquals(0, nActions);
+  }
+
+  @Test
+  public void runsActionAfterLastWrite() throws Exception {
+    final File file = tmp.newFile("portal.properties");
+    final List<String> contents = new ArrayList<>();
+    new Thread(new DirectoryWatcher(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          contents.add(FileUtils.readFileToString(file));
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+        nActions++;
+      }
+    }, true, tmp.getRoot())).start();
+
+    // An editor writing in two steps, within the quiet period
+    FileUtils.write(file, "title=");
+    FileUtils.write(file, "title=Portal");
+    awaitActions(1);
+
+    assertEquals("title=Portal", contents.get(contents.size() - 1));
+  }
+
+  /**
+   * Waits until the action has run the given number of times, then a bit longer to check it does
+   * not run again.
+   */
+  private void awaitActions(int expected) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (nActions < expected && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Thread.sleep(DirectoryWatcher.QUIET_MILLIS * 3);
+    assertEquals(expected, nActions);
   }
 
   private void runUpdater() throws IOException {
@@ -0,0 +1,79 @@
+package org.geoladris;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GzipSidecarGeneratorTest {
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void generatesMissingSidecars() throws Exception {
+    File js = createFile("p/jslib/lib.js", GzipSidecarGenerator.MIN_SIZE);
+    File css = createFile("p/css/style.css", GzipSidecarGenerator.MIN_SIZE);
+
+    new GzipSidecarGenerator(tmp.getRoot()).run();
+
+    assertEquals(FileUtils.readFileToString(js), uncompress(new File(js.getPath() + ".gz")));
+    assertEquals(FileUtils.readFileToString(css), uncompress(new File(css.getPath() + ".gz")));
+  }
+
+  @Test
+  public void ignoresSmallAndNonCompressibleFiles() throws Exception {
+    File small = createFile("p/src/small.js", 10);
+    File png = createFile("p/images/image.png", GzipSidecarGenerator.MIN_SIZE);
+
+    new GzipSidecarGenerator(tmp.getRoot()).run();
+
+    assertFalse(new File(small.getPath() + ".gz").exists());
+    assertFalse(new File(png.getPath() + ".gz").exists());
+  }
+
+  @Test
+  public void regeneratesOutdatedSidecars() throws Exception {
+    File js = createFile("p/src/module.js", GzipSidecarGenerator.MIN_SIZE);
+    File gz = new File(js.getPath() + ".gz");
+    FileUtils.write(gz, "outdated");
+    gz.setLastModified(js.lastModified() - 1000);
+
+    new GzipSidecarGenerator(tmp.getRoot()).run();
+
+    assertTrue(gz.lastModified() >= js.lastModified());
+    assertEquals(FileUtils.readFileToString(js), uncompress(gz));
+  }
+
+  @Test
+  public void ignoresMissingDirs() {
+    new GzipSidecarGenerator(new File(tmp.getRoot(), "missing")).run();
+  }
+
+  private File createFile(String path, long size) throws Exception {
+    File file = new File(tmp.getRoot(), path);
+    StringBuilder content = new StringBuilder();
+    while (content.length() < size) {
+      content.append("a");
+    }
+    FileUtils.write(file, content.toString());
+    return file;
+  }
+
+  private String uncompress(File gz) throws Exception {
+    GZIPInputStream in = new GZIPInputStream(new FileInputStream(gz));
+    try {
+      return IOUtils.toString(in);
+    } finally {
+      in.close();
+    }
+  }
+}
@@ -110,6 +110,19 @@ public class PluginDirsAnalyzerTest {
     }
   }
 
+  @Test
+  public void reloadDoesNotModifyPreviousPlugins() throws Exception {
+    tmp.newFolder("p1");
+    PluginDirsAnalyzer analyzer = new PluginDirsAnalyzer(tmp.getRoot());
+    Set<Plugin> plugins = analyzer.getPlugins();
+
+    tmp.newFolder("p2");
+    analyzer.reload();
+
+    assertEquals(1, plugins.size());
+    assertEquals(2, analyzer.getPlugins().size());
+  }
+
   @Test
   public void testNoPluginDescriptor() {
     Set<Plugin> plugins = getPluginDescriptors("testNoPluginDescriptor");
@@ -193,4 +193,24 @@ public class PluginTest {
     } catch (IllegalArgumentException e) {
     }
   }
+
+  @Test
+  public void getConfigurationReturnsACopy() {
+    Plugin plugin = new Plugin("p", true);
+    plugin.setConfiguration(JSONObject.fromObject("{m1:{a:1}}"));
+
+    plugin.getConfiguration().getJSONObject("m1").put("a", 2);
+    assertEquals(1, plugin.getConfiguration().getJSONObject("m1").getInt("a"));
+  }
+
+  @Test
+  public void getRequireJSReturnsACopy() {
+    Plugin plugin = new Plugin("p", true,
+        JSONObject.fromObject("{requirejs:{paths:{a:'../a'}}}"));
+    Plugin clone = plugin.clonePlugin();
+
+    clone.getRequireJS().getJSONObject("paths").put("b", "../b");
+    plugin.getRequireJS().getJSONObject("paths").put("b", "../b");
+    assertFalse(plugin.getRequireJS().getJSONObject("paths").has("b"));
+  }
 }
@@ -10,6 +10,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
@@ -161,8 +162,14 @@ public class TestingServletContext {
   }
 
   public String getResponse() {
-    this.writer.flush();
-    this.writer.close();
-    return this.out.toString();
+    if (this.writer != null) {
+      this.writer.flush();
+      this.writer.close();
+    }
+    try {
+      return this.out.toString("UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
   }
 }
@@ -0,0 +1,70 @@
+package org.geoladris;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.apache.log4j.Logger;
+import org.junit.Test;
+
+public class ThrottledLoggerTest {
+  @Test
+  public void logsFirstMessage() {
+    ThrottledLogger logger = new ThrottledLogger(mock(Logger.class), 1000);
+    assertEquals(0, logger.acquire("a", 0));
+  }
+
+  @Test
+  public void suppressesRepeatsWithinInterval() {
+    ThrottledLogger logger = new ThrottledLogger(mock(Logger.class), 1000);
+    assertEquals(0, logger.acquire("a", 0));
+    assertEquals(-1, logger.acquire("a", 10));
+    assertEquals(-1, logger.acquire("a", 999));
+    assertEquals(2, logger.acquire("a", 1000));
+    assertEquals(-1, logger.acquire("a", 1001));
+  }
+
+  @Test
+  public void keysAreIndependent() {
+    ThrottledLogger logger = new ThrottledLogger(mock(Logger.class), 1000);
+    assertEquals(0, logger.acquire("a", 0));
+    assertEquals(0, logger.acquire("b", 10));
+    assertEquals(-1, logger.acquire("a", 20));
+  }
+
+  @Test
+  public void forgetsExpiredKeysIfTooMany() {
+    ThrottledLogger logger = new ThrottledLogger(mock(Logger.class), 1000);
+    for (int i = 0; i < ThrottledLogger.MAX_KEYS - 1; i++) {
+      logger.acquire("key" + i, 0);
+    }
+    assertEquals(0, logger.acquire("a", 500));
+    assertEquals(0, logger.acquire("b", 1000));
+
+    assertEquals(2, logger.size());
+    assertEquals(-1, logger.acquire("a", 1001));
+  }
+
+  @Test
+  public void forgetsOldestKeyIfTooManyRecent() {
+    ThrottledLogger logger = new ThrottledLogger(mock(Logger.class), 10000);
+    for (int i = 0; i < ThrottledLogger.MAX_KEYS; i++) {
+      logger.acquire("key" + i, i);
+    }
+    assertEquals(0, logger.acquire("a", ThrottledLogger.MAX_KEYS));
+
+    assertEquals(ThrottledLogger.MAX_KEYS, logger.size());
+    assertEquals(-1, logger.acquire("key1", ThrottledLogger.MAX_KEYS + 1));
+    assertEquals(0, logger.acquire("key0", ThrottledLogger.MAX_KEYS + 2));
+  }
+
+  @Test
+  public void logsEveryMessageWithoutInterval() {
+    Logger log4j = mock(Logger.class);
+    ThrottledLogger logger = new ThrottledLogger(log4j, 0);
+    logger.warn("a", "message");
+    logger.warn("a", "message");
+    verify(log4j, times(2)).warn("message");
+  }
+}
@@ -0,0 +1,35 @@
+package org.geoladris.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class BoundedCacheTest {
+  @Test
+  public void getsCachedValues() {
+    BoundedCache<String, Integer> cache = new BoundedCache<>(10);
+    assertNull(cache.get("a"));
+    cache.put("a", 1);
+    assertEquals(1, cache.get("a").intValue());
+  }
+
+  @Test
+  public void discardsEntriesOverMaxSize() {
+    BoundedCache<Integer, Integer> cache = new BoundedCache<>(10);
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, i);
+    }
+    assertEquals(10, cache.size());
+    assertEquals(99, cache.get(99).intValue());
+  }
+
+  @Test
+  public void clear() {
+    BoundedCache<String, Integer> cache = new BoundedCache<>(10);
+    cache.put("a", 1);
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertNull(cache.get("a"));
+  }
+}
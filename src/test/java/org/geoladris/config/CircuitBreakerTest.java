@@ -0,0 +1,59 @@
+package org.geoladris.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.geoladris.config.CircuitBreaker.State;
+import org.geoladris.metrics.Metrics;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+  private Metrics metrics;
+  private CircuitBreaker breaker;
+
+  @Before
+  public void setup() {
+    this.metrics = new Metrics();
+    this.breaker = new CircuitBreaker("p", 2, 1000, this.metrics);
+  }
+
+  @Test
+  public void opensAfterConsecutiveFailures() {
+    this.breaker.onFailure(0);
+    this.breaker.onSuccess();
+    this.breaker.onFailure(0);
+    assertEquals(State.CLOSED, this.breaker.getState());
+    assertTrue(this.breaker.allowRequest(0));
+
+    this.breaker.onFailure(10);
+    assertEquals(State.OPEN, this.breaker.getState());
+    assertFalse(this.breaker.allowRequest(500));
+    assertEquals(State.OPEN.ordinal(), this.metrics
+        .gauge(Metrics.PROVIDER_CIRCUIT_STATE, Metrics.LABEL_PROVIDER, "p").getValue());
+  }
+
+  @Test
+  public void singleTrialAfterOpenPeriod() {
+    this.breaker.onFailure(0);
+    this.breaker.onFailure(0);
+
+    assertTrue(this.breaker.allowRequest(1000));
+    assertEquals(State.HALF_OPEN, this.breaker.getState());
+    assertFalse(this.breaker.allowRequest(1000));
+
+    // Failed trial opens the circuit again
+    this.breaker.onFailure(1000);
+    assertEquals(State.OPEN, this.breaker.getState());
+    assertFalse(this.breaker.allowRequest(1999));
+
+    assertTrue(this.breaker.allowRequest(2000));
+    this.breaker.onSuccess();
+    assertEquals(State.CLOSED, this.breaker.getState());
+    assertEquals(2, this.metrics.counter(Metrics.PROVIDER_CIRCUIT_TRANSITIONS,
+        Metrics.LABEL_PROVIDER, "p", Metrics.LABEL_STATE, "open").getCount());
+    assertEquals(1, this.metrics.counter(Metrics.PROVIDER_CIRCUIT_TRANSITIONS,
+        Metrics.LABEL_PROVIDER, "p", Metrics.LABEL_STATE, "closed").getCount());
+  }
+}
@@ -0,0 +1,52 @@
+package org.geoladris.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import net.sf.json.JSONObject;
+
+public class ConfigFragmentsTest {
+  @Test
+  public void serializesMembers() {
+    ConfigTree tree = ConfigTree.fromJSON(JSONObject.fromObject("{m1 : {a : 'café'}}"));
+    byte[] fragment = new ConfigFragments().get(tree);
+    assertEquals("\"m1\":{\"a\":\"café\"}", new String(fragment, StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void emptyTree() {
+    assertEquals(0, new ConfigFragments().get(ConfigTree.EMPTY).length);
+  }
+
+  @Test
+  public void reusesFragmentsForEqualTrees() {
+    ConfigFragments fragments = new ConfigFragments();
+    byte[] fragment =
+        fragments.get(ConfigTree.fromJSON(JSONObject.fromObject("{m1 : {a : 1}, m2 : 2}")));
+    ConfigTree merged = ConfigTree.fromJSON(JSONObject.fromObject("{m1 : {a : 1}}"))
+        .merge(ConfigTree.fromJSON(JSONObject.fromObject("{m2 : 2}")));
+    assertSame(fragment, fragments.get(merged));
+    assertEquals(1, fragments.size());
+  }
+
+  @Test
+  public void boundedSize() {
+    ConfigFragments fragments = new ConfigFragments(2);
+    ConfigTree t1 = ConfigTree.fromJSON(JSONObject.fromObject("{a : 1}"));
+    ConfigTree t2 = ConfigTree.fromJSON(JSONObject.fromObject("{a : 2}"));
+    ConfigTree t3 = ConfigTree.fromJSON(JSONObject.fromObject("{a : 3}"));
+
+    byte[] fragment = fragments.get(t1);
+    fragments.get(t2);
+    fragments.get(t1);
+    fragments.get(t3);
+
+    assertEquals(2, fragments.size());
+    // Kept in the tree itself
+    assertSame(fragment, fragments.get(t1));
+  }
+}
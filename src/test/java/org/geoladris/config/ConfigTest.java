@@ -4,6 +4,7 @@ import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -18,17 +19,31 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 
 import org.apache.commons.io.IOUtils;
+import org.geoladris.Geoladris;
 import org.geoladris.Plugin;
+import org.geoladris.metrics.Metrics;
+import org.geoladris.metrics.ServerTiming;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -36,6 +51,8 @@ import org.junit.rules.TemporaryFolder;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import net.sf.json.JSONObject;
 
@@ -132,7 +149,9 @@ public class ConfigTest {
 
     Thread.sleep(cacheTimeout * 1500);
 
-    // Check values changed
+    // portal.properties does not expire; it is reloaded when the watcher sees a change
+    assertTrue(config.getDefaultLang().equals(defaultLang));
+    ((ConfigImpl) config).updateProperties();
     assertFalse(config.getDefaultLang().equals(defaultLang));
     assertFalse(config.getLanguages()[0].get("code").equals("es"));
     assertFalse(config.getProperties() == firstProperties);
@@ -191,6 +210,136 @@ public class ConfigTest {
         any(HttpServletRequest.class));
   }
 
+  @SuppressWarnings("unchecked")
+  @Test
+  public void cachesProviderConfigurationPerKey() throws Exception {
+    CacheablePluginConfigProvider provider = mock(CacheablePluginConfigProvider.class);
+    when(provider.getCacheKey(any(Config.class), any(HttpServletRequest.class))).thenReturn("a",
+        "a", "b", null, null);
+
+    Config config =
+        new ConfigImpl(null, Arrays.<PluginConfigProvider>asList(provider),
+            Collections.<Plugin>emptySet(), true, -1);
+    for (int i = 0; i < 5; i++) {
+      config.getPluginConfig(Locale.getDefault(), request);
+    }
+
+    // a, b and two calls without key
+    verify(provider, times(4)).getPluginConfig(any(Config.class), any(Map.class),
+        any(HttpServletRequest.class));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void clearsCachedConfigurationForMatchingKeys() throws Exception {
+    CacheablePluginConfigProvider provider = mock(CacheablePluginConfigProvider.class);
+    when(provider.getCacheKey(any(Config.class), any(HttpServletRequest.class))).thenReturn("a",
+        "b", "a", "b");
+
+    ConfigImpl config = new ConfigImpl(null, Arrays.<PluginConfigProvider>asList(provider),
+        Collections.<Plugin>emptySet(), true, -1);
+    config.getPluginConfig(Locale.ROOT, request);
+    config.getPluginConfig(Locale.ROOT, request);
+    config.clearCachedConfigurations(provider, new Predicate<String>() {
+      @Override
+      public boolean test(String key) {
+        return key.equals("a");
+      }
+    });
+    config.getPluginConfig(Locale.ROOT, request);
+    config.getPluginConfig(Locale.ROOT, request);
+
+    // a, b and a again
+    verify(provider, times(3)).getPluginConfig(any(Config.class), any(Map.class),
+        any(HttpServletRequest.class));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void recordsCacheAndProviderMetrics() throws Exception {
+    PluginConfigProvider provider = mock(PluginConfigProvider.class);
+    when(provider.canBeCached()).thenReturn(true);
+    when(provider.getPluginConfig(any(Config.class), any(Map.class), any(HttpServletRequest.class)))
+        .thenReturn(new HashMap<String, JSONObject>());
+
+    ConfigImpl config = new ConfigImpl(null, Arrays.asList(provider),
+        Collections.singleton(new Plugin("p1", true)), true, -1);
+    Metrics metrics = new Metrics();
+    config.setMetrics(metrics);
+    for (int i = 0; i < 3; i++) {
+      config.getPluginConfig(Locale.ROOT, request);
+    }
+    config.clearCachedConfigurations();
+    config.getPluginConfig(Locale.ROOT, request);
+
+    String name = provider.getClass().getName();
+    assertEquals(2, metrics.counter(Metrics.MERGE_CACHE_MISSES).getCount());
+    assertEquals(2, metrics.counter(Metrics.MERGE_CACHE_HITS).getCount());
+    assertEquals(2,
+        metrics.counter(Metrics.PROVIDER_CACHE_MISSES, Metrics.LABEL_PROVIDER, name).getCount());
+    assertEquals(2,
+        metrics.histogram(Metrics.PROVIDER_DURATION, Metrics.LABEL_PROVIDER, name).getCount());
+    assertEquals(1,
+        metrics.counter(Metrics.CACHE_EVICTIONS, Metrics.LABEL_CACHE, "merge").getCount());
+    assertEquals(1, metrics.gauge(Metrics.PLUGINS).getValue());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void addsProvidersAndMergeToServerTiming() throws Exception {
+    PluginConfigProvider provider = mock(PluginConfigProvider.class);
+    when(provider.getPluginConfig(any(Config.class), any(Map.class), any(HttpServletRequest.class)))
+        .thenReturn(new HashMap<String, JSONObject>());
+    ServerTiming timing = new ServerTiming();
+    when(request.getAttribute(Geoladris.ATTR_SERVER_TIMING)).thenReturn(timing);
+
+    Config config = new ConfigImpl(null, Arrays.asList(provider),
+        Collections.singleton(new Plugin("p1", true)), false, -1);
+    config.getPluginConfig(Locale.ROOT, request);
+
+    String name = Pattern.quote(provider.getClass().getName());
+    assertTrue(timing.getHeader()
+        .matches("provider;desc=\"" + name + "\";dur=[0-9.]+, merge;dur=[0-9.]+"));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void cachedMergeReturnsCopies() throws Exception {
+    Plugin plugin = new Plugin("p1", JSONObject.fromObject("{default-conf:{m1:true}}"));
+    PluginConfigProvider provider = mock(PluginConfigProvider.class);
+    when(provider.canBeCached()).thenReturn(true);
+    when(provider.getPluginConfig(any(Config.class), any(Map.class), any(HttpServletRequest.class)))
+        .thenReturn(Collections.singletonMap("p1", JSONObject.fromObject("{m2:true}")));
+
+    Config config = new ConfigImpl(null, Arrays.asList(provider), Collections.singleton(plugin),
+        true, -1);
+    Plugin[] first = config.getPluginConfig(Locale.ROOT, request);
+    first[0].setConfiguration(JSONObject.fromObject("{m3:true, _override:true}"));
+    first[0].addModule("m3");
+
+    Plugin[] second = config.getPluginConfig(Locale.ROOT, request);
+    assertEquals(JSONObject.fromObject("{'p1/m1':true,'p1/m2':true}"),
+        second[0].getConfiguration());
+    assertEquals(0, second[0].getModules().size());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void setPluginsClearsCachedConfiguration() throws Exception {
+    PluginConfigProvider provider = mock(PluginConfigProvider.class);
+    when(provider.canBeCached()).thenReturn(true);
+
+    ConfigImpl config =
+        new ConfigImpl(null, Arrays.asList(provider), Collections.<Plugin>emptySet(), true, -1);
+    config.getPluginConfig(Locale.getDefault(), request);
+    config.setPlugins(Collections.singleton(new Plugin("p1", false)));
+    Plugin[] plugins = config.getPluginConfig(Locale.getDefault(), request);
+
+    assertEquals(1, plugins.length);
+    verify(provider, times(2)).getPluginConfig(any(Config.class), any(Map.class),
+        any(HttpServletRequest.class));
+  }
+
   @Test
   public void testNoConfigurationFolder() throws Exception {
     File portalProperties = new File(folder.getRoot(), "portal.properties");
@@ -216,6 +365,249 @@ public class ConfigTest {
     assertNotNull(config.getPluginConfig(Locale.getDefault(), request));
   }
 
+  @SuppressWarnings("unchecked")
+  @Test
+  public void timedOutProviderUsesLastKnownGood() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    PluginConfigProvider provider = mock(PluginConfigProvider.class);
+    when(provider.canBeCached()).thenReturn(true);
+    when(provider.getPluginConfig(any(Config.class), any(Map.class), any(HttpServletRequest.class)))
+        .thenReturn(Collections.singletonMap("p1", JSONObject.fromObject("{m1:true}")))
+        .then(new Answer<Map<String, JSONObject>>() {
+          @Override
+          public Map<String, JSONObject> answer(InvocationOnMock invocation) throws Throwable {
+            release.await(10, TimeUnit.SECONDS);
+            return Collections.singletonMap("p1", JSONObject.fromObject("{m1:false}"));
+          }
+        });
+
+    ConfigImpl config = new ConfigImpl(null, Arrays.asList(provider),
+        Collections.singleton(new Plugin("p1", true)), false, -1);
+    config.setProviderTimeout(50);
+    Metrics metrics = new Metrics();
+    config.setMetrics(metrics);
+
+    config.getPluginConfig(Locale.ROOT, request);
+    Plugin[] plugins;
+    try {
+      plugins = config.getPluginConfig(Locale.ROOT, request);
+    } finally {
+      // Do not leave the provider thread behind
+      release.countDown();
+      config.shutdown();
+    }
+    assertEquals(JSONObject.fromObject("{'p1/m1':true}"), plugins[0].getConfiguration());
+
+    String name = provider.getClass().getName();
+    assertEquals(1,
+        metrics.counter(Metrics.PROVIDER_TIMEOUTS, Metrics.LABEL_PROVIDER, name).getCount());
+    assertEquals(1,
+        metrics.counter(Metrics.PROVIDER_FALLBACKS, Metrics.LABEL_PROVIDER, name).getCount());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void timedProviderGetsRequestCopy() throws Exception {
+    when(request.getRequestURI()).thenReturn("/demo/config.js");
+    PluginConfigProvider provider = mock(PluginConfigProvider.class);
+
+    ConfigImpl config = new ConfigImpl(null, Arrays.asList(provider),
+        Collections.<Plugin>emptySet(), false, -1);
+    config.setProviderTimeout(5000);
+    config.getPluginConfig(Locale.ROOT, request);
+
+    ArgumentCaptor<HttpServletRequest> captor = ArgumentCaptor.forClass(HttpServletRequest.class);
+    verify(provider).getPluginConfig(any(Config.class), any(Map.class), captor.capture());
+    assertTrue(captor.getValue() != request);
+    assertEquals("/demo/config.js", captor.getValue().getRequestURI());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void timedProviderIsNotCalledAfterShutdown() throws Exception {
+    PluginConfigProvider provider = mock(PluginConfigProvider.class);
+
+    ConfigImpl config = new ConfigImpl(null, Arrays.asList(provider),
+        Collections.<Plugin>emptySet(), false, -1);
+    config.setProviderTimeout(5000);
+    config.shutdown();
+    assertNotNull(config.getPluginConfig(Locale.ROOT, request));
+
+    verify(provider, times(0)).getPluginConfig(any(Config.class), any(Map.class),
+        any(HttpServletRequest.class));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void failingProviderIsNotCalledWhileCircuitIsOpen() throws Exception {
+    PluginConfigProvider provider = mock(PluginConfigProvider.class);
+    when(provider.getPluginConfig(any(Config.class), any(Map.class), any(HttpServletRequest.class)))
+        .thenThrow(new IOException("mock"));
+
+    ConfigImpl config = new ConfigImpl(null, Arrays.asList(provider),
+        Collections.<Plugin>emptySet(), false, -1);
+    config.setCircuitBreaker(2, 60000);
+    for (int i = 0; i < 4; i++) {
+      assertNotNull(config.getPluginConfig(Locale.ROOT, request));
+    }
+
+    verify(provider, times(2)).getPluginConfig(any(Config.class), any(Map.class),
+        any(HttpServletRequest.class));
+    assertEquals(CircuitBreaker.State.OPEN, config.getCircuitState(provider));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void errorInProviderCountsAsFailure() throws Exception {
+    PluginConfigProvider provider = mock(PluginConfigProvider.class);
+    when(provider.getPluginConfig(any(Config.class), any(Map.class), any(HttpServletRequest.class)))
+        .thenThrow(new NoClassDefFoundError("mock"))
+        .thenReturn(Collections.<String, JSONObject>emptyMap());
+
+    ConfigImpl config = new ConfigImpl(null, Arrays.asList(provider),
+        Collections.<Plugin>emptySet(), false, -1);
+    config.setCircuitBreaker(1, 0);
+    try {
+      config.getPluginConfig(Locale.ROOT, request);
+      fail();
+    } catch (NoClassDefFoundError e) {
+      assertEquals(CircuitBreaker.State.OPEN, config.getCircuitState(provider));
+    }
+
+    // The trial call is let through and closes the circuit
+    assertNotNull(config.getPluginConfig(Locale.ROOT, request));
+    assertEquals(CircuitBreaker.State.CLOSED, config.getCircuitState(provider));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void failedMergeIsNotCached() throws Exception {
+    PluginConfigProvider provider = mock(PluginConfigProvider.class);
+    when(provider.canBeCached()).thenReturn(true);
+    when(provider.getPluginConfig(any(Config.class), any(Map.class), any(HttpServletRequest.class)))
+        .thenThrow(new IOException("mock"))
+        .thenReturn(Collections.singletonMap("p1", JSONObject.fromObject("{m1:true}")));
+
+    Config config = new ConfigImpl(null, Arrays.asList(provider),
+        Collections.singleton(new Plugin("p1", true)), true, -1);
+    config.getPluginConfig(Locale.ROOT, request);
+    Plugin[] plugins = config.getPluginConfig(Locale.ROOT, request);
+    assertEquals(JSONObject.fromObject("{'p1/m1':true}"), plugins[0].getConfiguration());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void staleConfigurationIsRefreshedInBackground() throws Exception {
+    PluginConfigProvider provider = mock(PluginConfigProvider.class);
+    when(provider.canBeCached()).thenReturn(true);
+    when(provider.getPluginConfig(any(Config.class), any(Map.class), any(HttpServletRequest.class)))
+        .thenReturn(Collections.singletonMap("p1", JSONObject.fromObject("{m1:true}")))
+        .thenReturn(Collections.singletonMap("p1", JSONObject.fromObject("{m1:false}")));
+
+    ConfigImpl config = new ConfigImpl(null, Arrays.asList(provider),
+        Collections.singleton(new Plugin("p1", true)), true, -1);
+    AtomicLong time = mockClock(config);
+    ExecutorService refresher = Executors.newSingleThreadExecutor();
+    config.setRefreshExecutor(refresher);
+    config.setCacheTimeoutMillis(500, 60000);
+    config.getPluginConfig(Locale.ROOT, request);
+    time.addAndGet(600);
+
+    // Stale value returned right away
+    Plugin[] plugins = config.getPluginConfig(Locale.ROOT, request);
+    assertEquals(JSONObject.fromObject("{'p1/m1':true}"), plugins[0].getConfiguration());
+
+    // Wait for the refresh
+    refresher.shutdown();
+    assertTrue(refresher.awaitTermination(10, TimeUnit.SECONDS));
+    plugins = config.getPluginConfig(Locale.ROOT, request);
+    assertEquals(JSONObject.fromObject("{'p1/m1':false}"), plugins[0].getConfiguration());
+    verify(provider, times(2)).getPluginConfig(any(Config.class), any(Map.class),
+        any(HttpServletRequest.class));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void expiredConfigurationIsComputedBeforeReturning() throws Exception {
+    PluginConfigProvider provider = mock(PluginConfigProvider.class);
+    when(provider.canBeCached()).thenReturn(true);
+    when(provider.getPluginConfig(any(Config.class), any(Map.class), any(HttpServletRequest.class)))
+        .thenReturn(Collections.singletonMap("p1", JSONObject.fromObject("{m1:true}")))
+        .thenReturn(Collections.singletonMap("p1", JSONObject.fromObject("{m1:false}")));
+
+    ConfigImpl config = new ConfigImpl(null, Arrays.asList(provider),
+        Collections.singleton(new Plugin("p1", true)), true, -1);
+    AtomicLong time = mockClock(config);
+    config.setCacheTimeoutMillis(20, 40);
+    config.getPluginConfig(Locale.ROOT, request);
+    time.addAndGet(100);
+
+    Plugin[] plugins = config.getPluginConfig(Locale.ROOT, request);
+    assertEquals(JSONObject.fromObject("{'p1/m1':false}"), plugins[0].getConfiguration());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void concurrentMissesCallProviderOnce() throws Exception {
+    final int callers = 8;
+    final Metrics metrics = new Metrics();
+    PluginConfigProvider provider = mock(PluginConfigProvider.class);
+    when(provider.canBeCached()).thenReturn(true);
+    when(provider.getPluginConfig(any(Config.class), any(Map.class), any(HttpServletRequest.class)))
+        .then(new Answer<Map<String, JSONObject>>() {
+          @Override
+          public Map<String, JSONObject> answer(InvocationOnMock invocation) throws Throwable {
+            // Return only once all the other callers wait for this call
+            long deadline = System.currentTimeMillis() + 10000;
+            while (waits(metrics) < callers - 1 && System.currentTimeMillis() < deadline) {
+              Thread.sleep(10);
+            }
+            return Collections.singletonMap("p1", JSONObject.fromObject("{m1:true}"));
+          }
+        });
+
+    final ConfigImpl config = new ConfigImpl(null, Arrays.asList(provider),
+        Collections.singleton(new Plugin("p1", true)), true, -1);
+    config.setMetrics(metrics);
+
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(callers);
+    List<Future<Plugin[]>> results = new ArrayList<>();
+    for (int i = 0; i < callers; i++) {
+      results.add(executor.submit(new Callable<Plugin[]>() {
+        @Override
+        public Plugin[] call() throws Exception {
+          start.await();
+          return config.getPluginConfig(Locale.ROOT, request);
+        }
+      }));
+    }
+    start.countDown();
+    for (Future<Plugin[]> result : results) {
+      assertEquals(JSONObject.fromObject("{'p1/m1':true}"), result.get()[0].getConfiguration());
+    }
+    executor.shutdown();
+
+    verify(provider, times(1)).getPluginConfig(any(Config.class), any(Map.class),
+        any(HttpServletRequest.class));
+    assertEquals(callers - 1, waits(metrics));
+  }
+
+  private static AtomicLong mockClock(ConfigImpl config) {
+    final AtomicLong time = new AtomicLong(1000);
+    config.setClock(new LongSupplier() {
+      @Override
+      public long getAsLong() {
+        return time.get();
+      }
+    });
+    return time;
+  }
+
+  private static long waits(Metrics metrics) {
+    return metrics.counter(Metrics.SINGLE_FLIGHT_WAITS, Metrics.LABEL_CACHE, "merge").getCount();
+  }
+
   @SuppressWarnings("unchecked")
   @Test
   public void testMergeDoesNotAffectDefaultPluginConfiguration() throws IOException {
@@ -349,4 +741,17 @@ public class ConfigTest {
     assertEquals(1, bundle.keySet().size());
     assertEquals("1", bundle.getString("a"));
   }
+
+  @Test
+  public void localizesWithGivenLocale() throws Exception {
+    Config config = new ConfigImpl(folder.getRoot(), new ArrayList<PluginConfigProvider>(),
+        new HashSet<Plugin>(), false, -1);
+    File dir = folder.newFolder("messages");
+    IOUtils.write("a=1\n", new FileOutputStream(new File(dir, "messages_en.properties")));
+    IOUtils.write("a=2\n", new FileOutputStream(new File(dir, "messages_es.properties")));
+
+    String template = "${a} ${b}";
+    assertEquals("1 ${b}", config.localize(template, Locale.ENGLISH));
+    assertEquals("2 ${b}", config.localize(template, new Locale("es")));
+  }
 }
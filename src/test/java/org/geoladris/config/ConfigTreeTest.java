@@ -0,0 +1,110 @@
+package org.geoladris.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import net.sf.json.JSONObject;
+
+public class ConfigTreeTest {
+  @Test
+  public void jsonRoundTrip() {
+    JSONObject json =
+        JSONObject.fromObject("{a : {b : [1, 'two', {c : true}], d : null}, e : 'text'}");
+    ConfigTree tree = ConfigTree.fromJSON(json);
+    assertEquals(json, tree.toJSON());
+    assertEquals(json, JSONObject.fromObject(tree.toString()));
+  }
+
+  @Test
+  public void toJSONReturnsCopy() {
+    ConfigTree tree = ConfigTree.fromJSON(JSONObject.fromObject("{a : {b : 1}}"));
+    tree.toJSON().getJSONObject("a").element("b", 2);
+    assertEquals(1, tree.toJSON().getJSONObject("a").getInt("b"));
+  }
+
+  @Test
+  public void deepMerge() {
+    ConfigTree tree = ConfigTree.fromJSON(JSONObject.fromObject("{m : {a : 1, b : 2}, n : 1}"));
+    ConfigTree other = ConfigTree.fromJSON(JSONObject.fromObject("{m : {a : 10, c : 3}}"));
+
+    JSONObject merged = tree.merge(other).toJSON();
+    assertEquals(JSONObject.fromObject("{m : {a : 10, b : 2, c : 3}, n : 1}"), merged);
+    // Original trees are not modified
+    assertEquals(JSONObject.fromObject("{m : {a : 1, b : 2}, n : 1}"), tree.toJSON());
+  }
+
+  @Test
+  public void mergeSharesUnchangedSubtrees() {
+    ConfigTree tree =
+        ConfigTree.fromJSON(JSONObject.fromObject("{m1 : {a : {b : 1}}, m2 : {c : 2}}"));
+    ConfigTree other = ConfigTree.fromJSON(JSONObject.fromObject("{m2 : {c : 3}}"));
+
+    ConfigTree merged = tree.merge(other);
+    assertSame(tree.getTree("m1"), merged.getTree("m1"));
+    assertEquals(3, merged.getTree("m2").get("c"));
+  }
+
+  @Test
+  public void mergeWithoutChangesReturnsSameTree() {
+    ConfigTree tree = ConfigTree.fromJSON(JSONObject.fromObject("{m : {a : 1}}"));
+    assertSame(tree, tree.merge(ConfigTree.EMPTY));
+    assertSame(tree, tree.merge(tree));
+  }
+
+  @Test
+  public void without() {
+    ConfigTree tree = ConfigTree.fromJSON(JSONObject.fromObject("{a : 1, b : 2}"));
+    assertSame(tree, tree.without("c"));
+    ConfigTree ret = tree.without("a");
+    assertFalse(ret.has("a"));
+    assertTrue(ret.has("b"));
+    assertTrue(tree.has("a"));
+  }
+
+  @Test
+  public void prefixKeys() {
+    ConfigTree tree = ConfigTree.fromJSON(JSONObject.fromObject("{a : {b : 1}, c : 2}"));
+    ConfigTree prefixed = tree.prefixKeys("p/");
+    assertSame(tree.get("a"), prefixed.get("p/a"));
+    assertEquals(2, prefixed.get("p/c"));
+    assertEquals(tree, prefixed.unprefixKeys("p/"));
+    assertSame(tree, tree.unprefixKeys("p/"));
+  }
+
+  @Test
+  public void getBoolean() {
+    ConfigTree tree = ConfigTree.fromJSON(JSONObject.fromObject("{a : true, b : 'false'}"));
+    assertTrue(tree.getBoolean("a", false));
+    assertFalse(tree.getBoolean("b", true));
+    assertTrue(tree.getBoolean("c", true));
+  }
+
+  @Test
+  public void escapesStrings() {
+    ConfigTree tree = ConfigTree.fromJSON(JSONObject.fromObject("{a : 'x'}"))
+        .merge(ConfigTree.fromJSON(new JSONObject().element("a", "\"\\\n</script>\u2028")));
+    assertEquals("{\"a\":\"\\\"\\\\\\n<\\/script>\\u2028\"}", tree.toString());
+  }
+
+  @Test
+  public void equalsAndHashCode() {
+    ConfigTree t1 = ConfigTree.fromJSON(JSONObject.fromObject("{a : {b : [1, 2]}}"));
+    ConfigTree t2 = ConfigTree.fromJSON(JSONObject.fromObject("{a : {b : [1, 2]}}"));
+    assertEquals(t1, t2);
+    assertEquals(t1.hashCode(), t2.hashCode());
+    assertFalse(t1.equals(ConfigTree.EMPTY));
+  }
+
+  @Test
+  public void emptyTree() {
+    assertSame(ConfigTree.EMPTY, ConfigTree.fromJSON(new JSONObject()));
+    assertSame(ConfigTree.EMPTY, ConfigTree.fromJSON(null));
+    assertNull(ConfigTree.EMPTY.get("a"));
+    assertEquals("{}", ConfigTree.EMPTY.toString());
+  }
+}
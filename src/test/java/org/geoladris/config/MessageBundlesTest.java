@@ -0,0 +1,68 @@
+package org.geoladris.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.sf.json.JSONObject;
+
+public class MessageBundlesTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private MessageBundles bundles;
+  private File messages;
+
+  @Before
+  public void setup() throws Exception {
+    this.messages = new File(folder.newFolder(Config.DIR_MESSAGES), "messages_en.properties");
+    FileUtils.write(this.messages, "a=1\n");
+    this.bundles = new MessageBundles(folder.getRoot());
+  }
+
+  @Test
+  public void loadsBundleOnce() {
+    ResourceBundle bundle = this.bundles.getBundle(Locale.ENGLISH);
+    assertEquals("1", bundle.getString("a"));
+    assertSame(bundle, this.bundles.getBundle(Locale.ENGLISH));
+  }
+
+  @Test
+  public void serializesMessages() {
+    JSONObject json = JSONObject.fromObject(this.bundles.getJSON(Locale.ENGLISH));
+    assertEquals(1, json.size());
+    assertEquals("1", json.getString("a"));
+  }
+
+  @Test
+  public void reloadsAfterInvalidate() throws Exception {
+    ResourceBundle bundle = this.bundles.getBundle(Locale.ENGLISH);
+    FileUtils.write(this.messages, "a=2\n");
+    assertEquals("1", this.bundles.getBundle(Locale.ENGLISH).getString("a"));
+
+    this.bundles.invalidate();
+
+    ResourceBundle reloaded = this.bundles.getBundle(Locale.ENGLISH);
+    assertNotSame(bundle, reloaded);
+    assertEquals("2", reloaded.getString("a"));
+    assertEquals("2", JSONObject.fromObject(this.bundles.getJSON(Locale.ENGLISH)).get("a"));
+  }
+
+  @Test
+  public void missingBundle() throws Exception {
+    FileUtils.deleteDirectory(new File(folder.getRoot(), Config.DIR_MESSAGES));
+    this.bundles.invalidate();
+    assertEquals(0, this.bundles.getBundle(Locale.ENGLISH).keySet().size());
+    assertEquals("{}", this.bundles.getJSON(Locale.ENGLISH));
+  }
+}
@@ -0,0 +1,53 @@
+package org.geoladris.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.PropertyResourceBundle;
+import java.util.ResourceBundle;
+
+import org.junit.Test;
+
+public class MessageTemplateTest {
+  @Test
+  public void replacesPlaceholders() throws Exception {
+    MessageTemplate template = MessageTemplate.compile("{title : '${title}', a : '${a.b}'}");
+    assertEquals("{title : 'My title', a : 'ab'}",
+        template.render(Locale.ENGLISH, bundle("title=My title\na.b=ab")));
+  }
+
+  @Test
+  public void keepsMissingPlaceholders() throws Exception {
+    MessageTemplate template = MessageTemplate.compile("${missing} and ${a}");
+    assertEquals("${missing} and 1", template.render(Locale.ENGLISH, bundle("a=1")));
+  }
+
+  @Test
+  public void doesNotInterpretMessages() throws Exception {
+    MessageTemplate template = MessageTemplate.compile("${price}");
+    assertEquals("$1 \\ 2", template.render(Locale.ENGLISH, bundle("price=$1 \\\\ 2")));
+  }
+
+  @Test
+  public void noPlaceholders() throws Exception {
+    String text = "no placeholders";
+    assertSame(text, MessageTemplate.compile(text).render(Locale.ENGLISH, bundle("")));
+  }
+
+  @Test
+  public void cachesRenderedTemplatePerBundle() throws Exception {
+    MessageTemplate template = MessageTemplate.compile("${a}");
+    ResourceBundle en = bundle("a=1");
+    String rendered = template.render(Locale.ENGLISH, en);
+    assertSame(rendered, template.render(Locale.ENGLISH, en));
+    assertEquals("2", template.render(Locale.FRENCH, bundle("a=2")));
+    assertEquals("3", template.render(Locale.ENGLISH, bundle("a=3")));
+  }
+
+  private ResourceBundle bundle(String content) throws IOException {
+    return new PropertyResourceBundle(new ByteArrayInputStream(content.getBytes("ISO-8859-1")));
+  }
+}
@@ -0,0 +1,91 @@
+package org.geoladris.config;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PortalPropertiesTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void derivedValues() throws Exception {
+    write("languages={\"es\": \"Spanish\", \"en\": \"English\"}\n"
+        + "map.centerLonLat=1,2\nmap.initialZoomLevel=5\nclient.modules=a,b,c\n");
+    PortalProperties properties = PortalProperties.read(folder.getRoot());
+
+    Map<String, String>[] languages = properties.getLanguages();
+    assertEquals(2, languages.length);
+    assertEquals("es", languages[0].get("code"));
+    assertEquals("Spanish", languages[0].get("name"));
+    assertEquals("es", properties.getDefaultLang());
+    assertArrayEquals(new String[] {"1", "2"},
+        properties.getPropertyAsArray(Config.PROPERTY_MAP_CENTER));
+    assertArrayEquals(new String[] {"a", "b", "c"},
+        properties.getPropertyAsArray(Config.PROPERTY_CLIENT_MODULES));
+    assertEquals("5", properties.getInitialZoomLevel());
+  }
+
+  @Test
+  public void explicitDefaultLang() throws Exception {
+    write("languages={\"es\": \"Spanish\", \"en\": \"English\"}\nlanguages.default=en\n");
+    assertEquals("en", PortalProperties.read(folder.getRoot()).getDefaultLang());
+  }
+
+  @Test
+  public void fromProperties() {
+    Properties props = new Properties();
+    props.setProperty(Config.PROPERTY_INITIAL_ZOOM_LEVEL, "5");
+    PortalProperties properties = PortalProperties.of(props);
+    props.setProperty(Config.PROPERTY_INITIAL_ZOOM_LEVEL, "6");
+
+    assertEquals("5", properties.getInitialZoomLevel());
+    assertFalse(properties.isStale());
+  }
+
+  @Test
+  public void missingFile() {
+    PortalProperties properties = PortalProperties.read(folder.getRoot());
+    assertEquals(0, properties.getProperties().size());
+    assertNull(properties.getLanguages());
+    assertNull(properties.getPropertyAsArray(Config.PROPERTY_MAP_CENTER));
+    assertEquals("en", properties.getDefaultLang());
+  }
+
+  @Test
+  public void propertiesCannotBeModified() throws Exception {
+    write("a=1\n");
+    PortalProperties properties = PortalProperties.read(folder.getRoot());
+    properties.getProperties().setProperty("a", "2");
+    assertEquals("1", properties.getProperty("a"));
+  }
+
+  @Test
+  public void detectsChanges() throws Exception {
+    File file = write("a=1\n");
+    PortalProperties properties = PortalProperties.read(folder.getRoot());
+    assertFalse(properties.isStale());
+
+    write("a=12\n");
+    assertTrue(properties.isStale());
+    file.delete();
+    assertTrue(properties.isStale());
+  }
+
+  private File write(String content) throws Exception {
+    File file = new File(folder.getRoot(), PortalProperties.FILE);
+    FileUtils.write(file, content);
+    return file;
+  }
+}
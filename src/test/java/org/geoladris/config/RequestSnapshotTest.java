@@ -0,0 +1,66 @@
+package org.geoladris.config;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+import org.junit.Test;
+
+public class RequestSnapshotTest {
+  @Test
+  public void copiesRequest() {
+    HttpSession session = mock(HttpSession.class);
+    when(session.getAttributeNames())
+        .thenReturn(Collections.enumeration(Arrays.asList("role")));
+    when(session.getAttribute("role")).thenReturn("admin");
+
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getAttributeNames()).thenReturn(Collections.enumeration(Arrays.asList("a")));
+    when(request.getAttribute("a")).thenReturn("1");
+    when(request.getSession(false)).thenReturn(session);
+    when(request.getParameterMap())
+        .thenReturn(Collections.singletonMap("lang", new String[] {"es"}));
+    when(request.getHeaderNames())
+        .thenReturn(Collections.enumeration(Arrays.asList("Accept-Language")));
+    when(request.getHeaders("Accept-Language"))
+        .thenReturn(Collections.enumeration(Arrays.asList("es")));
+    when(request.getLocales()).thenReturn(Collections.enumeration(Arrays.asList(Locale.FRENCH)));
+    when(request.getRequestURI()).thenReturn("/demo/config.js");
+
+    HttpServletRequest snapshot = RequestSnapshot.snapshot(request);
+    when(request.getAttribute("a")).thenReturn("2");
+    when(session.getAttribute("role")).thenReturn(null);
+
+    assertEquals("1", snapshot.getAttribute("a"));
+    assertEquals("admin", snapshot.getSession(false).getAttribute("role"));
+    assertEquals("es", snapshot.getParameter("lang"));
+    assertEquals("es", snapshot.getHeader("accept-language"));
+    assertEquals(Locale.FRENCH, snapshot.getLocale());
+    assertEquals("/demo/config.js", snapshot.getRequestURI());
+    assertEquals(false, snapshot.isUserInRole("admin"));
+  }
+
+  @Test
+  public void createsRequestWithoutSession() {
+    Map<String, Object> attributes = new HashMap<>();
+    attributes.put("a", "1");
+    HttpServletRequest request = RequestSnapshot.create(attributes, null);
+
+    assertEquals("1", request.getAttribute("a"));
+    assertEquals("GET", request.getMethod());
+    assertNull(request.getSession(false));
+
+    request.getSession().setAttribute("role", "admin");
+    assertEquals("admin", request.getSession(false).getAttribute("role"));
+  }
+}
@@ -0,0 +1,95 @@
+package org.geoladris.config;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class SingleFlightTest {
+  private ExecutorService executor = Executors.newSingleThreadExecutor();
+
+  @After
+  public void shutdown() {
+    this.executor.shutdownNow();
+  }
+
+  @Test
+  public void concurrentCallsShareComputation() throws Exception {
+    final CountDownLatch waiting = new CountDownLatch(1);
+    final SingleFlight<String, Integer> flight = new SingleFlight<String, Integer>() {
+      @Override
+      protected void onWait(String key) {
+        waiting.countDown();
+      }
+    };
+
+    final AtomicInteger calls = new AtomicInteger();
+    final CountDownLatch started = new CountDownLatch(1);
+    final Supplier<Integer> loader = new Supplier<Integer>() {
+      @Override
+      public Integer get() {
+        started.countDown();
+        try {
+          waiting.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return calls.incrementAndGet();
+      }
+    };
+
+    Future<Integer> first = this.executor.submit(new Callable<Integer>() {
+      @Override
+      public Integer call() throws Exception {
+        return flight.execute("a", loader);
+      }
+    });
+    started.await(5, TimeUnit.SECONDS);
+    int second = flight.execute("a", loader);
+
+    assertEquals(1, first.get().intValue());
+    assertEquals(1, second);
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  public void nothingIsKeptAfterComputation() {
+    SingleFlight<String, Integer> flight = new SingleFlight<>();
+    final AtomicInteger calls = new AtomicInteger();
+    Supplier<Integer> loader = new Supplier<Integer>() {
+      @Override
+      public Integer get() {
+        return calls.incrementAndGet();
+      }
+    };
+
+    assertEquals(1, flight.execute("a", loader).intValue());
+    assertEquals(2, flight.execute("a", loader).intValue());
+  }
+
+  @Test
+  public void exceptionIsThrown() {
+    SingleFlight<String, Integer> flight = new SingleFlight<>();
+    try {
+      flight.execute("a", new Supplier<Integer>() {
+        @Override
+        public Integer get() {
+          throw new ConfigException("mock");
+        }
+      });
+      fail();
+    } catch (ConfigException e) {
+      assertEquals("mock", e.getMessage());
+    }
+  }
+}
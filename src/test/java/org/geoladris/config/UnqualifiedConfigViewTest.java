@@ -0,0 +1,70 @@
+package org.geoladris.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.geoladris.Plugin;
+import org.junit.Test;
+
+import net.sf.json.JSONObject;
+
+public class UnqualifiedConfigViewTest {
+  @Test
+  public void unqualifiesModuleNames() {
+    Plugin plugin = new Plugin("p", false);
+    plugin.setConfiguration(JSONObject.fromObject("{m1 : {a : 1}}"));
+
+    Map<String, JSONObject> view = new UnqualifiedConfigView(Arrays.asList(plugin));
+    assertEquals(1, view.size());
+    assertTrue(view.containsKey("p"));
+    assertEquals(JSONObject.fromObject("{m1 : {a : 1}}"), view.get("p"));
+    assertNull(view.get("missing"));
+  }
+
+  @Test
+  public void resolvesOnce() {
+    Plugin plugin = new Plugin("p", false);
+    plugin.setConfiguration(JSONObject.fromObject("{m1 : {a : 1}}"));
+
+    Map<String, JSONObject> view = new UnqualifiedConfigView(Arrays.asList(plugin));
+    assertSame(view.get("p"), view.get("p"));
+  }
+
+  @Test
+  public void notAffectedByLaterChanges() {
+    Plugin plugin = new Plugin("p", false);
+    plugin.setConfiguration(JSONObject.fromObject("{m1 : {a : 1}}"));
+
+    Map<String, JSONObject> view = new UnqualifiedConfigView(Arrays.asList(plugin));
+    plugin.setConfiguration(JSONObject.fromObject("{m1 : {a : 2}}"));
+
+    assertEquals(1, view.get("p").getJSONObject("m1").getInt("a"));
+  }
+
+  @Test
+  public void rootPlugins() {
+    Plugin plugin = new Plugin("p", true);
+    plugin.setConfiguration(JSONObject.fromObject("{m1 : {a : 1}}"));
+
+    Map<String, JSONObject> view = new UnqualifiedConfigView(Arrays.asList(plugin));
+    assertEquals(JSONObject.fromObject("{m1 : {a : 1}}"), view.get("p"));
+  }
+
+  @Test
+  public void readOnly() {
+    Map<String, JSONObject> view = new UnqualifiedConfigView(Arrays.<Plugin>asList());
+    try {
+      view.put("p", new JSONObject());
+      fail();
+    } catch (UnsupportedOperationException e) {
+    }
+    assertFalse(view.containsKey("p"));
+  }
+}
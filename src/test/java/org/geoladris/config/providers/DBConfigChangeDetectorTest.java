@@ -0,0 +1,126 @@
+package org.geoladris.config.providers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.function.Predicate;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.geoladris.config.ConfigImpl;
+import org.geoladris.metrics.Metrics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class DBConfigChangeDetectorTest {
+  private BasicDataSource dataSource;
+  private DBConfigProvider provider;
+  private ConfigImpl config;
+  private Metrics metrics;
+  private DBConfigChangeDetector detector;
+
+  @Before
+  public void setup() throws SQLException {
+    this.dataSource = new BasicDataSource();
+    this.dataSource.setUrl("jdbc:h2:mem:geoladris-changes;DB_CLOSE_DELAY=-1");
+    execute("CREATE TABLE " + DBConfigProvider.TABLE
+        + " (plugin VARCHAR, role VARCHAR, locale VARCHAR, conf VARCHAR, version BIGINT)");
+    execute("INSERT INTO " + DBConfigProvider.TABLE + " VALUES ('p1', NULL, NULL, '{}', 1)");
+
+    this.provider = mock(DBConfigProvider.class);
+    this.config = mock(ConfigImpl.class);
+    this.metrics = new Metrics();
+    this.detector = new DBConfigChangeDetector(this.dataSource, null, DBConfigProvider.TABLE,
+        this.provider, this.config);
+    this.detector.setMetrics(this.metrics);
+  }
+
+  @After
+  public void teardown() throws SQLException {
+    execute("DROP TABLE " + DBConfigProvider.TABLE);
+    this.dataSource.close();
+  }
+
+  @Test
+  public void firstRunDoesNotInvalidate() {
+    this.detector.run();
+    this.detector.run();
+    verify(this.config, never()).clearCachedConfigurations(any(DBConfigProvider.class),
+        any(Predicate.class));
+    assertEquals(0, this.metrics.counter(Metrics.DB_CONFIG_CHANGES).getCount());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void invalidatesChangedRoles() throws SQLException {
+    this.detector.run();
+    execute("INSERT INTO " + DBConfigProvider.TABLE + " VALUES ('p2', 'admin', NULL, '{}', 2)");
+    execute("INSERT INTO " + DBConfigProvider.TABLE + " VALUES ('p3', 'admin', 'es', '{}', 3)");
+    this.detector.run();
+
+    ArgumentCaptor<Predicate> keys = ArgumentCaptor.forClass(Predicate.class);
+    verify(this.config).clearCachedConfigurations(eq(this.provider), keys.capture());
+    keys.getValue().test("admin|es");
+    verify(this.provider).dependsOn("admin|es", new HashSet<>(Arrays.asList("admin")));
+    assertEquals(1, this.metrics.counter(Metrics.DB_CONFIG_CHANGES).getCount());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void detectsVersionsCommittedOutOfOrder() throws SQLException {
+    this.detector.run();
+    execute("INSERT INTO " + DBConfigProvider.TABLE + " VALUES ('p2', 'admin', NULL, '{}', 3)");
+    this.detector.run();
+    // Version 2 commits after version 3
+    execute("INSERT INTO " + DBConfigProvider.TABLE + " VALUES ('p3', 'user', NULL, '{}', 2)");
+    this.detector.run();
+    this.detector.run();
+
+    verify(this.config, times(2)).clearCachedConfigurations(eq(this.provider),
+        any(Predicate.class));
+    assertEquals(2, this.metrics.counter(Metrics.DB_CONFIG_CHANGES).getCount());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void missesVersionsCommittedBelowOverlap() throws SQLException {
+    this.detector.setOverlap(1);
+    this.detector.run();
+    execute("INSERT INTO " + DBConfigProvider.TABLE + " VALUES ('p2', 'admin', NULL, '{}', 4)");
+    this.detector.run();
+    execute("INSERT INTO " + DBConfigProvider.TABLE + " VALUES ('p3', 'user', NULL, '{}', 2)");
+    this.detector.run();
+
+    verify(this.config, times(1)).clearCachedConfigurations(eq(this.provider),
+        any(Predicate.class));
+  }
+
+  @Test
+  public void dependsOnRoles() {
+    DBConfigProvider provider = new DBConfigProvider(this.dataSource, null);
+    assertTrue(provider.dependsOn("admin|es", Arrays.asList("admin")));
+    assertFalse(provider.dependsOn("admin|es", Arrays.asList("user")));
+    assertFalse(provider.dependsOn("/|es", Arrays.asList("admin")));
+    assertTrue(provider.dependsOn("/|es", Arrays.asList("admin", null)));
+  }
+
+  private void execute(String sql) throws SQLException {
+    try (Connection connection = this.dataSource.getConnection();
+        Statement statement = connection.createStatement()) {
+      statement.execute(sql);
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package org.geoladris.config.providers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.geoladris.Geoladris;
+import org.geoladris.config.Config;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.sf.json.JSONObject;
+
+public class DBConfigProviderTest {
+  private BasicDataSource dataSource;
+  private DBConfigProvider provider;
+  private Config config;
+
+  @Before
+  public void setup() throws SQLException {
+    this.dataSource = new BasicDataSource();
+    this.dataSource.setUrl("jdbc:h2:mem:geoladris;DB_CLOSE_DELAY=-1");
+    execute("CREATE SCHEMA geoladris");
+    execute("CREATE TABLE geoladris." + DBConfigProvider.TABLE
+        + " (plugin VARCHAR, role VARCHAR, locale VARCHAR, conf VARCHAR)");
+    insert("p1", null, null, "{a:1}");
+    insert("p1", "admin", null, "{a:2}");
+    insert("p1", "admin", "es", "{a:3}");
+    insert("p1", null, "fr", "{a:4}");
+    insert("p2", "admin", null, "{b:true}");
+
+    this.provider = new DBConfigProvider(this.dataSource, "geoladris");
+    this.config = mock(Config.class);
+  }
+
+  @After
+  public void teardown() throws SQLException {
+    execute("DROP SCHEMA geoladris CASCADE");
+    this.dataSource.close();
+  }
+
+  @Test
+  public void mostSpecificRowPerPlugin() throws Exception {
+    assertEquals(JSONObject.fromObject("{a:1}"), get(null, "en").get("p1"));
+    assertFalse(get(null, "en").containsKey("p2"));
+    assertEquals(JSONObject.fromObject("{a:4}"), get(null, "fr").get("p1"));
+    assertEquals(JSONObject.fromObject("{a:2}"), get("admin", "en").get("p1"));
+    assertEquals(JSONObject.fromObject("{a:3}"), get("admin", "es").get("p1"));
+    assertEquals(JSONObject.fromObject("{b:true}"), get("admin", "es").get("p2"));
+  }
+
+  @Test
+  public void readsChangesWithoutInvalidation() throws Exception {
+    assertEquals(JSONObject.fromObject("{a:1}"), get(null, "en").get("p1"));
+    execute("UPDATE geoladris." + DBConfigProvider.TABLE + " SET conf = '{a:5}' "
+        + "WHERE role IS NULL AND locale IS NULL");
+    assertEquals(JSONObject.fromObject("{a:5}"), get(null, "en").get("p1"));
+  }
+
+  @Test
+  public void cacheKeyDependsOnRoleAndLocale() {
+    String noRole = this.provider.getCacheKey(this.config, mockRequest(null, "es"));
+    String admin = this.provider.getCacheKey(this.config, mockRequest("admin", "es"));
+    String adminFr = this.provider.getCacheKey(this.config, mockRequest("admin", "fr"));
+    assertFalse(noRole.equals(admin));
+    assertFalse(admin.equals(adminFr));
+    assertEquals(admin, this.provider.getCacheKey(this.config, mockRequest("admin", "es")));
+    assertFalse(this.provider.canBeCached());
+  }
+
+  @Test
+  public void databaseErrorIsIOException() throws Exception {
+    execute("DROP TABLE geoladris." + DBConfigProvider.TABLE);
+    try {
+      get(null, "en");
+      fail();
+    } catch (IOException e) {
+      assertTrue(e.getCause() instanceof SQLException);
+    }
+  }
+
+  private Map<String, JSONObject> get(String role, String locale) throws IOException {
+    return this.provider.getPluginConfig(this.config, new HashMap<String, JSONObject>(),
+        mockRequest(role, locale));
+  }
+
+  private HttpServletRequest mockRequest(String role, String locale) {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getAttribute(Geoladris.ATTR_LOCALE)).thenReturn(new Locale(locale));
+    if (role != null) {
+      HttpSession session = mock(HttpSession.class);
+      when(session.getAttribute(Geoladris.ATTR_ROLE)).thenReturn(role);
+      when(request.getSession(false)).thenReturn(session);
+    }
+    return request;
+  }
+
+  private void insert(String plugin, String role, String locale, String conf)
+      throws SQLException {
+    execute("INSERT INTO geoladris." + DBConfigProvider.TABLE + " VALUES (" + quote(plugin) + ", "
+        + quote(role) + ", " + quote(locale) + ", " + quote(conf) + ")");
+  }
+
+  private static String quote(String value) {
+    return value != null ? "'" + value + "'" : "NULL";
+  }
+
+  private void execute(String sql) throws SQLException {
+    try (Connection connection = this.dataSource.getConnection();
+        Statement statement = connection.createStatement()) {
+      statement.execute(sql);
+    }
+  }
+}
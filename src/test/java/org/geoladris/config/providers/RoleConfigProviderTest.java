@@ -2,6 +2,7 @@ package org.geoladris.config.providers;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
@@ -93,11 +94,20 @@ public class RoleConfigProviderTest {
     assertFalse(this.provider.canBeCached());
   }
 
+  @Test
+  public void roleIsCacheKey() {
+    assertEquals("role1", provider.getCacheKey(config, mockRequest("role1")));
+    String noRole = provider.getCacheKey(config, mockRequest(null));
+    assertNotNull(noRole);
+    assertFalse(noRole.equals(provider.getCacheKey(config, mockRequest("role1"))));
+  }
+
   private HttpServletRequest mockRequest(String role) {
     HttpServletRequest request = mock(HttpServletRequest.class);
 
     HttpSession session = mock(HttpSession.class);
     when(request.getSession()).thenReturn(session);
+    when(request.getSession(false)).thenReturn(session);
     when(session.getAttribute(Geoladris.ATTR_ROLE)).thenReturn(role);
 
     return request;
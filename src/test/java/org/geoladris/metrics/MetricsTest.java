@@ -0,0 +1,110 @@
+package org.geoladris.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+public class MetricsTest {
+  @Test
+  public void sameNameAndLabelsSameMetric() {
+    Metrics metrics = new Metrics();
+    Counter counter = metrics.counter("requests", "path", "/config.js");
+    counter.inc();
+    counter.add(2);
+
+    assertSame(counter, metrics.counter("requests", "path", "/config.js"));
+    assertEquals(3, metrics.counter("requests", "path", "/config.js").getCount());
+    assertEquals(0, metrics.counter("requests", "path", "/setlang").getCount());
+    assertEquals(0, metrics.counter("requests").getCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void labelsArePairs() {
+    new Metrics().counter("requests", "path");
+  }
+
+  @Test
+  public void metricsSortedByNameAndLabels() {
+    Metrics metrics = new Metrics();
+    metrics.gauge("b");
+    metrics.counter("a", "l", "2");
+    metrics.counter("a", "l", "1");
+
+    Iterator<Metric> iterator = metrics.getMetrics().iterator();
+    assertEquals("1", iterator.next().getLabels().get("l"));
+    assertEquals("2", iterator.next().getLabels().get("l"));
+    assertEquals("b", iterator.next().getName());
+    assertFalse(iterator.hasNext());
+  }
+
+  @Test
+  public void histogramBuckets() {
+    Histogram histogram = new Metrics().histogram("duration");
+    long[] bounds = histogram.getBucketBounds();
+    histogram.record(bounds[0]);
+    histogram.record(bounds[0] + 1);
+    histogram.record(TimeUnit.SECONDS.toNanos(60));
+
+    long[] counts = histogram.getBucketCounts();
+    assertEquals(bounds.length + 1, counts.length);
+    assertEquals(1, counts[0]);
+    assertEquals(2, counts[1]);
+    assertEquals(2, counts[bounds.length - 1]);
+    assertEquals(3, counts[bounds.length]);
+    assertEquals(3, histogram.getCount());
+    assertEquals(2 * bounds[0] + 1 + TimeUnit.SECONDS.toNanos(60), histogram.getSum());
+    assertEquals(60000, histogram.getMaxMillis(), 0);
+  }
+
+  @Test
+  public void supplierGaugeReadsCurrentValue() {
+    final AtomicLong value = new AtomicLong(3);
+    Metrics metrics = new Metrics();
+    Gauge gauge = metrics.gauge("pool", new LongSupplier() {
+      @Override
+      public long getAsLong() {
+        return value.get();
+      }
+    });
+    assertEquals(3, gauge.getValue());
+    value.set(5);
+    gauge.set(1);
+    assertEquals(5, gauge.getValue());
+    assertSame(gauge, metrics.gauge("pool"));
+  }
+
+  @Test
+  public void registersAndUnregistersMBeans() throws Exception {
+    MBeanServer server = MBeanServerFactory.newMBeanServer();
+    Metrics metrics = new Metrics();
+    metrics.counter("requests").inc();
+    metrics.registerMBeans(server, "/geoladris");
+    metrics.histogram("duration", "provider", "a.b.C").record(1000000);
+
+    ObjectName counter =
+        new ObjectName("org.geoladris:type=Counter,context=/geoladris,name=requests");
+    ObjectName histogram = new ObjectName(
+        "org.geoladris:type=Histogram,context=/geoladris,name=duration,provider=a.b.C");
+    assertEquals(1L, server.getAttribute(counter, "Count"));
+    assertEquals(1.0, (Double) server.getAttribute(histogram, "MeanMillis"), 0);
+    long[] counts = (long[]) server.getAttribute(histogram, "BucketCounts");
+    assertEquals(1, counts[counts.length - 1]);
+
+    metrics.unregisterMBeans();
+    assertFalse(server.isRegistered(counter));
+    assertFalse(server.isRegistered(histogram));
+    assertTrue(server.queryNames(new ObjectName("org.geoladris:*"), null).isEmpty());
+  }
+}
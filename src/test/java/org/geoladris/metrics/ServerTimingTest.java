@@ -0,0 +1,30 @@
+package org.geoladris.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.TimeUnit;
+
+import org.geoladris.TestingServletContext;
+import org.junit.Test;
+
+public class ServerTimingTest {
+  @Test
+  public void storedInRequest() throws Exception {
+    TestingServletContext context = new TestingServletContext();
+    assertNull(ServerTiming.get(context.request));
+    assertNull(ServerTiming.get(null));
+
+    ServerTiming timing = ServerTiming.start(context.request);
+    assertSame(timing, ServerTiming.get(context.request));
+  }
+
+  @Test
+  public void header() {
+    ServerTiming timing = new ServerTiming();
+    timing.add("i18n", null, TimeUnit.MICROSECONDS.toNanos(1500));
+    timing.add("provider", "a.B \"c\"", TimeUnit.MILLISECONDS.toNanos(12));
+    assertEquals("i18n;dur=1.500, provider;desc=\"a.B \\\"c\\\"\";dur=12.000", timing.getHeader());
+  }
+}
@@ -1,11 +1,15 @@
 package org.geoladris.servlet;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
@@ -13,12 +17,14 @@ import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
 
+import org.apache.commons.dbcp2.BasicDataSource;
 import org.geoladris.Environment;
 import org.geoladris.Geoladris;
 import org.geoladris.Plugin;
 import org.geoladris.PluginDirsAnalyzer;
 import org.geoladris.TestingServletContext;
 import org.geoladris.config.Config;
+import org.geoladris.metrics.Metrics;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -100,6 +106,51 @@ public class AppContextListenerTest {
     assertEquals(defaultConfig, config.getDir());
   }
 
+  @Test
+  public void sharedDataSource() throws Exception {
+    System.setProperty(Environment.JDBC_URL, "jdbc:h2:mem:geoladris-listener");
+    try {
+      init("/");
+    } finally {
+      System.clearProperty(Environment.JDBC_URL);
+    }
+
+    BasicDataSource dataSource =
+        (BasicDataSource) context.servletContext.getAttribute(Geoladris.ATTR_DATA_SOURCE);
+    assertTrue(dataSource.isPoolPreparedStatements());
+    Metrics metrics = (Metrics) context.servletContext.getAttribute(Geoladris.ATTR_METRICS);
+    assertEquals(dataSource.getMaxTotal(), metrics.gauge(Metrics.DB_POOL_MAX).getValue());
+
+    listener.contextDestroyed(context.event);
+    assertTrue(dataSource.isClosed());
+    verify(context.servletContext).removeAttribute(Geoladris.ATTR_DATA_SOURCE);
+  }
+
+  @Test
+  public void noDataSourceWithoutUrl() throws Exception {
+    init("/");
+    assertNull(context.servletContext.getAttribute(Geoladris.ATTR_DATA_SOURCE));
+  }
+
+  @Test
+  public void noWarmUpWithoutCache() throws Exception {
+    when(context.servletContext.getInitParameter(Environment.WARM_UP)).thenReturn("true");
+    init("/");
+    assertNull(context.servletContext.getAttribute(Geoladris.ATTR_WARM_UP));
+  }
+
+  @Test
+  public void warmUpWithCache() throws Exception {
+    when(context.servletContext.getInitParameter(Environment.WARM_UP)).thenReturn("true");
+    System.setProperty(Environment.CONFIG_CACHE, "true");
+    try {
+      init("/");
+    } finally {
+      System.clearProperty(Environment.CONFIG_CACHE);
+    }
+    assertNotNull(context.servletContext.getAttribute(Geoladris.ATTR_WARM_UP));
+  }
+
   private Config init(String path) throws Exception {
     when(context.request.getRequestURI()).thenReturn("/" + path);
     listener.contextInitialized(context.event);
@@ -6,6 +6,7 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.ByteArrayInputStream;
@@ -23,12 +24,15 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.geoladris.Environment;
 import org.geoladris.Geoladris;
 import org.geoladris.Plugin;
 import org.geoladris.TestingServletContext;
 import org.geoladris.config.Config;
+import org.geoladris.metrics.ServerTiming;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
@@ -65,6 +69,7 @@ public class ConfigServletTest {
     portalProperties.put("map.initialZoomLevel", "5");
     portalProperties.put("moreproperties", "should not appear");
     when(config.getProperties()).thenReturn(portalProperties);
+    when(config.getInitialZoomLevel()).thenReturn("5");
     List<Map<String, String>> languages = new ArrayList<Map<String, String>>();
     HashMap<String, String> spanish = new HashMap<String, String>();
     spanish.put("code", "es");
@@ -86,7 +91,7 @@ public class ConfigServletTest {
     assertTrue(response.contains("languageCode"));
     assertTrue(response.contains("title"));
     assertTrue(response.contains(Config.PROPERTY_MAP_CENTER));
-    assertTrue(response.contains("map.initialZoomLevel"));
+    assertTrue(response.contains(Config.PROPERTY_INITIAL_ZOOM_LEVEL));
     assertTrue(response.contains("modules"));
     assertFalse(response.contains("moreproperties"));
   }
@@ -147,6 +152,60 @@ public class ConfigServletTest {
     assertEquals(9, module3.get(2));
   }
 
+  @Test
+  public void splicesSerializedMessages() throws Exception {
+    mockEmptyConfig();
+    when(config.getMessagesJSON(Locale.ROOT)).thenReturn("{\"title\":\"My title\"}");
+    request.getSession().setAttribute(Geoladris.ATTR_LOCALE, Locale.ROOT);
+    when(config.getPluginConfig(Locale.ROOT, request)).thenReturn(new Plugin[0]);
+
+    servlet.doGet(request, response);
+
+    String content = context.getResponse();
+    JSONObject json = JSONObject.fromObject(content.substring(content.indexOf('{')));
+    JSONObject cfg = json.getJSONObject("config");
+    assertEquals("My title", cfg.getJSONObject("i18n").getString("title"));
+    assertTrue(cfg.has("customization"));
+    assertTrue(json.has("paths"));
+    assertTrue(json.has("shim"));
+  }
+
+  @Test
+  public void splicesPluginConfigurationsAsUTF8() throws Exception {
+    Plugin plugin1 = new Plugin("plugin1",
+        JSONObject.fromObject("{default-conf:{module1 : {title : 'Espa\u00f1ol'}}}"));
+    Plugin plugin2 = new Plugin("plugin2", JSONObject.fromObject("{}"));
+
+    mockEmptyConfig();
+    request.getSession().setAttribute(Geoladris.ATTR_LOCALE, Locale.ROOT);
+    when(config.getPluginConfig(Locale.ROOT, request))
+        .thenReturn(new Plugin[] {plugin1, plugin2});
+
+    servlet.doGet(request, response);
+
+    String content = context.getResponse();
+    JSONObject json = JSONObject.fromObject(content.substring(content.indexOf('{')));
+    JSONObject cfg = json.getJSONObject("config");
+    assertEquals("Espa\u00f1ol", cfg.getJSONObject("plugin1/module1").getString("title"));
+    assertTrue(cfg.has("customization"));
+  }
+
+  @Test
+  public void serverTimingHeader() throws Exception {
+    when(context.servletContext.getInitParameter(Environment.SERVER_TIMING)).thenReturn("true");
+    servlet.init(context.servletConfig);
+    mockEmptyConfig();
+    request.getSession().setAttribute(Geoladris.ATTR_LOCALE, Locale.ROOT);
+    when(config.getPluginConfig(Locale.ROOT, request)).thenReturn(new Plugin[0]);
+
+    servlet.doGet(request, response);
+
+    ArgumentCaptor<String> header = ArgumentCaptor.forClass(String.class);
+    verify(response).setHeader(eq(ServerTiming.HEADER), header.capture());
+    assertTrue(header.getValue().matches("i18n;dur=[0-9.]+, serialize;dur=[0-9.]+"));
+    assertTrue(context.getResponse().startsWith("var require = "));
+  }
+
   private void mockEmptyConfig() {
     ResourceBundle bundle = ResourceBundle.getBundle("messages");
     when(this.config.getMessages(any(Locale.class))).thenReturn(bundle);
@@ -0,0 +1,152 @@
+package org.geoladris.servlet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GzipFilterTest {
+  private static final String PATH = "/plugins/p/src/module.js";
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private GzipFilter filter;
+  private ServletContext context;
+  private HttpServletRequest request;
+  private HttpServletResponse response;
+  private FilterChain chain;
+  private ByteArrayOutputStream out;
+  private File file;
+
+  @Before
+  public void setup() throws Exception {
+    this.file = new File(tmp.getRoot(), "module.js");
+    FileUtils.write(this.file, "var a = 42;");
+
+    this.context = mock(ServletContext.class);
+    when(this.context.getRealPath(PATH)).thenReturn(this.file.getAbsolutePath());
+    when(this.context.getMimeType(PATH)).thenReturn("application/javascript");
+
+    FilterConfig filterConfig = mock(FilterConfig.class);
+    when(filterConfig.getServletContext()).thenReturn(this.context);
+    this.filter = new GzipFilter();
+    this.filter.init(filterConfig);
+
+    this.request = mock(HttpServletRequest.class);
+    when(this.request.getMethod()).thenReturn("GET");
+    when(this.request.getServletPath()).thenReturn(PATH);
+    when(this.request.getDateHeader("If-Modified-Since")).thenReturn(-1L);
+
+    this.out = new ByteArrayOutputStream();
+    this.response = mock(HttpServletResponse.class);
+    when(this.response.getOutputStream()).thenReturn(new ServletOutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        out.write(b);
+      }
+
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setWriteListener(WriteListener arg0) {}
+    });
+    this.chain = mock(FilterChain.class);
+  }
+
+  @Test
+  public void servesSidecar() throws Exception {
+    File gz = createSidecar(this.file.lastModified() + 1000);
+    when(this.request.getHeader("Accept-Encoding")).thenReturn("deflate, gzip");
+
+    this.filter.doFilter(this.request, this.response, this.chain);
+
+    verify(this.chain, never()).doFilter(this.request, this.response);
+    verify(this.response).setHeader("Content-Encoding", "gzip");
+    verify(this.response).setContentType("application/javascript");
+    assertArrayEquals(FileUtils.readFileToByteArray(gz), this.out.toByteArray());
+  }
+
+  @Test
+  public void clientDoesNotAcceptGzip() throws Exception {
+    createSidecar(this.file.lastModified() + 1000);
+    when(this.request.getHeader("Accept-Encoding")).thenReturn("deflate");
+
+    this.filter.doFilter(this.request, this.response, this.chain);
+
+    verify(this.chain).doFilter(this.request, this.response);
+    verify(this.response).setHeader("Vary", "Accept-Encoding");
+  }
+
+  @Test
+  public void outdatedSidecar() throws Exception {
+    createSidecar(this.file.lastModified() - 1000);
+    when(this.request.getHeader("Accept-Encoding")).thenReturn("gzip");
+
+    this.filter.doFilter(this.request, this.response, this.chain);
+
+    verify(this.chain).doFilter(this.request, this.response);
+  }
+
+  @Test
+  public void missingSidecar() throws Exception {
+    when(this.request.getHeader("Accept-Encoding")).thenReturn("gzip");
+
+    this.filter.doFilter(this.request, this.response, this.chain);
+
+    verify(this.chain).doFilter(this.request, this.response);
+  }
+
+  @Test
+  public void notModified() throws Exception {
+    createSidecar(this.file.lastModified() + 1000);
+    when(this.request.getHeader("Accept-Encoding")).thenReturn("gzip");
+    when(this.request.getDateHeader("If-Modified-Since")).thenReturn(this.file.lastModified());
+
+    this.filter.doFilter(this.request, this.response, this.chain);
+
+    verify(this.chain, never()).doFilter(this.request, this.response);
+    verify(this.response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+  }
+
+  @Test
+  public void acceptsGzip() {
+    assertTrue(GzipFilter.acceptsGzip("gzip"));
+    assertTrue(GzipFilter.acceptsGzip("deflate, gzip;q=0.5"));
+    assertTrue(GzipFilter.acceptsGzip("*"));
+    assertFalse(GzipFilter.acceptsGzip(null));
+    assertFalse(GzipFilter.acceptsGzip("deflate"));
+    assertFalse(GzipFilter.acceptsGzip("gzip;q=0"));
+  }
+
+  private File createSidecar(long lastModified) throws IOException {
+    File gz = new File(this.file.getPath() + ".gz");
+    FileUtils.writeByteArrayToFile(gz, new byte[] {1, 2, 3});
+    gz.setLastModified(lastModified);
+    return gz;
+  }
+}
@@ -0,0 +1,197 @@
+package org.geoladris.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.Cookie;
+
+import org.geoladris.Environment;
+import org.geoladris.Geoladris;
+import org.geoladris.TestingServletContext;
+import org.apache.commons.io.FileUtils;
+import org.geoladris.config.Config;
+import org.geoladris.config.PortalProperties;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+public class LangFilterTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private TestingServletContext context;
+  private Config config;
+  private FilterChain chain;
+  private LangFilter filter;
+
+  @Before
+  public void setup() throws Exception {
+    this.context = new TestingServletContext();
+    this.config = mock(Config.class);
+    mockProperties("languages.default=es\n");
+    this.context.servletContext.setAttribute(Geoladris.ATTR_CONFIG, this.config);
+    this.chain = mock(FilterChain.class);
+    this.filter = new LangFilter();
+  }
+
+  @Test
+  public void storesDefaultLocaleInSession() throws Exception {
+    this.filter.init(this.context.filterConfig);
+    this.filter.doFilter(this.context.request, this.context.response, this.chain);
+
+    assertEquals(new Locale("es"), this.context.session.getAttribute(Geoladris.ATTR_LOCALE));
+    assertEquals(new Locale("es"), LangFilter.getLocale(this.context.request));
+    verify(this.chain).doFilter(this.context.request, this.context.response);
+  }
+
+  @Test
+  public void setsLangInSession() throws Exception {
+    when(this.context.request.getServletPath()).thenReturn(LangFilter.PATH_SETLANG);
+    when(this.context.request.getQueryString()).thenReturn("fr");
+
+    this.filter.init(this.context.filterConfig);
+    this.filter.doFilter(this.context.request, this.context.response, this.chain);
+
+    assertEquals(new Locale("fr"), this.context.session.getAttribute(Geoladris.ATTR_LOCALE));
+    verify(this.context.response).sendRedirect(any(String.class));
+  }
+
+  @Test
+  public void sessionlessDefaultLocale() throws Exception {
+    enableSessionless();
+    this.filter.doFilter(this.context.request, this.context.response, this.chain);
+
+    assertEquals(new Locale("es"), LangFilter.getLocale(this.context.request));
+    verifyNoSession();
+  }
+
+  @Test
+  public void sessionlessLocaleFromCookie() throws Exception {
+    enableSessionless();
+    when(this.context.request.getCookies())
+        .thenReturn(new Cookie[] {new Cookie(LangFilter.COOKIE_LANG, "fr")});
+    this.filter.doFilter(this.context.request, this.context.response, this.chain);
+
+    assertEquals(new Locale("fr"), LangFilter.getLocale(this.context.request));
+    verifyNoSession();
+  }
+
+  @Test
+  public void sessionlessParameterOverridesCookie() throws Exception {
+    enableSessionless();
+    when(this.context.request.getCookies())
+        .thenReturn(new Cookie[] {new Cookie(LangFilter.COOKIE_LANG, "fr")});
+    when(this.context.request.getQueryString()).thenReturn("a=1&lang=en");
+    this.filter.doFilter(this.context.request, this.context.response, this.chain);
+
+    assertEquals(new Locale("en"), LangFilter.getLocale(this.context.request));
+    verifyNoSession();
+    // Form posts must keep their body for the application
+    verify(this.context.request, never()).getParameter(anyString());
+  }
+
+  @Test
+  public void sessionlessIgnoresInvalidLang() throws Exception {
+    enableSessionless();
+    when(this.context.request.getQueryString()).thenReturn("lang=%3Cscript%3E");
+    this.filter.doFilter(this.context.request, this.context.response, this.chain);
+
+    assertEquals(new Locale("es"), LangFilter.getLocale(this.context.request));
+  }
+
+  @Test
+  public void sessionlessSetLangSetsCookie() throws Exception {
+    enableSessionless();
+    when(this.context.request.getServletPath()).thenReturn(LangFilter.PATH_SETLANG);
+    when(this.context.request.getQueryString()).thenReturn("fr");
+    this.filter.doFilter(this.context.request, this.context.response, this.chain);
+
+    ArgumentCaptor<Cookie> cookie = ArgumentCaptor.forClass(Cookie.class);
+    verify(this.context.response).addCookie(cookie.capture());
+    assertEquals(LangFilter.COOKIE_LANG, cookie.getValue().getName());
+    assertEquals("fr", cookie.getValue().getValue());
+    verify(this.context.response).sendRedirect(any(String.class));
+    verifyNoSession();
+  }
+
+  @Test
+  public void negotiatesAcceptLanguage() throws Exception {
+    mockLanguages("es", "fr");
+    enableSessionless();
+    when(this.context.request.getHeader("Accept-Language")).thenReturn("fr-FR, en;q=0.5");
+    this.filter.doFilter(this.context.request, this.context.response, this.chain);
+
+    assertEquals(new Locale("fr"), LangFilter.getLocale(this.context.request));
+  }
+
+  @Test
+  public void sessionStartsWithDefaultLanguage() throws Exception {
+    mockLanguages("es", "fr");
+    when(this.context.request.getHeader("Accept-Language")).thenReturn("fr-FR, en;q=0.5");
+
+    this.filter.init(this.context.filterConfig);
+    this.filter.doFilter(this.context.request, this.context.response, this.chain);
+
+    assertEquals(new Locale("es"), this.context.session.getAttribute(Geoladris.ATTR_LOCALE));
+  }
+
+  @Test
+  public void ignoresNonConfiguredLanguages() throws Exception {
+    mockLanguages("es", "fr");
+    enableSessionless();
+    when(this.context.request.getQueryString()).thenReturn("lang=de");
+    when(this.context.request.getHeader("Accept-Language")).thenReturn("de");
+    this.filter.doFilter(this.context.request, this.context.response, this.chain);
+
+    assertEquals(new Locale("es"), LangFilter.getLocale(this.context.request));
+  }
+
+  @Test
+  public void getLocaleOfUnfilteredRequestDoesNotCreateSession() {
+    assertNull(LangFilter.getLocale(this.context.request));
+    verify(this.context.request, never()).getSession();
+
+    when(this.context.request.getSession(false)).thenReturn(this.context.session);
+    this.context.session.setAttribute(Geoladris.ATTR_LOCALE, new Locale("fr"));
+    assertEquals(new Locale("fr"), LangFilter.getLocale(this.context.request));
+  }
+
+  private void mockLanguages(String... codes) throws IOException {
+    StringBuilder languages = new StringBuilder();
+    for (String code : codes) {
+      languages.append(languages.length() > 0 ? "," : "").append('"').append(code).append("\":\"")
+          .append(code).append('"');
+    }
+    mockProperties("languages={" + languages + "}\nlanguages.default=es\n");
+  }
+
+  private void mockProperties(String content) throws IOException {
+    FileUtils.write(new File(this.folder.getRoot(), PortalProperties.FILE), content);
+    when(this.config.getPortalProperties()).thenReturn(PortalProperties.read(folder.getRoot()));
+  }
+
+  private void enableSessionless() throws Exception {
+    when(this.context.servletContext.getInitParameter(Environment.SESSIONLESS_LANG))
+        .thenReturn("true");
+    this.filter.init(this.context.filterConfig);
+  }
+
+  private void verifyNoSession() {
+    verify(this.context.request, never()).getSession();
+    verify(this.context.request, never()).getSession(anyBoolean());
+  }
+}
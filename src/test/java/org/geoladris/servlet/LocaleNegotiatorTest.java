@@ -0,0 +1,89 @@
+package org.geoladris.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+import org.apache.commons.io.FileUtils;
+import org.geoladris.config.Config;
+import org.geoladris.config.PortalProperties;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LocaleNegotiatorTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Config config;
+  private LocaleNegotiator negotiator;
+
+  @Before
+  public void setup() throws IOException {
+    this.config = mock(Config.class);
+    mockLanguages("es", "fr", "pt_BR");
+    this.negotiator = new LocaleNegotiator(this.config);
+  }
+
+  @Test
+  public void negotiatesConfiguredLanguages() {
+    assertEquals(new Locale("fr"), this.negotiator.negotiate("fr-CH, fr;q=0.9, en;q=0.8"));
+    assertEquals(new Locale("fr"), this.negotiator.negotiate("de;q=0.9, fr;q=0.5"));
+    assertEquals(new Locale("pt_BR"), this.negotiator.negotiate("pt-BR"));
+  }
+
+  @Test
+  public void defaultIfNoneMatches() {
+    assertEquals(new Locale("es"), this.negotiator.negotiate("de, en;q=0.5"));
+    assertEquals(new Locale("es"), this.negotiator.negotiate(null));
+    assertEquals(new Locale("es"), this.negotiator.negotiate("invalid;q=x"));
+  }
+
+  @Test
+  public void memoizesPerHeader() {
+    Locale locale = this.negotiator.negotiate("fr");
+    assertSame(locale, this.negotiator.negotiate("fr"));
+  }
+
+  @Test
+  public void updatesWhenLanguagesChange() throws IOException {
+    assertEquals(new Locale("es"), this.negotiator.negotiate("en"));
+    mockLanguages("es", "en");
+    assertEquals(new Locale("en"), this.negotiator.negotiate("en"));
+  }
+
+  @Test
+  public void onlyConfiguredLanguages() {
+    assertEquals(new Locale("fr"), this.negotiator.get("fr"));
+    assertEquals(new Locale("pt_BR"), this.negotiator.get("pt-br"));
+    assertNull(this.negotiator.get("de"));
+  }
+
+  @Test
+  public void anyLanguageIfNoneConfigured() throws IOException {
+    mockProperties("languages.default=es\n");
+    assertEquals(new Locale("de"), this.negotiator.get("de"));
+    assertEquals(new Locale("es"), this.negotiator.negotiate("de"));
+  }
+
+  private void mockLanguages(String... codes) throws IOException {
+    StringBuilder languages = new StringBuilder();
+    for (String code : codes) {
+      languages.append(languages.length() > 0 ? "," : "").append('"').append(code).append("\":\"")
+          .append(code).append('"');
+    }
+    mockProperties("languages={" + languages + "}\nlanguages.default=es\n");
+  }
+
+  private void mockProperties(String content) throws IOException {
+    FileUtils.write(new File(this.folder.getRoot(), PortalProperties.FILE), content);
+    when(this.config.getPortalProperties()).thenReturn(PortalProperties.read(folder.getRoot()));
+  }
+}
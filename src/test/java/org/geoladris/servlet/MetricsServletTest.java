@@ -0,0 +1,66 @@
+package org.geoladris.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.geoladris.Environment;
+import org.geoladris.Geoladris;
+import org.geoladris.TestingServletContext;
+import org.geoladris.metrics.Metrics;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricsServletTest {
+  private TestingServletContext context;
+  private Metrics metrics;
+  private MetricsServlet servlet;
+
+  @Before
+  public void setup() throws Exception {
+    this.context = new TestingServletContext();
+    this.metrics = new Metrics();
+    this.context.servletContext.setAttribute(Geoladris.ATTR_METRICS, this.metrics);
+    this.servlet = new MetricsServlet();
+  }
+
+  @Test
+  public void disabledByDefault() throws Exception {
+    this.servlet.init(this.context.servletConfig);
+    this.servlet.doGet(this.context.request, this.context.response);
+    verify(this.context.response).sendError(HttpServletResponse.SC_NOT_FOUND);
+  }
+
+  @Test
+  public void prometheusFormat() throws Exception {
+    when(this.context.servletContext.getInitParameter(Environment.METRICS)).thenReturn("true");
+    this.metrics.counter(Metrics.REDIRECT_REQUESTS, Metrics.LABEL_RESULT, "hit").add(3);
+    this.metrics.counter(Metrics.REDIRECT_REQUESTS, Metrics.LABEL_RESULT, "miss").inc();
+    this.metrics.gauge(Metrics.PLUGINS).set(5);
+    this.metrics.histogram(Metrics.PROVIDER_DURATION, Metrics.LABEL_PROVIDER, "a\"b")
+        .record(TimeUnit.MILLISECONDS.toNanos(2));
+
+    this.servlet.init(this.context.servletConfig);
+    this.servlet.doGet(this.context.request, this.context.response);
+
+    String output = this.context.getResponse();
+    assertTrue(output.contains("# TYPE geoladris_plugins gauge\ngeoladris_plugins 5\n"));
+    assertTrue(output.contains("# TYPE geoladris_redirect_requests_total counter\n"
+        + "geoladris_redirect_requests_total{result=\"hit\"} 3\n"
+        + "geoladris_redirect_requests_total{result=\"miss\"} 1\n"));
+    String histogram = "geoladris_provider_duration_seconds";
+    String labels = "provider=\"a\\\"b\"";
+    assertTrue(output.contains("# TYPE " + histogram + " histogram\n"));
+    assertTrue(output.contains(histogram + "_bucket{" + labels + ",le=\"0.001\"} 0\n"));
+    assertTrue(output.contains(histogram + "_bucket{" + labels + ",le=\"0.0025\"} 1\n"));
+    assertTrue(output.contains(histogram + "_bucket{" + labels + ",le=\"+Inf\"} 1\n"));
+    assertTrue(output.contains(histogram + "_sum{" + labels + "} 0.002\n"));
+    assertTrue(output.contains(histogram + "_count{" + labels + "} 1\n"));
+    assertEquals(1, output.split("# TYPE geoladris_redirect_requests_total").length - 1);
+  }
+}
@@ -0,0 +1,52 @@
+package org.geoladris.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.geoladris.ConfigWarmUp;
+import org.geoladris.Geoladris;
+import org.geoladris.TestingServletContext;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReadyServletTest {
+  private TestingServletContext context;
+  private ReadyServlet servlet;
+
+  @Before
+  public void setup() throws Exception {
+    this.context = new TestingServletContext();
+    this.servlet = new ReadyServlet();
+    this.servlet.init(this.context.servletConfig);
+  }
+
+  @Test
+  public void readyWithoutWarmUp() throws Exception {
+    this.servlet.doGet(this.context.request, this.context.response);
+    verify(this.context.response).setStatus(HttpServletResponse.SC_OK);
+    assertEquals("ready", this.context.getResponse());
+  }
+
+  @Test
+  public void notReadyWhileWarmingUp() throws Exception {
+    ConfigWarmUp warmUp = mock(ConfigWarmUp.class);
+    this.context.servletContext.setAttribute(Geoladris.ATTR_WARM_UP, warmUp);
+
+    this.servlet.doGet(this.context.request, this.context.response);
+    verify(this.context.response).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+  }
+
+  @Test
+  public void readyAfterWarmUp() throws Exception {
+    ConfigWarmUp warmUp = mock(ConfigWarmUp.class);
+    when(warmUp.isReady()).thenReturn(true);
+    this.context.servletContext.setAttribute(Geoladris.ATTR_WARM_UP, warmUp);
+
+    this.servlet.doGet(this.context.request, this.context.response);
+    verify(this.context.response).setStatus(HttpServletResponse.SC_OK);
+  }
+}
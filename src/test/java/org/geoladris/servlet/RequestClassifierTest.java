@@ -0,0 +1,122 @@
+package org.geoladris.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.servlet.FilterChain;
+
+import org.geoladris.Geoladris;
+import org.geoladris.Plugin;
+import org.geoladris.PluginDirsAnalyzer;
+import org.geoladris.TestingServletContext;
+import org.geoladris.servlet.RequestClassifier.Type;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RequestClassifierTest {
+  private TestingServletContext context;
+  private PluginDirsAnalyzer analyzer;
+  private RequestClassifier classifier;
+
+  @Before
+  public void setup() throws Exception {
+    this.context = new TestingServletContext();
+    this.analyzer = mock(PluginDirsAnalyzer.class);
+    mockPlugins("myplugin");
+    this.classifier = new RequestClassifier(this.analyzer);
+  }
+
+  @Test
+  public void fixedPaths() {
+    assertEquals(Type.CONFIG, this.classifier.classify("/config.js"));
+    assertEquals(Type.SETLANG, this.classifier.classify("/setlang"));
+    assertEquals(Type.STATIC, this.classifier.classify("/metrics"));
+    assertEquals(Type.STATIC, this.classifier.classify("/ready"));
+  }
+
+  @Test
+  public void staticDirs() {
+    assertEquals(Type.STATIC, this.classifier.classify("/static/logo.png"));
+    assertEquals(Type.STATIC, this.classifier.classify("/geoladris/myplugin/src/m.js"));
+    assertEquals(Type.STATIC, this.classifier.classify("/plugins/myplugin/src/m.js"));
+  }
+
+  @Test
+  public void otherWarDirsAreNotStatic() {
+    // They may have pages, which need a locale and error handling
+    assertEquals(Type.PLUGIN, this.classifier.classify("/img/logo.png"));
+    assertEquals(Type.PLUGIN, this.classifier.classify("/admin/index.jsp"));
+  }
+
+  @Test
+  public void pluginPaths() {
+    assertEquals(Type.PLUGIN, this.classifier.classify("/myplugin/m.js"));
+    assertEquals(Type.PLUGIN, this.classifier.classify("/css/myplugin/style.css"));
+    assertEquals(Type.PLUGIN, this.classifier.classify("/jslib/lib.js"));
+    assertEquals(Type.PLUGIN, this.classifier.classify("/module.js"));
+    // WEB-INF is never static
+    assertEquals(Type.PLUGIN, this.classifier.classify("/WEB-INF/m.js"));
+  }
+
+  @Test
+  public void otherPaths() {
+    assertEquals(Type.OTHER, this.classifier.classify("/"));
+    assertEquals(Type.OTHER, this.classifier.classify("/index.html"));
+  }
+
+  @Test
+  public void updatesPluginNames() {
+    // Plugin names take precedence over static dirs
+    mockPlugins("myplugin", "static");
+    assertEquals(Type.PLUGIN, this.classifier.classify("/static/m.js"));
+    mockPlugins("myplugin");
+    assertEquals(Type.STATIC, this.classifier.classify("/static/m.js"));
+  }
+
+  @Test
+  public void storesTypeInRequest() {
+    this.context.servletContext.setAttribute(Geoladris.ATTR_REQUEST_CLASSIFIER, this.classifier);
+    this.context.setContextPath("/app");
+    when(this.context.request.getRequestURI()).thenReturn("/app/static/logo.png");
+
+    assertEquals(Type.STATIC,
+        RequestClassifier.getType(this.context.request, this.context.servletContext));
+    assertEquals(Type.STATIC, this.context.request.getAttribute(Geoladris.ATTR_REQUEST_TYPE));
+  }
+
+  @Test
+  public void noTypeWithoutClassifier() {
+    assertNull(RequestClassifier.getType(this.context.request, this.context.servletContext));
+  }
+
+  @Test
+  public void redirectFilterSkipsStatic() throws Exception {
+    this.context.servletContext.setAttribute(Geoladris.ATTR_REQUEST_CLASSIFIER, this.classifier);
+    this.context.setContextPath("");
+    when(this.context.request.getRequestURI()).thenReturn("/static/logo.png");
+    FilterChain chain = mock(FilterChain.class);
+
+    RedirectFilter filter = new RedirectFilter();
+    filter.init(this.context.filterConfig);
+    filter.doFilter(this.context.request, this.context.response, chain);
+
+    verify(chain).doFilter(this.context.request, this.context.response);
+    verify(this.context.servletContext, never()).getResource("/static/logo.png");
+  }
+
+  private void mockPlugins(String... names) {
+    Set<Plugin> plugins = new HashSet<>();
+    for (String name : names) {
+      plugins.add(new Plugin(name, false));
+    }
+    when(this.analyzer.getPlugins()).thenReturn(Collections.unmodifiableSet(plugins));
+  }
+}